@@ -0,0 +1,53 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.lang.annotation.Annotation;
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+
+
+/**
+ * <p>A converter whose conversion can be configured with annotations on the bean property being converted to (for
+ * example a date pattern). The annotations are those on the property field, getter and setter.</p>
+ *
+ * <p>When a property has annotations, annotated converters are consulted (by priority) before all others. If none of
+ * them can handle the type and annotations, the normal converters are used.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public interface AnnotatedConverter extends Converter
+{
+	/**
+	 * Determine whether the converter can convert to the specified type, given the annotations on the property.
+	 *
+	 * @param resolvedType the type to convert to
+	 * @param annotations  the annotations on the property to convert to
+	 * @return {@code true} if the converter can convert to the type; {@code false} otherwise
+	 */
+	boolean canConvertTo(ResolvedType resolvedType, Annotation[] annotations);
+
+	/**
+	 * Convert the form values to the given type. All values belong to the same field.
+	 *
+	 * @param resolvedType the type to convert to
+	 * @param values       the values to convert
+	 * @param annotations  the annotations on the property to convert to
+	 * @return the converted value
+	 */
+	<T> T convertTo(ResolvedType resolvedType, List<String> values, Annotation[] annotations);
+}
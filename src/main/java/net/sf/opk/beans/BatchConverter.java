@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+
+
+/**
+ * <p>A converter that can convert the elements of a collection or array all at once. Implement this interface instead
+ * of {@link Converter} when converting a single value is expensive, but converting many values together is not (for
+ * example when each value is the id of an entity, and all entities can be loaded with a single query).</p>
+ *
+ * <p>The method {@link #canConvertTo(ResolvedType) canConvertTo(...)} is called with the element type; {@link
+ * #convertTo(ResolvedType, List) convertTo(...)} is still used for single-valued fields.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public interface BatchConverter extends Converter
+{
+	/**
+	 * Convert each of the form values to the given type.
+	 *
+	 * @param resolvedType the type to convert each value to
+	 * @param values       the values to convert
+	 * @return the converted values, in the same order as {@code values}; the result must have the same size
+	 */
+	<T> List<T> convertEach(ResolvedType resolvedType, List<String> values);
+}
@@ -15,6 +15,7 @@
  */
 package net.sf.opk.beans;
 
+import java.lang.annotation.Annotation;
 import javax.validation.Path;
 
 import com.fasterxml.classmate.ResolvedType;
@@ -31,6 +32,10 @@ public abstract class BeanProperty
 	 * Parent property. If this property is a nested property, the parent property handles all but the last segment.
 	 */
 	private final BeanProperty parent;
+	/**
+	 * The path to this property; created when first needed.
+	 */
+	private volatile Path path;
 
 
 	/**
@@ -124,13 +129,74 @@ public abstract class BeanProperty
 
 
 	/**
-	 * Get the path to this property.
+	 * Get the value of this nested property from the (typed) value of its parent. This is the last step of {@link
+	 * #getTypedValue(Object)}, and allows callers that already have the parent value to avoid evaluating it again.
+	 *
+	 * @param parentTypedValue the typed value of the parent property
+	 * @return the typed value
+	 * @throws IllegalStateException when this property is not a nested property
+	 */
+	<T> TypedValue<T> getTypedValueFromParent(TypedValue<Object> parentTypedValue)
+	{
+		checkParent();
+		throw new UnsupportedOperationException(getClass() + " cannot be evaluated step by step.");
+	}
+
+
+	/**
+	 * Set the value of this nested property on the (typed) value of its parent. This is the last step of {@link
+	 * #setValue(Object, Object)}, and allows callers that already have the parent value to avoid evaluating it again.
+	 *
+	 * @param parentTypedValue the typed value of the parent property
+	 * @param value            the new property value
+	 * @return {@code true} if the property has been set, {@code false} if not (for example if the parent value is
+	 *         {@code null})
+	 * @throws IllegalStateException when this property is not a nested property
+	 */
+	boolean setValueOnParent(TypedValue<Object> parentTypedValue, Object value)
+	{
+		checkParent();
+		throw new UnsupportedOperationException(getClass() + " cannot be evaluated step by step.");
+	}
+
+
+	/**
+	 * Get the parent property.
+	 *
+	 * @return the parent property, or {@code null} if this property is not a nested property
+	 */
+	BeanProperty getParent()
+	{
+		return parent;
+	}
+
+
+	/**
+	 * Get the last segment of the property path, as a string that is unique among the siblings of this property. Root
+	 * properties have an empty segment.
+	 *
+	 * @return the last path segment
+	 */
+	String getSegment()
+	{
+		return "";
+	}
+
+
+	/**
+	 * Get the path to this property. The path is created once, and shares the nodes of the path of its parent.
 	 *
 	 * @return the path
 	 */
 	public Path toPath()
 	{
-		return toPathBuilder().build();
+		Path result = path;
+		if (result == null)
+		{
+			result = toPathBuilder().build();
+			path = result;
+		}
+		return result;
 	}
 
 
@@ -141,7 +207,7 @@ public abstract class BeanProperty
 	 */
 	public Path prefixTo(Path subPropertyPath)
 	{
-		PathBuilder pathBuilder = toPathBuilder();
+		PathBuilder pathBuilder = new PathBuilder(toPath());
 		for (Path.Node node : subPropertyPath)
 		{
 			pathBuilder.addNode(node);
@@ -169,23 +235,32 @@ public abstract class BeanProperty
 	protected PathBuilder parentPathBuilder()
 	{
 		checkParent();
-		return parent.toPathBuilder();
+		return new PathBuilder(parent.toPath());
 	}
 
 
 	/**
-	 * A typed value to pass along a value (even {@code null}) along with its non-erased type.
+	 * A typed value to pass along a value (even {@code null}) along with its non-erased type, and the annotations on the
+	 * property it is the value of.
 	 */
 	public static class TypedValue<T>
 	{
 		private final ResolvedType type;
 		private final T value;
+		private final Annotation[] annotations;
 
 
 		public TypedValue(ResolvedType type, T value)
+		{
+			this(type, value, ConversionService.NO_ANNOTATIONS);
+		}
+
+
+		public TypedValue(ResolvedType type, T value, Annotation[] annotations)
 		{
 			this.type = type;
 			this.value = value;
+			this.annotations = annotations;
 		}
 
 
@@ -199,5 +274,17 @@ public abstract class BeanProperty
 		{
 			return value;
 		}
+
+
+		/**
+		 * Get the annotations of the property. For list indices and map keys, these are the annotations of the list or
+		 * map property.
+		 *
+		 * @return the annotations (do not modify the array)
+		 */
+		public Annotation[] getAnnotations()
+		{
+			return annotations;
+		}
 	}
 }
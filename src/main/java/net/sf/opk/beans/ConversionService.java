@@ -15,9 +15,12 @@
  */
 package net.sf.opk.beans;
 
+import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -26,8 +29,10 @@ import javax.ws.rs.QueryParam;
 import com.fasterxml.classmate.ResolvedType;
 
 import net.sf.opk.beans.converters.ConversionException;
-import net.sf.opk.beans.util.PriorityComparator;
 import net.sf.opk.beans.util.Cache;
+import net.sf.opk.beans.util.CacheStatistics;
+import net.sf.opk.beans.util.LruCache;
+import net.sf.opk.beans.util.PriorityComparator;
 
 import static java.lang.String.format;
 import static java.util.Collections.unmodifiableList;
@@ -41,10 +46,19 @@ import static java.util.Collections.unmodifiableList;
 @Singleton
 public class ConversionService
 {
+	/**
+	 * Annotations to use for values that are not converted for a bean property.
+	 */
+	public static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
 	/**
 	 * Cache to store the converter found per resolved type.
 	 */
-	private static Cache<ResolvedType, Converter> cache = new Cache<>();
+	private final Cache<ResolvedType, Converter> cache = new Cache<>();
+	/**
+	 * Memoized conversion results, per (erased) target type. Only contains types for which memoization has been enabled
+	 * using {@link #memoize(Class, int)}.
+	 */
+	private final Map<Class<?>, LruCache<List<String>, Object>> memoizedConversions = new ConcurrentHashMap<>();
 	/**
 	 * Constructor argument to allow direct CDI access to the available converters in the system. Used to lazily initialize
 	 * {@link #converters}, as initializing that field in the constructor causes infinite recursion when a converter
@@ -54,7 +68,12 @@ public class ConversionService
 	/**
 	 * The available converters, sorted according to their priority.
 	 */
-	private List<Converter> converters;
+	private volatile List<Converter> converters;
+	/**
+	 * The available converters that can be configured by annotations, sorted according to their priority. Initialized
+	 * together with {@link #converters}.
+	 */
+	private volatile List<AnnotatedConverter> annotatedConverters;
 
 
 	/**
@@ -80,28 +99,230 @@ public class ConversionService
 	 */
 	public <T> T convert(List<String> values, ResolvedType type)
 	{
-		Converter converter = cache.get(type);
-		if (converter == null)
+		return convert(values, type, NO_ANNOTATIONS);
+	}
+
+
+	/**
+	 * Convert a series of values using a resolved type (i.e. with type variables), for a property with annotations.
+	 *
+	 * @param values      the values to convert
+	 * @param type        the resolved type to convert to
+	 * @param annotations the annotations of the property to convert for (used by {@link AnnotatedConverter}s)
+	 * @return the converted value
+	 */
+	public <T> T convert(List<String> values, ResolvedType type, Annotation[] annotations)
+	{
+		AnnotatedConverter annotatedConverter = findAnnotatedConverter(type, annotations);
+		if (annotatedConverter != null)
 		{
-			for (Converter aConverter : getConverters())
+			return annotatedConverter.convertTo(type, values, annotations);
+		}
+		return convert(findConverter(type), values, type);
+	}
+
+
+	/**
+	 * Convert a series of values using a converter, memoizing the result if enabled for the type.
+	 *
+	 * @param converter the converter to use
+	 * @param values    the values to convert
+	 * @param type      the resolved type to convert to
+	 * @return the converted value
+	 */
+	private <T> T convert(Converter converter, List<String> values, ResolvedType type)
+	{
+		LruCache<List<String>, Object> memoizedValues = memoizedConversions.get(type.getErasedType());
+		if (memoizedValues == null || values == null)
+		{
+			return converter.convertTo(type, values);
+		}
+
+		T result = (T)memoizedValues.get(values);
+		if (result == null)
+		{
+			result = converter.convertTo(type, values);
+			if (result != null)
 			{
-				if (aConverter.canConvertTo(type))
+				// Copy the key: the caller may change the list afterwards.
+				memoizedValues.put(Collections.unmodifiableList(new ArrayList<>(values)), result);
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * <p>Enable memoization of conversion results for a type. After this, converting the same values to this type
+	 * returns the same instance, without calling the converter again.</p>
+	 *
+	 * <p><strong>Only use this for immutable types</strong> (like enums, {@code BigDecimal}, {@code UUID}, ...): the
+	 * instances returned are shared between all conversions, and thus between all beans and requests.</p>
+	 *
+	 * @param immutableType the type to memoize conversions for; generic types are memoized by their erased type
+	 * @param maximumSize   the maximum number of memoized values; when exceeded, the least recently used are evicted
+	 */
+	public void memoize(Class<?> immutableType, int maximumSize)
+	{
+		memoizedConversions.put(immutableType, new LruCache<List<String>, Object>(maximumSize));
+	}
+
+
+	/**
+	 * Get the statistics of the memoized conversions for a type.
+	 *
+	 * @param immutableType a type for which memoization has been enabled
+	 * @return the statistics of the memoized conversions, or {@code null} if memoization is not enabled for the type
+	 */
+	public CacheStatistics getMemoizationStatistics(Class<?> immutableType)
+	{
+		LruCache<List<String>, Object> memoizedValues = memoizedConversions.get(immutableType);
+		return memoizedValues == null ? null : memoizedValues.getStatistics();
+	}
+
+
+	/**
+	 * Convert each value in a series separately, using a resolved type (i.e. with type variables). Used to convert
+	 * the elements of arrays and collections. If the converter for the type is a {@link BatchConverter}, all values are
+	 * converted in a single call.
+	 *
+	 * @param values      the values to convert
+	 * @param elementType the resolved type to convert each value to
+	 * @return the converted values, in the same order as the input values
+	 */
+	public <T> List<T> convertEach(List<String> values, ResolvedType elementType)
+	{
+		return convertEach(values, elementType, NO_ANNOTATIONS);
+	}
+
+
+	/**
+	 * Convert each value in a series separately, using a resolved type (i.e. with type variables), for a property with
+	 * annotations. Used to convert the elements of arrays and collections.
+	 *
+	 * @param values      the values to convert
+	 * @param elementType the resolved type to convert each value to
+	 * @param annotations the annotations of the property to convert for (used by {@link AnnotatedConverter}s)
+	 * @return the converted values, in the same order as the input values
+	 * @see #convertEach(List, ResolvedType)
+	 */
+	public <T> List<T> convertEach(List<String> values, ResolvedType elementType, Annotation[] annotations)
+	{
+		AnnotatedConverter annotatedConverter = findAnnotatedConverter(elementType, annotations);
+		if (annotatedConverter != null)
+		{
+			List<T> result = new ArrayList<>(values.size());
+			for (String value : values)
+			{
+				result.add(annotatedConverter.<T>convertTo(elementType, Collections.singletonList(value), annotations));
+			}
+			return result;
+		}
+
+		Converter converter = findConverter(elementType);
+		List<T> result;
+		if (converter instanceof BatchConverter)
+		{
+			result = ((BatchConverter)converter).convertEach(elementType, values);
+			if (result == null || result.size() != values.size())
+			{
+				throw new ConversionException(format("Cannot convert to %s: %s returned the wrong number of values.",
+				                                     elementType, converter));
+			}
+		}
+		else
+		{
+			result = new ArrayList<>(values.size());
+			for (String value : values)
+			{
+				result.add(this.<T>convert(converter, Collections.singletonList(value), elementType));
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Determine if values can be converted to a resolved type, for a property with annotations. As a side effect, the
+	 * converter for the type is cached, so this method can also be used to prepare the conversion service for later use.
+	 *
+	 * @param type        the resolved type to convert to
+	 * @param annotations the annotations of the property to convert for (used by {@link AnnotatedConverter}s)
+	 * @return {@code true} if there is a converter for the type; {@code false} otherwise
+	 */
+	public boolean canConvert(ResolvedType type, Annotation[] annotations)
+	{
+		return findAnnotatedConverter(type, annotations) != null || lookupConverter(type) != null;
+	}
+
+
+	/**
+	 * Find the annotated converter to use for a resolved type and the annotations of the property it is for.
+	 *
+	 * @param type        the resolved type to convert to
+	 * @param annotations the annotations of the property to convert for
+	 * @return the annotated converter with the highest priority that can convert to the type, or {@code null} if none
+	 */
+	private AnnotatedConverter findAnnotatedConverter(ResolvedType type, Annotation[] annotations)
+	{
+		if (annotations.length > 0)
+		{
+			if (annotatedConverters == null)
+			{
+				getConverters();
+			}
+			for (AnnotatedConverter annotatedConverter : annotatedConverters)
+			{
+				if (annotatedConverter.canConvertTo(type, annotations))
 				{
-					converter = aConverter;
-					cache.put(type, converter);
-					break;
+					return annotatedConverter;
 				}
 			}
 		}
+		return null;
+	}
 
+
+	/**
+	 * Find the converter to use for a resolved type.
+	 *
+	 * @param type the resolved type to convert to
+	 * @return the converter with the highest priority that can convert to the type
+	 * @throws ConversionException when there is no converter for the type
+	 */
+	private Converter findConverter(ResolvedType type)
+	{
+		Converter converter = lookupConverter(type);
 		if (converter == null)
 		{
 			throw new ConversionException(format("Cannot convert to %s: no converter found.", type));
 		}
-		else
+		return converter;
+	}
+
+
+	/**
+	 * Look up the converter to use for a resolved type.
+	 *
+	 * @param type the resolved type to convert to
+	 * @return the converter with the highest priority that can convert to the type, or {@code null} if none
+	 */
+	private Converter lookupConverter(ResolvedType type)
+	{
+		Converter converter = cache.get(type);
+		if (converter == null)
 		{
-			return converter.convertTo(type, values);
+			for (Converter aConverter : getConverters())
+			{
+				if (aConverter.canConvertTo(type))
+				{
+					converter = aConverter;
+					cache.put(type, converter);
+					break;
+				}
+			}
 		}
+		return converter;
 	}
 
 
@@ -122,6 +343,16 @@ public class ConversionService
 				sortedConverters.add(converter);
 			}
 			Collections.sort(sortedConverters, new PriorityComparator());
+
+			List<AnnotatedConverter> sortedAnnotatedConverters = new ArrayList<>();
+			for (Converter converter : sortedConverters)
+			{
+				if (converter instanceof AnnotatedConverter)
+				{
+					sortedAnnotatedConverters.add((AnnotatedConverter)converter);
+				}
+			}
+			annotatedConverters = unmodifiableList(sortedAnnotatedConverters);
 			converters = unmodifiableList(sortedConverters);
 		}
 		return converters;
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.Arrays;
+
+import com.fasterxml.classmate.ResolvedType;
+
+
+/**
+ * <p>A small cache for the data a property node resolves for the type of its parent, like the accessor methods and the
+ * resulting property type. A property is nearly always accessed with the same parent type (monomorphic), and rarely
+ * with more than a few (polymorphic), so a short array that is searched linearly beats any map.</p>
+ *
+ * <p>As the resolved types from {@link net.sf.opk.beans.util.GenericsUtil} are interned, a lookup is usually a single
+ * identity check. Once the cache is full (megamorphic), new types are no longer added: these are resolved on each
+ * access, as they were without the cache.</p>
+ *
+ * <p>The cache is thread-safe: lookups are lock free, and additions copy the entries.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+final class InlineCache<V>
+{
+	/**
+	 * The maximum number of parent types to cache data for.
+	 */
+	static final int MAXIMUM_SIZE = 4;
+	/**
+	 * The cache entries. The array is replaced, never modified, when adding an entry.
+	 */
+	private volatile Entry<V>[] entries = noEntries();
+
+
+	/**
+	 * Find the value for a parent type.
+	 *
+	 * @param type the parent type
+	 * @return the cached value, or {@code null} if there is none
+	 */
+	public V get(ResolvedType type)
+	{
+		Entry<V>[] currentEntries = entries;
+		for (Entry<V> entry : currentEntries)
+		{
+			if (entry.type == type)
+			{
+				return entry.value;
+			}
+		}
+		// Resolved types that were not interned are equal, but not the same.
+		for (Entry<V> entry : currentEntries)
+		{
+			if (entry.type.equals(type))
+			{
+				return entry.value;
+			}
+		}
+		return null;
+	}
+
+
+	/**
+	 * Cache the value for a parent type, unless the cache is full or already has a value for the type (threads that
+	 * miss at the same time all try to add their value, but only the first one is kept).
+	 *
+	 * @param type  the parent type
+	 * @param value the value to cache
+	 */
+	public synchronized void put(ResolvedType type, V value)
+	{
+		int size = entries.length;
+		if (size < MAXIMUM_SIZE && get(type) == null)
+		{
+			Entry<V>[] newEntries = Arrays.copyOf(entries, size + 1);
+			newEntries[size] = new Entry<>(type, value);
+			entries = newEntries;
+		}
+	}
+
+
+	/**
+	 * Return the number of cached parent types.
+	 *
+	 * @return the number of cached parent types
+	 */
+	public int size()
+	{
+		return entries.length;
+	}
+
+
+	// Generic arrays cannot be created, and the array never escapes this class: the cast is safe.
+	@SuppressWarnings("unchecked")
+	private static <V> Entry<V>[] noEntries()
+	{
+		return (Entry<V>[])new Entry<?>[0];
+	}
+
+
+	private static final class Entry<V>
+	{
+		private final ResolvedType type;
+		private final V value;
+
+
+		private Entry(ResolvedType type, V value)
+		{
+			this.type = type;
+			this.value = value;
+		}
+	}
+}
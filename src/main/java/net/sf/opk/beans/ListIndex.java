@@ -15,16 +15,12 @@
  */
 package net.sf.opk.beans;
 
-import java.lang.reflect.Array;
-import java.util.Collections;
-import java.util.HashMap;
+import java.lang.annotation.Annotation;
 import java.util.List;
-import java.util.Map;
 
 import com.fasterxml.classmate.ResolvedType;
 
 import static net.sf.opk.beans.util.GenericsUtil.findTypeParameter;
-import static net.sf.opk.beans.util.GenericsUtil.resolveType;
 
 
 /**
@@ -44,27 +40,16 @@ class ListIndex extends BeanProperty
 	 * Error message to throw when unsupported values are given to {@link #setValue(Object, Object)}.
 	 */
 	private static final String WRONG_VALUE_TYPE_ERROR = "Cannot set indexed property: %s is not a %s.";
-	private static final Map<ResolvedType, Class<?>> BOXED_TYPES;
-	static
-	{
-		Map<ResolvedType, Class<?>> boxedTypes = new HashMap<>();
-		boxedTypes.put(resolveType(Byte.TYPE), Byte.class);
-		boxedTypes.put(resolveType(Short.TYPE), Short.class);
-		boxedTypes.put(resolveType(Character.TYPE), Character.class);
-		boxedTypes.put(resolveType(Integer.TYPE), Integer.class);
-		boxedTypes.put(resolveType(Long.TYPE), Long.class);
-		boxedTypes.put(resolveType(Float.TYPE), Float.class);
-		boxedTypes.put(resolveType(Double.TYPE), Double.class);
-		boxedTypes.put(resolveType(Boolean.TYPE), Boolean.class);
-		boxedTypes.put(resolveType(Character.TYPE), Character.class);
-		BOXED_TYPES = Collections.unmodifiableMap(boxedTypes);
-	}
 
 
 	/**
 	 * The index to represent.
 	 */
 	private final int index;
+	/**
+	 * The element types and accessors, for the parent types this property has been used with.
+	 */
+	private final InlineCache<ElementAccess> elementAccesses = new InlineCache<>();
 
 
 	/**
@@ -83,27 +68,33 @@ class ListIndex extends BeanProperty
 	@Override
 	public <T> TypedValue<T> getTypedValue(Object rootBean)
 	{
-		TypedValue<Object> parentTypedValue = getTypedParentValue(rootBean);
-		ResolvedType parentType = parentTypedValue.getType();
+		return getTypedValueFromParent(getTypedParentValue(rootBean));
+	}
 
-		ResolvedType resolvedType = determineElementType(parentType);
+
+	@Override
+	<T> TypedValue<T> getTypedValueFromParent(TypedValue<Object> parentTypedValue)
+	{
+		ElementAccess elementAccess = findElementAccess(parentTypedValue.getType());
+		ResolvedType resolvedType = elementAccess.elementType;
+		Annotation[] annotations = parentTypedValue.getAnnotations();
 
 		Object parentValue = parentTypedValue.getValue();
 		if (parentValue == null)
 		{
-			return new TypedValue<>(resolvedType, null);
+			return new TypedValue<>(resolvedType, null, annotations);
 		}
 
 		Class<?> parentValueClass = parentValue.getClass();
-		if (parentValueClass.isArray())
+		if (elementAccess.arrayAccessor != null && parentValueClass.isArray())
 		{
-			T value = (T)Array.get(parentValue, index);
-			return new TypedValue<>(resolvedType, value);
+			T value = (T)elementAccess.arrayAccessor.get(parentValue, index);
+			return new TypedValue<>(resolvedType, value, annotations);
 		}
 		else if (parentValue instanceof List)
 		{
 			T value = (T)((List<Object>)parentValue).get(index);
-			return new TypedValue<>(resolvedType, value);
+			return new TypedValue<>(resolvedType, value, annotations);
 		}
 		else
 		{
@@ -114,47 +105,66 @@ class ListIndex extends BeanProperty
 
 	/**
 	 * Determine the element type of the parent bean. Throws an exception if the parent bean is not a List or array.
+	 * Element types are cached per parent type.
 	 *
 	 * @param parentType the type of the parent bean
 	 * @return the element type
 	 */
 	protected ResolvedType determineElementType(ResolvedType parentType)
 	{
-		if (parentType.isArray())
-		{
-			return parentType.getArrayElementType();
-		}
-		else if (parentType.isInstanceOf(List.class))
-		{
-			return findTypeParameter(parentType, List.class, 0);
-		}
-		else
+		return findElementAccess(parentType).elementType;
+	}
+
+
+	private ElementAccess findElementAccess(ResolvedType parentType)
+	{
+		ElementAccess elementAccess = elementAccesses.get(parentType);
+		if (elementAccess == null)
 		{
-			throw new BeanPropertyException(WRONG_PROPERTY_TYPE_ERROR, parentType);
+			if (parentType.isArray())
+			{
+				ResolvedType elementType = parentType.getArrayElementType();
+				elementAccess = new ElementAccess(elementType, ArrayAccessor.forType(elementType.getErasedType()));
+			}
+			else if (parentType.isInstanceOf(List.class))
+			{
+				elementAccess = new ElementAccess(findTypeParameter(parentType, List.class, 0), null);
+			}
+			else
+			{
+				throw new BeanPropertyException(WRONG_PROPERTY_TYPE_ERROR, parentType);
+			}
+			elementAccesses.put(parentType, elementAccess);
 		}
+		return elementAccess;
 	}
 
 
 	@Override
 	public boolean setValue(Object rootBean, Object value)
 	{
-		TypedValue<Object> parentTypedValue = getTypedParentValue(rootBean);
+		return setValueOnParent(getTypedParentValue(rootBean), value);
+	}
+
+
+	@Override
+	boolean setValueOnParent(TypedValue<Object> parentTypedValue, Object value)
+	{
         Object parentValue = parentTypedValue.getValue();
         if (parentValue == null) {
             return false;
         }
 
-        ResolvedType parentType = parentTypedValue.getType();
-        ResolvedType elementType = determineElementType(parentType);
-        if (value != null && !elementType.getErasedType().isAssignableFrom(value.getClass()) &&
-		    !(elementType.isPrimitive() && BOXED_TYPES.get(elementType).equals(value.getClass())))
+		ElementAccess elementAccess = findElementAccess(parentTypedValue.getType());
+		if (value == null ? elementAccess.elementType.isPrimitive() : !elementAccess.valueClass.isInstance(value))
 		{
-            throw new BeanPropertyException(WRONG_VALUE_TYPE_ERROR, value.getClass(), elementType);
-        }
+			throw new BeanPropertyException(WRONG_VALUE_TYPE_ERROR, value == null ? null : value.getClass(),
+			                                elementAccess.elementType);
+		}
 
-		if (parentType.isArray())
+		if (elementAccess.arrayAccessor != null)
 		{
-			Array.set(parentValue, index, value);
+			elementAccess.arrayAccessor.set(parentValue, index, value);
 		}
 		else
 		{
@@ -164,9 +174,227 @@ class ListIndex extends BeanProperty
 	}
 
 
+	@Override
+	String getSegment()
+	{
+		return "[" + index + ']';
+	}
+
+
 	@Override
 	protected PathBuilder toPathBuilder()
 	{
 		return parentPathBuilder().addIndexedNode(index);
 	}
+
+
+	/**
+	 * The element type of a list or array type, with the accessor to use for arrays.
+	 */
+	private static final class ElementAccess
+	{
+		private final ResolvedType elementType;
+		/**
+		 * The class values must be an instance of; for primitive element types, this is the boxed type.
+		 */
+		private final Class<?> valueClass;
+		/**
+		 * The array accessor, or {@code null} for lists.
+		 */
+		private final ArrayAccessor arrayAccessor;
+
+
+		private ElementAccess(ResolvedType elementType, ArrayAccessor arrayAccessor)
+		{
+			this.elementType = elementType;
+			this.arrayAccessor = arrayAccessor;
+			if (elementType.isPrimitive())
+			{
+				// Lists of primitives exist as well: the list facade for indexed properties.
+				valueClass = ArrayAccessor.forType(elementType.getErasedType()).boxedType;
+			}
+			else
+			{
+				valueClass = elementType.getErasedType();
+			}
+		}
+	}
+
+
+	/**
+	 * Accessors for array elements. Unlike {@link java.lang.reflect.Array}, these access primitive arrays directly.
+	 */
+	private enum ArrayAccessor
+	{
+		BOOLEAN(Boolean.TYPE, Boolean.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((boolean[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((boolean[])array)[index] = (Boolean)value;
+			}
+		},
+		BYTE(Byte.TYPE, Byte.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((byte[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((byte[])array)[index] = (Byte)value;
+			}
+		},
+		SHORT(Short.TYPE, Short.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((short[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((short[])array)[index] = (Short)value;
+			}
+		},
+		CHAR(Character.TYPE, Character.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((char[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((char[])array)[index] = (Character)value;
+			}
+		},
+		INT(Integer.TYPE, Integer.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((int[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((int[])array)[index] = (Integer)value;
+			}
+		},
+		LONG(Long.TYPE, Long.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((long[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((long[])array)[index] = (Long)value;
+			}
+		},
+		FLOAT(Float.TYPE, Float.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((float[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((float[])array)[index] = (Float)value;
+			}
+		},
+		DOUBLE(Double.TYPE, Double.class)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((double[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((double[])array)[index] = (Double)value;
+			}
+		},
+		OBJECT(null, null)
+		{
+			@Override
+			Object get(Object array, int index)
+			{
+				return ((Object[])array)[index];
+			}
+
+
+			@Override
+			void set(Object array, int index, Object value)
+			{
+				((Object[])array)[index] = value;
+			}
+		};
+
+		/**
+		 * The primitive type of the array elements, or {@code null} for arrays of objects.
+		 */
+		private final Class<?> primitiveType;
+		/**
+		 * The boxed type of the array elements, or {@code null} for arrays of objects.
+		 */
+		private final Class<?> boxedType;
+
+
+		ArrayAccessor(Class<?> primitiveType, Class<?> boxedType)
+		{
+			this.primitiveType = primitiveType;
+			this.boxedType = boxedType;
+		}
+
+
+		abstract Object get(Object array, int index);
+
+
+		abstract void set(Object array, int index, Object value);
+
+
+		static ArrayAccessor forType(Class<?> elementType)
+		{
+			for (ArrayAccessor accessor : values())
+			{
+				if (accessor.primitiveType == elementType)
+				{
+					return accessor;
+				}
+			}
+			return OBJECT;
+		}
+	}
 }
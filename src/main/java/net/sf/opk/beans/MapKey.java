@@ -15,8 +15,15 @@
  */
 package net.sf.opk.beans;
 
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import com.fasterxml.classmate.ResolvedType;
 
@@ -39,6 +46,16 @@ class MapKey extends BeanProperty
 	 * Error message to throw when unsupported values are given to {@link #setValue(Object, Object)}.
 	 */
 	private static final String WRONG_VALUE_TYPE_ERROR = "Cannot set mapped property: %s is not a %s.";
+	/**
+	 * Immutable key types. Converted keys of these types are cached, as they can safely be shared.
+	 */
+	private static final Set<Class<?>> IMMUTABLE_KEY_TYPES = new HashSet<Class<?>>(
+			Arrays.asList(String.class, Character.class, Boolean.class, Byte.class, Short.class, Integer.class,
+			              Long.class, Float.class, Double.class, BigInteger.class, BigDecimal.class, UUID.class));
+	/**
+	 * Marker for a key that has not been converted (yet).
+	 */
+	private static final Object NOT_CONVERTED = new Object();
 	/**
 	 * Conversion service; used for map keys.
 	 */
@@ -47,6 +64,10 @@ class MapKey extends BeanProperty
 	 * The key to represent.
 	 */
 	private final String key;
+	/**
+	 * The key and value types, for the parent types this property has been used with.
+	 */
+	private final InlineCache<MapTypes> mapTypes = new InlineCache<>();
 
 
 	/**
@@ -67,69 +88,111 @@ class MapKey extends BeanProperty
 	@Override
 	public <T> TypedValue<T> getTypedValue(Object rootBean)
 	{
-		TypedValue<Map<Object, T>> parentTypedValue = getTypedParentValue(rootBean);
-		checkType(parentTypedValue);
+		return getTypedValueFromParent(getTypedParentValue(rootBean));
+	}
 
-		ResolvedType parentType = parentTypedValue.getType();
-		Object keyValue = convertKeyValue(parentType);
-		ResolvedType resolvedType = determineValueType(parentType);
 
-		Map<Object, T> parentValue = parentTypedValue.getValue();
+	@Override
+	<T> TypedValue<T> getTypedValueFromParent(TypedValue<Object> parentTypedValue)
+	{
+		MapTypes types = findMapTypes(parentTypedValue);
+
+		Object keyValue = convertKeyValue(types);
+		ResolvedType resolvedType = types.valueType;
+
+		Annotation[] annotations = parentTypedValue.getAnnotations();
+
+		Map<Object, T> parentValue = (Map<Object, T>)parentTypedValue.getValue();
 		if (parentValue == null)
 		{
-			return new TypedValue<>(resolvedType, null);
+			return new TypedValue<>(resolvedType, null, annotations);
 		}
 		else
 		{
-			return new TypedValue<>(resolvedType, parentValue.get(keyValue));
+			return new TypedValue<>(resolvedType, parentValue.get(keyValue), annotations);
 		}
 	}
 
 
-	private void checkType(TypedValue<?> parentTypedValue)
+	/**
+	 * Find the key and value types of the parent map, after checking the parent is a map. The types are cached per
+	 * parent type.
+	 *
+	 * @param parentTypedValue the parent value
+	 * @return the key and value types of the parent map
+	 */
+	private MapTypes findMapTypes(TypedValue<?> parentTypedValue)
 	{
 		ResolvedType parentType = parentTypedValue.getType();
-		if (!parentType.isInstanceOf(Map.class))
+		MapTypes types = mapTypes.get(parentType);
+		if (types == null)
 		{
-			throw new BeanPropertyException(WRONG_PROPERTY_TYPE_ERROR, parentType);
+			if (!parentType.isInstanceOf(Map.class))
+			{
+				throw new BeanPropertyException(WRONG_PROPERTY_TYPE_ERROR, parentType);
+			}
+			types = new MapTypes(findTypeParameter(parentType, Map.class, 0), findTypeParameter(parentType, Map.class, 1));
+			mapTypes.put(parentType, types);
 		}
+
 		Object parentValue = parentTypedValue.getValue();
 		if (parentValue != null && !(parentValue instanceof Map))
 		{
 			throw new BeanPropertyException(WRONG_PROPERTY_TYPE_ERROR, parentValue.getClass());
 		}
+		return types;
 	}
 
 
-	private Object convertKeyValue(ResolvedType parentType)
+	/**
+	 * Convert the key to the key type of the map. If the key type is immutable, the result is cached.
+	 *
+	 * @param types the key and value types of the map
+	 * @return the converted key
+	 */
+	private Object convertKeyValue(MapTypes types)
 	{
-		ResolvedType keyType = findTypeParameter(parentType, Map.class, 0);
-		return conversionService.convert(Collections.singletonList(key), keyType);
+		Object keyValue = types.keyValue;
+		if (keyValue == NOT_CONVERTED)
+		{
+			keyValue = conversionService.convert(Collections.singletonList(key), types.keyType);
+			if (isImmutable(types.keyType.getErasedType()))
+			{
+				types.keyValue = keyValue;
+			}
+		}
+		return keyValue;
 	}
 
 
-	private ResolvedType determineValueType(ResolvedType parentType)
+	private static boolean isImmutable(Class<?> type)
 	{
-		return findTypeParameter(parentType, Map.class, 1);
+		return IMMUTABLE_KEY_TYPES.contains(type) || type.isEnum() ||
+		       type.getName().startsWith("java.time.") && !type.isInterface();
 	}
 
 
 	@Override
 	public boolean setValue(Object rootBean, Object value)
 	{
-		TypedValue<Map<Object, Object>> parentTypedValue = getTypedParentValue(rootBean);
-		checkType(parentTypedValue);
+		return setValueOnParent(getTypedParentValue(rootBean), value);
+	}
 
-		ResolvedType parentType = parentTypedValue.getType();
-		Object keyValue = convertKeyValue(parentType);
-		ResolvedType resolvedType = determineValueType(parentType);
+
+	@Override
+	boolean setValueOnParent(TypedValue<Object> parentTypedValue, Object value)
+	{
+		MapTypes types = findMapTypes(parentTypedValue);
+
+		Object keyValue = convertKeyValue(types);
+		ResolvedType resolvedType = types.valueType;
 
 		if (value != null && !resolvedType.getErasedType().isAssignableFrom(value.getClass()))
 		{
 			throw new BeanPropertyException(WRONG_VALUE_TYPE_ERROR, value.getClass(), resolvedType);
 		}
 
-		Map<Object, Object> parentValue = parentTypedValue.getValue();
+		Map<Object, Object> parentValue = (Map<Object, Object>)parentTypedValue.getValue();
 		if (parentValue == null) {
 			return false;
 		}
@@ -138,9 +201,37 @@ class MapKey extends BeanProperty
 	}
 
 
+	@Override
+	String getSegment()
+	{
+		return "['" + key + "']";
+	}
+
+
 	@Override
 	protected PathBuilder toPathBuilder()
 	{
 		return parentPathBuilder().addMappedNode(key);
 	}
+
+
+	/**
+	 * The key and value types of a map type, and the key converted to the key type.
+	 */
+	private static final class MapTypes
+	{
+		private final ResolvedType keyType;
+		private final ResolvedType valueType;
+		/**
+		 * The converted key, or {@link #NOT_CONVERTED} if the key has not been converted, or cannot be cached.
+		 */
+		private volatile Object keyValue = NOT_CONVERTED;
+
+
+		private MapTypes(ResolvedType keyType, ResolvedType valueType)
+		{
+			this.keyType = keyType;
+			this.valueType = valueType;
+		}
+	}
 }
@@ -15,8 +15,7 @@
  */
 package net.sf.opk.beans;
 
-import java.beans.IndexedPropertyDescriptor;
-import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.AbstractList;
 import java.util.List;
@@ -24,6 +23,7 @@ import java.util.List;
 import com.fasterxml.classmate.ResolvedType;
 
 import net.sf.opk.beans.util.BeanUtil;
+import net.sf.opk.beans.util.PropertyMetadata;
 
 import static net.sf.opk.beans.util.GenericsUtil.resolveReturnType;
 import static net.sf.opk.beans.util.GenericsUtil.resolveType;
@@ -40,6 +40,10 @@ class NamedProperty extends BeanProperty
 	 * The property name.
 	 */
 	private final String name;
+	/**
+	 * The property accessors, for the parent types this property has been used with.
+	 */
+	private final InlineCache<Accessor> accessors = new InlineCache<>();
 
 
 	/**
@@ -58,33 +62,37 @@ class NamedProperty extends BeanProperty
 	@Override
 	public <T> TypedValue<T> getTypedValue(Object rootBean)
 	{
-		TypedValue<Object> parentTypedValue = getTypedParentValue(rootBean);
+		return getTypedValueFromParent(getTypedParentValue(rootBean));
+	}
+
+
+	@Override
+	<T> TypedValue<T> getTypedValueFromParent(TypedValue<Object> parentTypedValue)
+	{
 		ResolvedType parentType = parentTypedValue.getType();
 		Object parentValue = parentTypedValue.getValue();
 
-		PropertyDescriptor propertyDescriptor = BeanUtil.findProperty(parentType.getErasedType(), name);
-		Method readMethod = propertyDescriptor.getReadMethod();
+		Accessor accessor = findAccessor(parentType);
+		PropertyMetadata property = accessor.property;
+		Annotation[] annotations = property.getAnnotations();
+		Method readMethod = property.getReadMethod();
 		if (readMethod != null)
 		{
-			ResolvedType resolvedType = resolveReturnType(parentType, readMethod);
 			T propertyValue = null;
 			if (parentValue != null)
 			{
 				propertyValue = BeanUtil.invoke(parentValue, readMethod);
 			}
-			return new TypedValue<>(resolvedType, propertyValue);
+			return new TypedValue<>(accessor.type, propertyValue, annotations);
 		}
-		else if (propertyDescriptor instanceof IndexedPropertyDescriptor)
+		else if (property.getIndexedReadMethod() != null)
 		{
-			IndexedPropertyDescriptor indexedPropertyDescriptor = (IndexedPropertyDescriptor)propertyDescriptor;
-			readMethod = indexedPropertyDescriptor.getIndexedReadMethod();
-			ResolvedType resolvedType = resolveType(List.class, resolveReturnType(parentType, readMethod));
 			T propertyValue = null;
 			if (parentValue != null)
 			{
-				propertyValue = (T)new IndexedPropertyAsList(parentValue, indexedPropertyDescriptor);
+				propertyValue = (T)new IndexedPropertyAsList(parentValue, property);
 			}
-			return new TypedValue<>(resolvedType, propertyValue);
+			return new TypedValue<>(accessor.type, propertyValue, annotations);
 		}
 		else
 		{
@@ -96,15 +104,21 @@ class NamedProperty extends BeanProperty
 	@Override
 	public boolean setValue(Object rootBean, Object value)
 	{
-		TypedValue<Object> parentTypedValue = getTypedParentValue(rootBean);
+		return setValueOnParent(getTypedParentValue(rootBean), value);
+	}
+
 
+	@Override
+	boolean setValueOnParent(TypedValue<Object> parentTypedValue, Object value)
+	{
 		// NOTE: this method should not be called for indexed properties: getTypedValue(...) returns a list facade for these properties.
 
-		Class<?> beanType = parentTypedValue.getType().getErasedType();
-		Method writeMethod = BeanUtil.findProperty(beanType, name).getWriteMethod();
+		ResolvedType parentType = parentTypedValue.getType();
+		Method writeMethod = findAccessor(parentType).property.getWriteMethod();
 		if (writeMethod == null || writeMethod.getParameterTypes().length > 1)
 		{
-			throw new BeanPropertyException("%s has no writeable, non-indexed property named %s", beanType, name);
+			throw new BeanPropertyException("%s has no writeable, non-indexed property named %s",
+			                                parentType.getErasedType(), name);
 		}
 
 		Object parentValue = parentTypedValue.getValue();
@@ -117,6 +131,50 @@ class NamedProperty extends BeanProperty
 	}
 
 
+	/**
+	 * Find the accessor for this property on a parent type. Accessors are cached per parent type.
+	 *
+	 * @param parentType the type of the bean that has this property
+	 * @return the property accessor
+	 * @throws IllegalArgumentException when the property does not exist
+	 */
+	private Accessor findAccessor(ResolvedType parentType)
+	{
+		Accessor accessor = accessors.get(parentType);
+		if (accessor == null)
+		{
+			PropertyMetadata property = BeanUtil.findProperty(parentType.getErasedType(), name);
+			accessor = new Accessor(property, resolvePropertyType(parentType, property));
+			accessors.put(parentType, accessor);
+		}
+		return accessor;
+	}
+
+
+	private static ResolvedType resolvePropertyType(ResolvedType parentType, PropertyMetadata property)
+	{
+		if (property.getReadMethod() != null)
+		{
+			return resolveReturnType(parentType, property.getReadMethod());
+		}
+		else if (property.getIndexedReadMethod() != null)
+		{
+			return resolveType(List.class, resolveReturnType(parentType, property.getIndexedReadMethod()));
+		}
+		else
+		{
+			return null;
+		}
+	}
+
+
+	@Override
+	String getSegment()
+	{
+		return '.' + name;
+	}
+
+
 	@Override
 	protected PathBuilder toPathBuilder()
 	{
@@ -124,13 +182,36 @@ class NamedProperty extends BeanProperty
 	}
 
 
+	/**
+	 * A property with its type, as resolved for a specific parent type.
+	 */
+	private static final class Accessor
+	{
+		/**
+		 * The property.
+		 */
+		private final PropertyMetadata property;
+		/**
+		 * The fully resolved type of the property, or {@code null} if the property is not readable.
+		 */
+		private final ResolvedType type;
+
+
+		private Accessor(PropertyMetadata property, ResolvedType type)
+		{
+			this.property = property;
+			this.type = type;
+		}
+	}
+
+
 	private class IndexedPropertyAsList<E> extends AbstractList<E>
 	{
 		private Object bean;
-		private IndexedPropertyDescriptor property;
+		private PropertyMetadata property;
 
 
-		private IndexedPropertyAsList(Object bean, IndexedPropertyDescriptor property)
+		private IndexedPropertyAsList(Object bean, PropertyMetadata property)
 		{
 			this.property = property;
 			this.bean = bean;
@@ -15,21 +15,49 @@
  */
 package net.sf.opk.beans;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Iterator;
-import java.util.List;
 import javax.validation.Path;
 
 
 /**
- * A builder for a {@link Path}.
+ * A builder for a {@link Path}. The paths it builds are immutable, and share their nodes with the path they were
+ * built upon.
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
 class PathBuilder
 {
-	private final ArrayList<Path.Node> path = new ArrayList<>();
+	private PropertyPath path;
+
+
+	/**
+	 * Create a builder for a path.
+	 */
+	public PathBuilder()
+	{
+		path = PropertyPath.EMPTY;
+	}
+
+
+	/**
+	 * Create a builder for a path that starts with the nodes of an existing path.
+	 *
+	 * @param prefix the path to start with
+	 */
+	public PathBuilder(Path prefix)
+	{
+		if (prefix instanceof PropertyPath)
+		{
+			path = (PropertyPath)prefix;
+		}
+		else
+		{
+			path = PropertyPath.EMPTY;
+			for (Path.Node node : prefix)
+			{
+				addNode(node);
+			}
+		}
+	}
 
 
 	/**
@@ -76,7 +104,7 @@ class PathBuilder
 	 */
 	public PathBuilder addNode(Path.Node node)
 	{
-		path.add(node);
+		path = path.append(node);
 		return this;
 	}
 
@@ -88,13 +116,6 @@ class PathBuilder
 	 */
 	public Path build()
 	{
-		return new Path()
-		{
-			@Override
-			public Iterator<Node> iterator()
-			{
-				return Collections.unmodifiableList((List<Node>)path.clone()).iterator();
-			}
-		};
+		return path;
 	}
 }
@@ -97,4 +97,44 @@ class PathNode implements Path.Node
 	{
 		return key;
 	}
+
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (!(o instanceof PathNode))
+		{
+			return false;
+		}
+
+		PathNode pathNode = (PathNode)o;
+		return equals(name, pathNode.name) && equals(index, pathNode.index) && equals(key, pathNode.key);
+	}
+
+
+	private static boolean equals(Object o1, Object o2)
+	{
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int result = name == null ? 0 : name.hashCode();
+		result = 31 * result + (index == null ? 0 : index.hashCode());
+		result = 31 * result + (key == null ? 0 : key.hashCode());
+		return result;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("PathNode{name=%s, index=%s, key=%s}", name, index, key);
+	}
 }
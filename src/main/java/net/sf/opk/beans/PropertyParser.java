@@ -15,21 +15,38 @@
  */
 package net.sf.opk.beans;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.inject.Inject;
+import javax.inject.Singleton;
 import javax.validation.Path;
 
-import net.sf.opk.beans.util.Cache;
-
-import static java.util.regex.Pattern.compile;
+import net.sf.opk.beans.util.CacheStatistics;
+import net.sf.opk.beans.util.LruCache;
 
 
 /**
- * JavaBean property parser.
+ * <p>JavaBean property parser.</p>
+ *
+ * <p>A property path is a series of properties, each of which is one of:</p><ol>
+ *
+ * <li>a property name: a Java identifier, preceded by a dot unless it is at the start of the path,</li>
+ *
+ * <li>a list index: a number in square brackets, or</li>
+ *
+ * <li>a map key in square brackets: a Java identifier, or a single or double quoted string. In the strings,
+ * backslashes may be used to escape the quotes (' resp. ") and backslashes.</li>
+ *
+ * </ol>
+ *
+ * <p>Paths are parsed by a hand-written lexer in a single pass, so parsing takes linear time for any input.</p>
+ *
+ * <p>As property paths usually come from form field names (i.e. from user input), the parse results are not cached
+ * until the path has been bound successfully (see {@link #admit(String, BeanProperty)}). This prevents random field
+ * names from evicting the paths that are actually used. Malformed paths are remembered in a small separate cache, and
+ * overly long or deep paths are rejected outright.</p>
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
+@Singleton
 public class PropertyParser
 {
 	/**
@@ -37,57 +54,32 @@ public class PropertyParser
 	 */
 	public static final BeanProperty EMPTY_PROPERTY = new RootProperty();
 	/**
-	 * Regular expression pattern to match Java identifiers.
+	 * The maximum length of a property path.
 	 */
-	private static final String PATTERN_IDENTIFIER = "\\p{javaJavaIdentifierStart}\\p{javaJavaIdentifierPart}*";
+	public static final int MAXIMUM_PATH_LENGTH = 1024;
 	/**
-	 * Regular expression pattern to match numbers.
+	 * The maximum number of properties in a property path.
 	 */
-	private static final String PATTERN_NUMBER = "\\d+";
+	public static final int MAXIMUM_PATH_DEPTH = 32;
 	/**
-	 * Regular expression pattern to match strings surrounded by single quotes (').
+	 * The maximum number of admitted paths to cache.
 	 */
-	private static final String PATTERN_STRING1 = "'(?:\\\\|\\'|[^\\'])*'";
+	private static final int MAXIMUM_CACHE_SIZE = 4096;
 	/**
-	 * Regular expression pattern to match strings surrounded by double quotes (").
+	 * The maximum number of malformed paths to cache.
 	 */
-	private static final String PATTERN_STRING2 = "\"(?:\\\\|\\\"|[^\\\"])*\"";
+	private static final int MAXIMUM_NEGATIVE_CACHE_SIZE = 256;
 	/**
-	 * <p>Regular expression that matches all supported properties, one by one. The matched String is a valid property
-	 * if:</p><ol>
-	 *
-	 * <li>it does not start with a dot, and</li>
-	 *
-	 * <li>immediately after the last successful match the end of the String was hit</li>
-	 *
-	 * </ol>
-	 *
-	 * <p>The pattern has 3 capturing groups, exactly one of which will be non-null upon a match. They are, in order: a
-	 * property name, a list index and a map key. The map key is either a property name, or a single or double quoted
-	 * string. In the strings, backslashes may be used to escape the quotes (' resp. ").</p>
+	 * Cache to store the parse results of admitted paths, mapped by their respective inputs.
+	 */
+	private final LruCache<String, BeanProperty> cache = new LruCache<>(MAXIMUM_CACHE_SIZE);
+	/**
+	 * Cache to store the error messages for malformed paths, mapped by their respective inputs. Paths longer than
+	 * {@link #MAXIMUM_PATH_LENGTH} are not cached, so the size of this cache is bounded as well.
 	 *
-	 * <p>Explanation:</p><pre>
-	 * \\G                                            # Must match immediately from the start or the previous match
-	 * (?:                                            # Matches several alternatives:
-	 *   (?:\\A|(?<=.)\\.)                            # 1. following a dot iff not at the start of the input,
-	 *   (identifier)                                 #    an identifier (captured),
-	 *   |\\[(?:                                      # 2. or in square brackets:
-	 *     (number)                                   #    - a literal list index (captured),
-	 *     |(identifier|string_single|string_double)  #    - or a literal map key (captured)
-	 *   )\\]
-	 * )
-	 * (?=\\.|\\[|\\z)                               # Immediately following the match (but not part of it) must be a
-	 *                                               # dot or a square bracket (the first characters of each of the
-	 *                                               # matches above). If not, all input must have been matched.
-	 * </pre>
-	 */
-	private static final Pattern PROPERTY_PATTERN = compile(String.format(
-			"\\G(?:(?:\\A|(?<=.)\\.)(%s)|\\[(?:(%s)|(%s|%s|%s))\\])(?=\\.|\\[|\\z)", PATTERN_IDENTIFIER, PATTERN_NUMBER,
-			PATTERN_IDENTIFIER, PATTERN_STRING1, PATTERN_STRING2));
-	/**
-	 * Cache to store the parse results mapped by their respective inputs.
-	 */
-	private static Cache<String, BeanProperty> cache = new Cache<>();
+	 * Ideally, it would be private. But we also want to test what is cached.
+	 */
+	final LruCache<String, String> negativeCache = new LruCache<>(MAXIMUM_NEGATIVE_CACHE_SIZE);
 	/**
 	 * Conversion service; passed along to {@link MapKey} instances.
 	 */
@@ -107,7 +99,8 @@ public class PropertyParser
 
 
 	/**
-	 * Parse a property path.
+	 * Parse a property path. The result is only cached after it has been {@link #admit(String, BeanProperty)
+	 * admitted}.
 	 *
 	 * @param path the property path to parse
 	 * @return the parsed property
@@ -118,42 +111,120 @@ public class PropertyParser
 		BeanProperty result = cache.get(path);
 		if (result == null)
 		{
-			result = doParse(path);
-			cache.put(path, result);
+			String errorMessage = negativeCache.get(path);
+			if (errorMessage != null)
+			{
+				throw new BeanPropertyException("%s", errorMessage);
+			}
+
+			try
+			{
+				result = doParse(path);
+			}
+			catch (BeanPropertyException e)
+			{
+				// Overly long paths are rejected quickly anyway, and caching them would use unbounded memory.
+				if (path != null && path.length() <= MAXIMUM_PATH_LENGTH)
+				{
+					negativeCache.put(path, e.getMessage());
+				}
+				throw e;
+			}
 		}
 		return result;
 	}
 
 
+	/**
+	 * Admit a parsed property path to the cache. Call this method when the property has been used successfully (for
+	 * example, when a form value has been bound to it), or to register paths known to be valid (for example, those of
+	 * the beans used by an application).
+	 *
+	 * @param path     the property path
+	 * @param property the parsed property, as returned by {@link #parse(String) parse(path)}
+	 */
+	public void admit(String path, BeanProperty property)
+	{
+		cache.put(path, property);
+	}
+
+
+	/**
+	 * Get the statistics of the cache of admitted property paths.
+	 *
+	 * @return the cache statistics
+	 */
+	public CacheStatistics getCacheStatistics()
+	{
+		return cache.getStatistics();
+	}
+
+
 	private BeanProperty doParse(String path)
 	{
 		checkPatternConstraints(path);
 
 		BeanProperty result = EMPTY_PROPERTY;
 
-		Matcher propertyMatcher = PROPERTY_PATTERN.matcher(path);
-		int tailIndex = 0; // Used to verify we've parsed everything, and if not to show what wasn't parsed.
-		while (propertyMatcher.find())
+		int length = path.length();
+		int tailIndex = 0; // The start of the next property; used to show what wasn't parsed in case of an error.
+		int depth = 0;
+		while (tailIndex < length)
 		{
-			tailIndex = propertyMatcher.end();
-
-			String propertyName = propertyMatcher.group(1);
-			String listIndex = propertyMatcher.group(2);
-			String mapKey = propertyMatcher.group(3);
-
-			if (propertyName != null)
+			BeanProperty property;
+			int propertyEnd;
+			if (path.charAt(tailIndex) == '[')
 			{
-				result = new NamedProperty(result, propertyName);
+				int keyStart = tailIndex + 1;
+				int keyEnd;
+				if ((keyEnd = scanNumber(path, keyStart)) != -1 && isCharAt(path, keyEnd, ']'))
+				{
+					property = new ListIndex(result, Integer.parseInt(path.substring(keyStart, keyEnd)));
+				}
+				else if ((keyEnd = scanIdentifier(path, keyStart)) != -1 && isCharAt(path, keyEnd, ']'))
+				{
+					property = new MapKey(conversionService, result, path.substring(keyStart, keyEnd));
+				}
+				else if ((keyEnd = scanString(path, keyStart)) != -1 && isCharAt(path, keyEnd, ']'))
+				{
+					property = new MapKey(conversionService, result, unescape(path.substring(keyStart, keyEnd)));
+				}
+				else
+				{
+					break;
+				}
+				propertyEnd = keyEnd + 1;
 			}
-			else if (listIndex != null)
+			else
 			{
-				result = new ListIndex(result, Integer.parseInt(listIndex));
+				// Property names follow a dot, except at the start of the path.
+				if (tailIndex != 0 && path.charAt(tailIndex) != '.')
+				{
+					break;
+				}
+				int nameStart = tailIndex == 0 ? 0 : tailIndex + 1;
+				int nameEnd = scanIdentifier(path, nameStart);
+				if (nameEnd == -1)
+				{
+					break;
+				}
+				property = new NamedProperty(result, path.substring(nameStart, nameEnd));
+				propertyEnd = nameEnd;
 			}
-			else
+
+			depth++;
+			if (depth > MAXIMUM_PATH_DEPTH)
+			{
+				throw new BeanPropertyException("Not a property path: more than %d properties deep.", MAXIMUM_PATH_DEPTH);
+			}
+
+			// A property must be followed by the next one, or by the end of the path.
+			if (propertyEnd < length && !isCharAt(path, propertyEnd, '.') && !isCharAt(path, propertyEnd, '['))
 			{
-				mapKey = unescape(mapKey);
-				result = new MapKey(conversionService, result, mapKey);
+				break;
 			}
+			result = property;
+			tailIndex = propertyEnd;
 		}
 
 		checkParsingCompleted(path, tailIndex);
@@ -162,6 +233,92 @@ public class PropertyParser
 	}
 
 
+	/**
+	 * Scan a number (a series of ASCII digits).
+	 *
+	 * @param path  the property path to scan
+	 * @param start the index to start scanning at
+	 * @return the index after the number, or -1 if there is no number at {@code start}
+	 */
+	private static int scanNumber(String path, int start)
+	{
+		int index = start;
+		while (index < path.length() && path.charAt(index) >= '0' && path.charAt(index) <= '9')
+		{
+			index++;
+		}
+		return index == start ? -1 : index;
+	}
+
+
+	/**
+	 * Scan a Java identifier.
+	 *
+	 * @param path  the property path to scan
+	 * @param start the index to start scanning at
+	 * @return the index after the identifier, or -1 if there is no identifier at {@code start}
+	 */
+	private static int scanIdentifier(String path, int start)
+	{
+		if (start >= path.length() || !Character.isJavaIdentifierStart(path.codePointAt(start)))
+		{
+			return -1;
+		}
+		int index = path.offsetByCodePoints(start, 1);
+		while (index < path.length())
+		{
+			int codePoint = path.codePointAt(index);
+			if (!Character.isJavaIdentifierPart(codePoint))
+			{
+				break;
+			}
+			index += Character.charCount(codePoint);
+		}
+		return index;
+	}
+
+
+	/**
+	 * Scan a quoted string. Strings are surrounded by single or double quotes, and may contain quotes and backslashes
+	 * if escaped by a backslash.
+	 *
+	 * @param path  the property path to scan
+	 * @param start the index to start scanning at
+	 * @return the index after the closing quote, or -1 if there is no (complete) string at {@code start}
+	 */
+	private static int scanString(String path, int start)
+	{
+		if (start >= path.length())
+		{
+			return -1;
+		}
+		char quote = path.charAt(start);
+		if (quote != '\'' && quote != '"')
+		{
+			return -1;
+		}
+		for (int index = start + 1; index < path.length(); index++)
+		{
+			char character = path.charAt(index);
+			if (character == '\\')
+			{
+				index++;
+			}
+			else if (character == quote)
+			{
+				return index + 1;
+			}
+		}
+		return -1;
+	}
+
+
+	private static boolean isCharAt(String path, int index, char character)
+	{
+		return index < path.length() && path.charAt(index) == character;
+	}
+
+
 	private void checkPatternConstraints(String path)
 	{
 		if (path == null || path.length() == 0)
@@ -172,6 +329,10 @@ public class PropertyParser
 		{
 			throw new BeanPropertyException("Not a property path: starts with a dot.");
 		}
+		else if (path.length() > MAXIMUM_PATH_LENGTH)
+		{
+			throw new BeanPropertyException("Not a property path: longer than %d characters.", MAXIMUM_PATH_LENGTH);
+		}
 	}
 
 
@@ -187,24 +348,29 @@ public class PropertyParser
 
 	private static String unescape(String stringLiteral)
 	{
-		char firstCharacter = stringLiteral.charAt(0);
-		if (firstCharacter == '\'' || firstCharacter == '"')
+		char quote = stringLiteral.charAt(0);
+		int end = stringLiteral.length() - 1;
+		if (stringLiteral.indexOf('\\') == -1)
 		{
-			return unescape(firstCharacter, stringLiteral);
+			return stringLiteral.substring(1, end);
 		}
-		else
+
+		StringBuilder buffer = new StringBuilder(end);
+		for (int index = 1; index < end; index++)
 		{
-			return stringLiteral;
+			char character = stringLiteral.charAt(index);
+			if (character == '\\' && index + 1 < end)
+			{
+				char escapedCharacter = stringLiteral.charAt(index + 1);
+				if (escapedCharacter == quote || escapedCharacter == '\\')
+				{
+					character = escapedCharacter;
+					index++;
+				}
+			}
+			buffer.append(character);
 		}
-	}
-
-
-	private static String unescape(char escapedQuote, String stringLiteral)
-	{
-		stringLiteral = stringLiteral.substring(1, stringLiteral.length() - 1);
-		stringLiteral = stringLiteral.replace("\\" + escapedQuote, String.valueOf(escapedQuote));
-		stringLiteral = stringLiteral.replace("\\\\", "\\");
-		return stringLiteral;
+		return buffer.toString();
 	}
 
 
@@ -229,26 +395,10 @@ public class PropertyParser
 	 */
 	public String format(Path path)
 	{
-		StringBuilder buffer = new StringBuilder();
-
-		for (Path.Node node : path)
+		if (path instanceof PropertyPath)
 		{
-			if (node.getName() != null)
-			{
-				buffer.append('.').append(node.getName());
-			}
-
-			if (node.getIndex() != null)
-			{
-				buffer.append('[').append(node.getIndex()).append(']');
-			}
-			else if (node.getKey() != null)
-			{
-				String escaped = String.valueOf(node.getKey()).replace("\\", "\\\\").replace("'", "\\'");
-				buffer.append("['").append(escaped).append("']");
-			}
+			return path.toString();
 		}
-
-		return buffer.substring(1);
+		return PropertyPath.format(path);
 	}
 }
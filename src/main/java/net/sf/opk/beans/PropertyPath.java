@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.ValidationException;
+import javax.validation.constraints.NotNull;
+
+
+/**
+ * <p>An immutable {@link Path}. Paths are linked to the path of their parent, so paths that share a prefix also share
+ * its nodes. The node array used for iteration, and the formatted path, are created once, when first needed.</p>
+ *
+ * <p>Paths are equal if they have equal nodes, in the same order.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+final class PropertyPath implements Path
+{
+	/**
+	 * The empty path.
+	 */
+	static final PropertyPath EMPTY = new PropertyPath(null, null);
+	/**
+	 * The parent path, or {@code null} for the empty path.
+	 */
+	private final PropertyPath parent;
+	/**
+	 * The last node, or {@code null} for the empty path.
+	 */
+	private final Node node;
+	/**
+	 * The number of nodes in the path.
+	 */
+	private final int size;
+	private final int hashCode;
+	/**
+	 * The nodes of the path; created when first needed.
+	 */
+	private volatile Node[] nodes;
+	/**
+	 * The formatted path; created when first needed.
+	 */
+	private volatile String formattedPath;
+
+
+	private PropertyPath(PropertyPath parent, Node node)
+	{
+		this.parent = parent;
+		this.node = node;
+		if (parent == null)
+		{
+			size = 0;
+			hashCode = 1;
+		}
+		else
+		{
+			size = parent.size + 1;
+			hashCode = 31 * parent.hashCode + node.hashCode();
+		}
+	}
+
+
+	/**
+	 * Create a path by appending a node to this path. This path is not changed.
+	 *
+	 * @param childNode the node to append
+	 * @return the new path
+	 */
+	PropertyPath append(Node childNode)
+	{
+		return new PropertyPath(this, childNode);
+	}
+
+
+	/**
+	 * Return the number of nodes in the path.
+	 *
+	 * @return the number of nodes
+	 */
+	int size()
+	{
+		return size;
+	}
+
+
+	@Override
+	public Iterator<Node> iterator()
+	{
+		return Collections.unmodifiableList(Arrays.asList(getNodes())).iterator();
+	}
+
+
+	private Node[] getNodes()
+	{
+		Node[] result = nodes;
+		if (result == null)
+		{
+			result = new Node[size];
+			PropertyPath path = this;
+			for (int i = size - 1; i >= 0; i--)
+			{
+				result[i] = path.node;
+				path = path.parent;
+			}
+			nodes = result;
+		}
+		return result;
+	}
+
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (!(o instanceof PropertyPath))
+		{
+			return false;
+		}
+
+		PropertyPath path1 = this;
+		PropertyPath path2 = (PropertyPath)o;
+		if (path1.hashCode != path2.hashCode || path1.size != path2.size)
+		{
+			return false;
+		}
+		while (path1 != path2)
+		{
+			if (!path1.node.equals(path2.node))
+			{
+				return false;
+			}
+			path1 = path1.parent;
+			path2 = path2.parent;
+		}
+		return true;
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		return hashCode;
+	}
+
+
+	/**
+	 * Return the path, formatted as it would be written in a property path.
+	 *
+	 * @return the formatted path
+	 * @see #format(Path)
+	 */
+	@Override
+	public String toString()
+	{
+		String result = formattedPath;
+		if (result == null)
+		{
+			result = format(this);
+			formattedPath = result;
+		}
+		return result;
+	}
+
+
+	/**
+	 * <p>Format a path as it would be written in a property path. For example: {@code order.lines[2].attributes['x']}.
+	 * Paths from a {@link javax.validation.Validator} are formatted correctly as well.</p>
+	 *
+	 * <p>Validators differ in the node that has the index or key of an iterable element: the specification puts it on
+	 * the node of the element property (Hibernate Validator 4.2 and later do this), but Hibernate Validator 4.1 puts
+	 * it on the node of the iterable itself. The nodes of our own paths never have both a name and an index or key, so
+	 * they are formatted correctly either way.</p>
+	 *
+	 * @param path the path to format
+	 * @return the formatted path
+	 */
+	static String format(Path path)
+	{
+		boolean indexOnIterableNode = ValidatorPathLayout.INDEX_ON_ITERABLE_NODE;
+		StringBuilder buffer = new StringBuilder();
+
+		for (Path.Node node : path)
+		{
+			if (!indexOnIterableNode)
+			{
+				appendIndexOrKey(buffer, node);
+			}
+			if (node.getName() != null)
+			{
+				buffer.append('.').append(node.getName());
+			}
+			if (indexOnIterableNode)
+			{
+				appendIndexOrKey(buffer, node);
+			}
+		}
+
+		if (buffer.length() > 0 && buffer.charAt(0) == '.')
+		{
+			return buffer.substring(1);
+		}
+		return buffer.toString();
+	}
+
+
+	private static void appendIndexOrKey(StringBuilder buffer, Path.Node node)
+	{
+		if (node.getIndex() != null)
+		{
+			buffer.append('[').append(node.getIndex()).append(']');
+		}
+		else if (node.getKey() != null)
+		{
+			String escaped = String.valueOf(node.getKey()).replace("\\", "\\\\").replace("'", "\\'");
+			buffer.append("['").append(escaped).append("']");
+		}
+	}
+
+
+	/**
+	 * Detects (once, when first needed) on which node the validation provider puts the index of an iterable element,
+	 * by validating an element of a list.
+	 */
+	static final class ValidatorPathLayout
+	{
+		/**
+		 * Whether the index or key of an iterable element is on the node of the iterable ({@code true}), or on the
+		 * node after it ({@code false}, as the specification requires).
+		 */
+		static final boolean INDEX_ON_ITERABLE_NODE = detectIndexOnIterableNode();
+
+
+		private static boolean detectIndexOnIterableNode()
+		{
+			try
+			{
+				Set<ConstraintViolation<Probe>> violations =
+						Validation.buildDefaultValidatorFactory().getValidator().validate(new Probe());
+				for (ConstraintViolation<Probe> violation : violations)
+				{
+					// The path is either "elements"[0], "value" or "elements", [0]"value".
+					return violation.getPropertyPath().iterator().next().getIndex() != null;
+				}
+			}
+			catch (ValidationException ignored)
+			{
+				// No validation provider: there are no validator paths to format.
+			}
+			return false;
+		}
+
+
+		/**
+		 * Utility class: do not instantiate.
+		 */
+		private ValidatorPathLayout()
+		{
+			// Nothing to do.
+		}
+	}
+
+
+	private static final class Probe
+	{
+		@Valid
+		private final List<ProbeElement> elements = Collections.singletonList(new ProbeElement());
+	}
+
+
+	private static final class ProbeElement
+	{
+		@NotNull
+		private Object value;
+	}
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * <p>A set of bean properties, organised as a tree of their path segments. This allows applying values to many
+ * properties of the same bean, while evaluating each shared path prefix only once.</p>
+ *
+ * <p>For example, when applying values for {@code order.lines[0].quantity} and {@code order.lines[0].price}, the
+ * values for {@code order}, {@code order.lines} and {@code order.lines[0]} are evaluated once, instead of once per
+ * property. Thus the number of getter calls depends on the number of distinct path prefixes, not on the number of
+ * properties times their depth.</p>
+ *
+ * <p>Properties are visited depth first, in the order they were added. A property is visited before any property
+ * nested in it, and if the visitor changes its value, the nested properties are evaluated on the new value.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class PropertyTrie<V>
+{
+	/**
+	 * The trie node for the root property.
+	 */
+	private Node<V> root;
+	/**
+	 * The number of values in the trie.
+	 */
+	private int size = 0;
+
+
+	/**
+	 * Add a property to the trie, with a value (for the visitor) to visit it with.
+	 *
+	 * @param property the property to add
+	 * @param value    the value to pass to the visitor for this property
+	 * @throws IllegalArgumentException when the root of the property differs from that of the properties already added
+	 */
+	public void add(BeanProperty property, V value)
+	{
+		Deque<BeanProperty> path = new ArrayDeque<>();
+		BeanProperty rootProperty = property;
+		while (rootProperty.getParent() != null)
+		{
+			path.push(rootProperty);
+			rootProperty = rootProperty.getParent();
+		}
+
+		if (root == null)
+		{
+			root = new Node<>(rootProperty);
+		}
+		else if (root.property != rootProperty)
+		{
+			throw new IllegalArgumentException("All properties must have the same root property.");
+		}
+
+		Node<V> node = root;
+		for (BeanProperty segment : path)
+		{
+			node = node.getChild(segment);
+		}
+		node.properties.add(property);
+		node.values.add(value);
+		size++;
+	}
+
+
+	/**
+	 * Return the number of values in the trie.
+	 *
+	 * @return the number of values
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+
+	/**
+	 * Visit all properties in the trie on a bean.
+	 *
+	 * @param rootBean the bean to visit the properties of
+	 * @param visitor  the visitor to call for each property (once for each value added for the property)
+	 * @return {@code true} if all properties were visited, {@code false} if the visitor stopped the traversal
+	 */
+	public boolean visit(Object rootBean, Visitor<V> visitor)
+	{
+		if (root == null)
+		{
+			return true;
+		}
+		BeanProperty.TypedValue<Object> rootValue = root.property.getTypedValue(rootBean);
+		return visit(rootBean, null, rootValue, root, visitor);
+	}
+
+
+	private boolean visit(Object rootBean, BeanProperty.TypedValue<Object> parentValue,
+	                      BeanProperty.TypedValue<Object> typedValue, Node<V> node, Visitor<V> visitor)
+	{
+		for (int i = 0; i < node.values.size(); i++)
+		{
+			Leaf leaf = new Leaf(rootBean, node.properties.get(i), parentValue, typedValue);
+			if (!visitor.visit(leaf, node.values.get(i)))
+			{
+				return false;
+			}
+			if (leaf.modified && parentValue != null)
+			{
+				typedValue = node.property.getTypedValueFromParent(parentValue);
+			}
+		}
+
+		for (Node<V> child : node.children.values())
+		{
+			BeanProperty.TypedValue<Object> childValue = child.property.getTypedValueFromParent(typedValue);
+			if (!visit(rootBean, typedValue, childValue, child, visitor))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Visitor for the properties in a {@link PropertyTrie}.
+	 */
+	public interface Visitor<V>
+	{
+		/**
+		 * Visit a property.
+		 *
+		 * @param leaf  the property, bound to the bean being visited
+		 * @param value the value that was added with the property
+		 * @return {@code true} to continue visiting properties, {@code false} to stop
+		 */
+		boolean visit(Leaf leaf, V value);
+	}
+
+
+	/**
+	 * A property in a {@link PropertyTrie}, bound to the bean being visited. Its value has already been evaluated.
+	 */
+	public static class Leaf
+	{
+		private final Object rootBean;
+		private final BeanProperty property;
+		private final BeanProperty.TypedValue<Object> parentValue;
+		private final BeanProperty.TypedValue<Object> typedValue;
+		private boolean modified = false;
+
+
+		private Leaf(Object rootBean, BeanProperty property, BeanProperty.TypedValue<Object> parentValue,
+		             BeanProperty.TypedValue<Object> typedValue)
+		{
+			this.rootBean = rootBean;
+			this.property = property;
+			this.parentValue = parentValue;
+			this.typedValue = typedValue;
+		}
+
+
+		/**
+		 * Get the property.
+		 *
+		 * @return the property
+		 */
+		public BeanProperty getProperty()
+		{
+			return property;
+		}
+
+
+		/**
+		 * Get the value of the parent property.
+		 *
+		 * @return the typed value of the parent, or {@code null} if this is the root property
+		 */
+		public <T> BeanProperty.TypedValue<T> getTypedParentValue()
+		{
+			return (BeanProperty.TypedValue<T>)parentValue;
+		}
+
+
+		/**
+		 * Get the value of the property, as it was evaluated before the property was visited.
+		 *
+		 * @return the typed value
+		 */
+		public <T> BeanProperty.TypedValue<T> getTypedValue()
+		{
+			return (BeanProperty.TypedValue<T>)typedValue;
+		}
+
+
+		/**
+		 * Set the property value.
+		 *
+		 * @param value the new property value
+		 * @return {@code true} if the property has been set, {@code false} if not (for example if the parent value is
+		 *         {@code null})
+		 * @see BeanProperty#setValue(Object, Object)
+		 */
+		public boolean setValue(Object value)
+		{
+			modified = true;
+			if (parentValue == null)
+			{
+				return property.setValue(rootBean, value);
+			}
+			return property.setValueOnParent(parentValue, value);
+		}
+	}
+
+
+	private static class Node<V>
+	{
+		/**
+		 * The property for this node; when several equivalent properties were added, the first one.
+		 */
+		private final BeanProperty property;
+		/**
+		 * The properties added for this node, in the same order as their values.
+		 */
+		private final List<BeanProperty> properties = new ArrayList<>(1);
+		private final List<V> values = new ArrayList<>(1);
+		private final Map<String, Node<V>> children = new LinkedHashMap<>();
+
+
+		private Node(BeanProperty property)
+		{
+			this.property = property;
+		}
+
+
+		private Node<V> getChild(BeanProperty childProperty)
+		{
+			String segment = childProperty.getSegment();
+			Node<V> child = children.get(segment);
+			if (child == null)
+			{
+				child = new Node<>(childProperty);
+				children.put(segment, child);
+			}
+			return child;
+		}
+	}
+}
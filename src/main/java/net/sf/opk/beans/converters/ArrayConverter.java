@@ -15,15 +15,15 @@
  */
 package net.sf.opk.beans.converters;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Array;
-import java.util.Collections;
 import java.util.List;
 import javax.inject.Inject;
 
 import com.fasterxml.classmate.ResolvedType;
 
+import net.sf.opk.beans.AnnotatedConverter;
 import net.sf.opk.beans.ConversionService;
-import net.sf.opk.beans.Converter;
 import net.sf.opk.beans.util.Prioritized;
 
 import static java.lang.String.format;
@@ -34,7 +34,7 @@ import static java.lang.String.format;
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
-public class ArrayConverter implements Converter, Prioritized
+public class ArrayConverter implements AnnotatedConverter, Prioritized
 {
 	/**
 	 * The conversion service used to convert array elements.
@@ -61,8 +61,22 @@ public class ArrayConverter implements Converter, Prioritized
 	}
 
 
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType, Annotation[] annotations)
+	{
+		return canConvertTo(resolvedType);
+	}
+
+
 	@Override
 	public <T> T convertTo(ResolvedType resolvedType, List<String> values)
+	{
+		return convertTo(resolvedType, values, ConversionService.NO_ANNOTATIONS);
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, List<String> values, Annotation[] annotations)
 	{
 		if (!canConvertTo(resolvedType))
 		{
@@ -72,9 +86,8 @@ public class ArrayConverter implements Converter, Prioritized
 
 		Object array = Array.newInstance(arrayElementType.getErasedType(), values.size());
 		int index = 0;
-		for (String value : values)
+		for (Object convertedValue : conversionService.convertEach(values, arrayElementType, annotations))
 		{
-			Object convertedValue = conversionService.convert(Collections.singletonList(value), arrayElementType);
 			Array.set(array, index++, convertedValue);
 		}
 
@@ -15,9 +15,9 @@
  */
 package net.sf.opk.beans.converters;
 
+import java.lang.annotation.Annotation;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -27,8 +27,8 @@ import javax.inject.Inject;
 
 import com.fasterxml.classmate.ResolvedType;
 
+import net.sf.opk.beans.AnnotatedConverter;
 import net.sf.opk.beans.ConversionService;
-import net.sf.opk.beans.Converter;
 import net.sf.opk.beans.util.Prioritized;
 import net.sf.opk.beans.util.GenericsUtil;
 
@@ -40,7 +40,7 @@ import static java.lang.String.format;
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
-public class CollectionConverter implements Converter, Prioritized
+public class CollectionConverter implements AnnotatedConverter, Prioritized
 {
 	/**
 	 * The conversion service used to convert collection elements.
@@ -67,8 +67,22 @@ public class CollectionConverter implements Converter, Prioritized
 	}
 
 
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType, Annotation[] annotations)
+	{
+		return canConvertTo(resolvedType);
+	}
+
+
 	@Override
 	public <T> T convertTo(ResolvedType resolvedType, List<String> values)
+	{
+		return convertTo(resolvedType, values, ConversionService.NO_ANNOTATIONS);
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, List<String> values, Annotation[] annotations)
 	{
 		if (!canConvertTo(resolvedType))
 		{
@@ -78,11 +92,7 @@ public class CollectionConverter implements Converter, Prioritized
 		ResolvedType elementType = GenericsUtil.findTypeParameter(resolvedType, Collection.class, 0);
 
 		Collection<Object> result = createCollection(collectionClass);
-		for (String value : values)
-		{
-			Object convertedValue = conversionService.convert(Collections.singletonList(value), elementType);
-			result.add(convertedValue);
-		}
+		result.addAll(conversionService.convertEach(values, elementType, annotations));
 		return (T)result;
 	}
 
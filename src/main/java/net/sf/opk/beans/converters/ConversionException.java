@@ -35,4 +35,16 @@ public class ConversionException extends RuntimeException
 	{
 		super(message);
 	}
+
+
+	/**
+	 * Create a {@code ConversionException} with the specified message and underlying cause.
+	 *
+	 * @param message a message describing what went wrong
+	 * @param cause   the cause for this exception
+	 */
+	public ConversionException(String message, Throwable cause)
+	{
+		super(message, cause);
+	}
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.time.format.DateTimeFormatter;
+
+
+/**
+ * <p>The pattern to parse a {@code java.time} property with, as defined by {@link DateTimeFormatter}. Put it on the
+ * property field, getter or setter. On a collection, array or map property, the pattern applies to the elements.</p>
+ *
+ * <p>Without this annotation, the ISO-8601 format is used (as in HTML5 date and time fields).</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ * @see JavaTimeConverter
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface DateTimePattern
+{
+	/**
+	 * The pattern to parse values with, for example {@code dd-MM-uuuu}.
+	 */
+	String value();
+
+	/**
+	 * The locale to use for localized text like month names, as an IETF BCP 47 language tag (for example {@code nl-NL}).
+	 * The default (an empty string) uses the default locale of the JVM.
+	 */
+	String locale() default "";
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.ParsePosition;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.classmate.ResolvedType;
+
+import net.sf.opk.beans.AnnotatedConverter;
+import net.sf.opk.beans.util.Prioritized;
+
+import static java.lang.String.format;
+import static net.sf.opk.beans.util.BeanUtil.findAnnotation;
+
+
+/**
+ * <p>Converter for localized numbers. It converts properties annotated with {@link NumberPattern @NumberPattern} to
+ * any primitive number type, its wrapper, {@code BigInteger} or {@code BigDecimal}. Other numbers are left to the
+ * other converters.</p>
+ *
+ * <p>Number formats are created once per pattern and locale. As {@code DecimalFormat} is not thread-safe, each
+ * conversion uses a copy.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class FormattedNumberConverter extends SingleValueConverter implements AnnotatedConverter, Prioritized
+{
+	/**
+	 * The number formats for the patterns used so far, by locale and pattern. These are never used directly; only
+	 * copies are.
+	 */
+	private final ConcurrentMap<String, DecimalFormat> formats = new ConcurrentHashMap<>();
+
+
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType)
+	{
+		// Only used with a @NumberPattern annotation.
+		return false;
+	}
+
+
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType, Annotation[] annotations)
+	{
+		return isNumberType(resolvedType.getErasedType()) && findAnnotation(annotations, NumberPattern.class) != null;
+	}
+
+
+	private boolean isNumberType(Class<?> type)
+	{
+		return type == BigDecimal.class || type == BigInteger.class || type == Long.class || type == Long.TYPE ||
+		       type == Integer.class || type == Integer.TYPE || type == Short.class || type == Short.TYPE ||
+		       type == Byte.class || type == Byte.TYPE || type == Double.class || type == Double.TYPE ||
+		       type == Float.class || type == Float.TYPE;
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, String value)
+	{
+		throw new ConversionException(format("Cannot convert to %s: no @NumberPattern specified.", resolvedType));
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, List<String> values, Annotation[] annotations)
+	{
+		NumberPattern pattern = findAnnotation(annotations, NumberPattern.class);
+		String value = getFirstElement(values);
+		if (pattern == null || value == null || value.isEmpty())
+		{
+			return convertTo(resolvedType, values);
+		}
+
+		DecimalFormat numberFormat = (DecimalFormat)getFormat(pattern).clone();
+		ParsePosition position = new ParsePosition(0);
+		Number number = numberFormat.parse(value, position);
+		if (!(number instanceof BigDecimal) || position.getIndex() != value.length())
+		{
+			throw new ConversionException(format("Cannot convert '%s' to a number: it does not match the pattern %s.",
+			                                     value, pattern.value()));
+		}
+		return (T)toType((BigDecimal)number, resolvedType.getErasedType(), value);
+	}
+
+
+	private DecimalFormat getFormat(NumberPattern pattern)
+	{
+		String key = pattern.locale() + '|' + pattern.value();
+		DecimalFormat numberFormat = formats.get(key);
+		if (numberFormat == null)
+		{
+			String languageTag = pattern.locale();
+			Locale locale = languageTag.isEmpty() ? Locale.getDefault(Locale.Category.FORMAT) :
+			                Locale.forLanguageTag(languageTag);
+			numberFormat = new DecimalFormat(pattern.value(), DecimalFormatSymbols.getInstance(locale));
+			numberFormat.setParseBigDecimal(true);
+			formats.putIfAbsent(key, numberFormat);
+		}
+		return numberFormat;
+	}
+
+
+	private Object toType(BigDecimal number, Class<?> type, String value)
+	{
+		try
+		{
+			if (type == BigDecimal.class)
+			{
+				return number;
+			}
+			else if (type == BigInteger.class)
+			{
+				return number.toBigIntegerExact();
+			}
+			else if (type == Long.class || type == Long.TYPE)
+			{
+				return number.longValueExact();
+			}
+			else if (type == Integer.class || type == Integer.TYPE)
+			{
+				return number.intValueExact();
+			}
+			else if (type == Short.class || type == Short.TYPE)
+			{
+				return number.shortValueExact();
+			}
+			else if (type == Byte.class || type == Byte.TYPE)
+			{
+				return number.byteValueExact();
+			}
+			else if (type == Double.class || type == Double.TYPE)
+			{
+				return number.doubleValue();
+			}
+			else
+			{
+				return number.floatValue();
+			}
+		}
+		catch (ArithmeticException e)
+		{
+			throw new ConversionException(format("Cannot convert '%s' to a %s: it is out of range or not a whole number.",
+			                                     value, type.getSimpleName()), e);
+		}
+	}
+
+
+	@Override
+	public int getPriority()
+	{
+		return Integer.MIN_VALUE + 4;
+	}
+}
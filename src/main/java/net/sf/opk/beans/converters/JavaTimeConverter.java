@@ -0,0 +1,181 @@
+/*
+ * Copyright 2012 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Annotation;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.MonthDay;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.Year;
+import java.time.YearMonth;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQuery;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.classmate.ResolvedType;
+
+import net.sf.opk.beans.AnnotatedConverter;
+import net.sf.opk.beans.util.Prioritized;
+
+import static java.lang.String.format;
+import static net.sf.opk.beans.util.BeanUtil.findAnnotation;
+
+
+/**
+ * <p>Converter for the {@code java.time} types. By default, it parses values in the ISO-8601 format (as used by HTML5
+ * date and time fields). Properties annotated with {@link DateTimePattern @DateTimePattern} are parsed using that
+ * pattern instead.</p>
+ *
+ * <p>Formatters are created once per pattern and locale. As they are immutable, they are shared by all threads.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class JavaTimeConverter extends SingleValueConverter implements AnnotatedConverter, Prioritized
+{
+	/**
+	 * The queries that create the supported types from parsed values.
+	 */
+	private static final Map<Class<?>, TemporalQuery<?>> QUERIES;
+	/**
+	 * The ISO-8601 formatters for the supported types.
+	 */
+	private static final Map<Class<?>, DateTimeFormatter> ISO_FORMATTERS;
+
+
+	static
+	{
+		Map<Class<?>, TemporalQuery<?>> queries = new HashMap<>();
+		Map<Class<?>, DateTimeFormatter> isoFormatters = new HashMap<>();
+
+		queries.put(LocalDate.class, LocalDate::from);
+		isoFormatters.put(LocalDate.class, DateTimeFormatter.ISO_LOCAL_DATE);
+		queries.put(LocalTime.class, LocalTime::from);
+		isoFormatters.put(LocalTime.class, DateTimeFormatter.ISO_LOCAL_TIME);
+		queries.put(LocalDateTime.class, LocalDateTime::from);
+		isoFormatters.put(LocalDateTime.class, DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+		queries.put(OffsetTime.class, OffsetTime::from);
+		isoFormatters.put(OffsetTime.class, DateTimeFormatter.ISO_OFFSET_TIME);
+		queries.put(OffsetDateTime.class, OffsetDateTime::from);
+		isoFormatters.put(OffsetDateTime.class, DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+		queries.put(ZonedDateTime.class, ZonedDateTime::from);
+		isoFormatters.put(ZonedDateTime.class, DateTimeFormatter.ISO_ZONED_DATE_TIME);
+		queries.put(Instant.class, Instant::from);
+		isoFormatters.put(Instant.class, DateTimeFormatter.ISO_INSTANT);
+		queries.put(Year.class, Year::from);
+		isoFormatters.put(Year.class, DateTimeFormatter.ofPattern("uuuu"));
+		queries.put(YearMonth.class, YearMonth::from);
+		isoFormatters.put(YearMonth.class, DateTimeFormatter.ofPattern("uuuu-MM"));
+		queries.put(MonthDay.class, MonthDay::from);
+		isoFormatters.put(MonthDay.class, DateTimeFormatter.ofPattern("--MM-dd"));
+
+		QUERIES = Collections.unmodifiableMap(queries);
+		ISO_FORMATTERS = Collections.unmodifiableMap(isoFormatters);
+	}
+
+
+	/**
+	 * The formatters for the patterns used so far, by locale and pattern.
+	 */
+	private final ConcurrentMap<String, DateTimeFormatter> formatters = new ConcurrentHashMap<>();
+
+
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType)
+	{
+		return QUERIES.containsKey(resolvedType.getErasedType());
+	}
+
+
+	@Override
+	public boolean canConvertTo(ResolvedType resolvedType, Annotation[] annotations)
+	{
+		return canConvertTo(resolvedType) && findAnnotation(annotations, DateTimePattern.class) != null;
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, String value)
+	{
+		Class<?> type = resolvedType.getErasedType();
+		return parse(value, type, ISO_FORMATTERS.get(type));
+	}
+
+
+	@Override
+	public <T> T convertTo(ResolvedType resolvedType, List<String> values, Annotation[] annotations)
+	{
+		DateTimePattern pattern = findAnnotation(annotations, DateTimePattern.class);
+		String value = getFirstElement(values);
+		if (pattern == null || value == null || value.isEmpty())
+		{
+			return convertTo(resolvedType, values);
+		}
+		return parse(value, resolvedType.getErasedType(), getFormatter(pattern));
+	}
+
+
+	private DateTimeFormatter getFormatter(DateTimePattern pattern)
+	{
+		String key = pattern.locale() + '|' + pattern.value();
+		DateTimeFormatter formatter = formatters.get(key);
+		if (formatter == null)
+		{
+			String languageTag = pattern.locale();
+			Locale locale = languageTag.isEmpty() ? Locale.getDefault(Locale.Category.FORMAT) :
+			                Locale.forLanguageTag(languageTag);
+			formatter = DateTimeFormatter.ofPattern(pattern.value(), locale);
+			formatters.putIfAbsent(key, formatter);
+		}
+		return formatter;
+	}
+
+
+	private <T> T parse(String value, Class<?> type, DateTimeFormatter formatter)
+	{
+		TemporalQuery<?> query = QUERIES.get(type);
+		if (query == null)
+		{
+			throw new ConversionException(format("Cannot convert to %s: it is not a supported java.time type.", type));
+		}
+		try
+		{
+			return (T)formatter.parse(value, query);
+		}
+		catch (DateTimeParseException e)
+		{
+			throw new ConversionException(format("Cannot convert '%s' to a %s.", value, type.getSimpleName()), e);
+		}
+	}
+
+
+	@Override
+	public int getPriority()
+	{
+		return Integer.MIN_VALUE + 4;
+	}
+}
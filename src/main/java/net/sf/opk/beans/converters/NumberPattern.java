@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.text.DecimalFormat;
+
+
+/**
+ * The pattern to parse a localized number with, as defined by {@link DecimalFormat}. Put it on the property field,
+ * getter or setter. On a collection, array or map property, the pattern applies to the elements.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ * @see FormattedNumberConverter
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface NumberPattern
+{
+	/**
+	 * The pattern to parse values with, for example {@code #,##0.00}.
+	 */
+	String value();
+
+	/**
+	 * The locale that determines the decimal and grouping separators, as an IETF BCP 47 language tag (for example
+	 * {@code nl-NL}). The default (an empty string) uses the default locale of the JVM.
+	 */
+	String locale() default "";
+}
@@ -51,12 +51,12 @@ public abstract class SingleValueConverter implements Converter
 
 
 	/**
-	 * Get the firt element from a list.
+	 * Get the first element from a list.
 	 *
 	 * @param values a list
 	 * @return the first element, or {@code null} if the list is empty
 	 */
-	private <T> T getFirstElement(List<T> values)
+	protected <T> T getFirstElement(List<T> values)
 	{
 		T value = null;
 		if (values.size() >= 1)
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.lang.String.format;
+
+
+/**
+ * <p>Introspector for Java Beans. This is a lightweight replacement for {@link java.beans.Introspector}: it scans the
+ * public methods of a class only once, into immutable {@link PropertyMetadata}. The result is cached per class without
+ * locking, and without preventing the class from being unloaded.</p>
+ *
+ * <p>Properties are defined by their accessor methods:</p><ul>
+ *
+ * <li>getters: {@code T getX()}, or {@code boolean isX()}</li>
+ *
+ * <li>setters: {@code void setX(T)}, or a fluent setter returning the bean ({@code Bean setX(T)})</li>
+ *
+ * <li>indexed getters and setters: {@code T getX(int)} and {@code void setX(int, T)}</li>
+ *
+ * <li>fluent accessors: {@code T x()} with {@code Bean x(T)}; these are only used if there is no setter named
+ * {@code setX}</li>
+ *
+ * </ul>
+ *
+ * <p>Records are supported as read-only beans: their components are the properties.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public final class BeanIntrospector
+{
+	/**
+	 * The properties per class, mapped by name.
+	 */
+	private static final ClassValue<Map<String, PropertyMetadata>> PROPERTIES =
+			new ClassValue<Map<String, PropertyMetadata>>()
+			{
+				@Override
+				protected Map<String, PropertyMetadata> computeValue(Class<?> beanClass)
+				{
+					return Collections.unmodifiableMap(isRecord(beanClass) ? introspectRecord(beanClass) :
+					                                   introspectBean(beanClass));
+				}
+			};
+
+
+	/**
+	 * Find all properties of a bean class.
+	 *
+	 * @param beanClass the bean class to introspect
+	 * @return the properties of the class, mapped by name (the map is immutable)
+	 */
+	public static Map<String, PropertyMetadata> getProperties(Class<?> beanClass)
+	{
+		return PROPERTIES.get(beanClass);
+	}
+
+
+	/**
+	 * Determine if a class is a record. Records are detected by name, as they do not exist in all supported Java
+	 * versions.
+	 *
+	 * @param beanClass the class to check
+	 * @return {@code true} if the class is a record, {@code false} otherwise
+	 */
+	private static boolean isRecord(Class<?> beanClass)
+	{
+		Class<?> superclass = beanClass.getSuperclass();
+		return superclass != null && "java.lang.Record".equals(superclass.getName());
+	}
+
+
+	private static Map<String, PropertyMetadata> introspectRecord(Class<?> recordClass)
+	{
+		Map<String, PropertyMetadata> properties = new HashMap<>();
+		try
+		{
+			// Class.getRecordComponents() and RecordComponent.getAccessor() exist as of Java 16.
+			Object[] components = (Object[])Class.class.getMethod("getRecordComponents").invoke(recordClass);
+			for (Object component : components)
+			{
+				Method accessor = (Method)component.getClass().getMethod("getAccessor").invoke(component);
+				String name = accessor.getName();
+				Annotation[] annotations = collectAnnotations(recordClass, name, accessor);
+				properties.put(name, new PropertyMetadata(name, accessor.getReturnType(), accessor, null, null, null,
+				                                          annotations));
+			}
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new IllegalArgumentException(format("Failed to find the components of record %s", recordClass), e);
+		}
+		return properties;
+	}
+
+
+	private static Map<String, PropertyMetadata> introspectBean(Class<?> beanClass)
+	{
+		Map<String, Accessors> accessorsByName = new TreeMap<>();
+		for (Method method : beanClass.getMethods())
+		{
+			if (!Modifier.isStatic(method.getModifiers()) && !method.isBridge() &&
+			    !method.getDeclaringClass().equals(Object.class))
+			{
+				addAccessor(accessorsByName, beanClass, method);
+			}
+		}
+
+		Map<String, PropertyMetadata> properties = new HashMap<>();
+		for (Map.Entry<String, Accessors> entry : accessorsByName.entrySet())
+		{
+			PropertyMetadata property = entry.getValue().toProperty(beanClass, entry.getKey());
+			if (property != null)
+			{
+				properties.put(property.getName(), property);
+			}
+		}
+		return properties;
+	}
+
+
+	private static void addAccessor(Map<String, Accessors> accessorsByName, Class<?> beanClass, Method method)
+	{
+		String methodName = method.getName();
+		Class<?>[] parameterTypes = method.getParameterTypes();
+		Class<?> returnType = method.getReturnType();
+		boolean returnsVoid = returnType.equals(Void.TYPE);
+		boolean returnsBean = !returnType.equals(Object.class) && returnType.isAssignableFrom(beanClass);
+
+		if (parameterTypes.length == 0 && !returnsVoid)
+		{
+			if (isAccessorName(methodName, "get"))
+			{
+				Accessors accessors = accessors(accessorsByName, methodName, 3);
+				accessors.getter = mostSpecific(accessors.getter, method);
+			}
+			else if (isAccessorName(methodName, "is") && returnType.equals(Boolean.TYPE))
+			{
+				accessors(accessorsByName, methodName, 2).booleanGetter = method;
+			}
+			else
+			{
+				accessors(accessorsByName, methodName, 0).fluentGetter = method;
+			}
+		}
+		else if (parameterTypes.length == 1)
+		{
+			if (isAccessorName(methodName, "get") && parameterTypes[0].equals(Integer.TYPE) && !returnsVoid)
+			{
+				accessors(accessorsByName, methodName, 3).indexedGetter = method;
+			}
+			else if (isAccessorName(methodName, "set") && (returnsVoid || returnsBean))
+			{
+				accessors(accessorsByName, methodName, 3).setters.add(method);
+			}
+			else if (!isAccessorName(methodName, "set") && returnsBean)
+			{
+				accessors(accessorsByName, methodName, 0).fluentSetters.add(method);
+			}
+		}
+		else if (parameterTypes.length == 2 && isAccessorName(methodName, "set") &&
+		         parameterTypes[0].equals(Integer.TYPE) && returnsVoid)
+		{
+			accessors(accessorsByName, methodName, 3).indexedSetter = method;
+		}
+	}
+
+
+	private static boolean isAccessorName(String methodName, String prefix)
+	{
+		return methodName.length() > prefix.length() && methodName.startsWith(prefix);
+	}
+
+
+	private static Accessors accessors(Map<String, Accessors> accessorsByName, String methodName, int prefixLength)
+	{
+		String name = prefixLength == 0 ? methodName : decapitalize(methodName.substring(prefixLength));
+		Accessors accessors = accessorsByName.get(name);
+		if (accessors == null)
+		{
+			accessors = new Accessors();
+			accessorsByName.put(name, accessors);
+		}
+		return accessors;
+	}
+
+
+	/**
+	 * Choose between two methods with the same signature, as inherited from different interfaces or classes.
+	 *
+	 * @param current   the method found earlier, if any
+	 * @param candidate the method found now
+	 * @return the method with the most specific return type
+	 */
+	private static Method mostSpecific(Method current, Method candidate)
+	{
+		if (current == null || current.getReturnType().isAssignableFrom(candidate.getReturnType()))
+		{
+			return candidate;
+		}
+		return current;
+	}
+
+
+	/**
+	 * Convert a capitalized name to a property name, like {@link java.beans.Introspector#decapitalize(String)}: the
+	 * first character is converted to lower case, unless the first two characters are both upper case.
+	 *
+	 * @param name the name to decapitalize
+	 * @return the decapitalized name
+	 */
+	static String decapitalize(String name)
+	{
+		if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1)))
+		{
+			return name;
+		}
+		return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+	}
+
+
+	private static Annotation[] collectAnnotations(Class<?> beanClass, String name, Method... accessors)
+	{
+		List<Annotation> annotations = new ArrayList<>();
+
+		for (Class<?> aClass = beanClass; aClass != null && !aClass.equals(Object.class); aClass = aClass.getSuperclass())
+		{
+			try
+			{
+				Field field = aClass.getDeclaredField(name);
+				annotations.addAll(Arrays.asList(field.getAnnotations()));
+				break;
+			}
+			catch (NoSuchFieldException ignored)
+			{
+				// Try the superclass.
+			}
+		}
+
+		for (Method accessor : accessors)
+		{
+			if (accessor != null)
+			{
+				annotations.addAll(Arrays.asList(accessor.getAnnotations()));
+			}
+		}
+
+		return annotations.toArray(new Annotation[annotations.size()]);
+	}
+
+
+	/**
+	 * Utility class: do not instantiate.
+	 */
+	private BeanIntrospector()
+	{
+		// Nothing to do.
+	}
+
+
+	/**
+	 * The accessor methods found for a property name, before they are validated and combined into a property.
+	 */
+	private static class Accessors
+	{
+		private Method getter;
+		private Method booleanGetter;
+		private Method fluentGetter;
+		private final List<Method> setters = new ArrayList<>();
+		private final List<Method> fluentSetters = new ArrayList<>();
+		private Method indexedGetter;
+		private Method indexedSetter;
+
+
+		/**
+		 * Combine the accessors into a property.
+		 *
+		 * @param beanClass the bean class
+		 * @param name      the property name
+		 * @return the property, or {@code null} if the accessors do not form a property
+		 */
+		private PropertyMetadata toProperty(Class<?> beanClass, String name)
+		{
+			Method readMethod = booleanGetter != null ? booleanGetter : getter;
+			List<Method> writeMethods = setters;
+			if (setters.isEmpty() && !fluentSetters.isEmpty())
+			{
+				if (readMethod == null)
+				{
+					readMethod = fluentGetter;
+				}
+				// Without a getter, a method like 'Bean name(T)' is not considered a setter.
+				if (readMethod != null)
+				{
+					writeMethods = fluentSetters;
+				}
+			}
+
+			Class<?> propertyType = readMethod == null ? null : readMethod.getReturnType();
+			Method writeMethod = selectWriteMethod(writeMethods, propertyType);
+			if (propertyType == null && writeMethod != null)
+			{
+				propertyType = writeMethod.getParameterTypes()[0];
+			}
+
+			// Indexed accessors must agree with each other, and with the non-indexed accessors (if any).
+			Class<?> elementType = indexedGetter != null ? indexedGetter.getReturnType() :
+			                       indexedSetter != null ? indexedSetter.getParameterTypes()[1] : null;
+			Method indexedReadMethod = indexedGetter;
+			Method indexedWriteMethod = indexedSetter;
+			if (indexedWriteMethod != null && !indexedWriteMethod.getParameterTypes()[1].equals(elementType))
+			{
+				indexedWriteMethod = null;
+			}
+			if (elementType != null && propertyType != null &&
+			    !(propertyType.isArray() && propertyType.getComponentType().equals(elementType)))
+			{
+				indexedReadMethod = null;
+				indexedWriteMethod = null;
+			}
+			if (propertyType == null)
+			{
+				propertyType = elementType;
+			}
+
+			if (readMethod == null && writeMethod == null && indexedReadMethod == null && indexedWriteMethod == null)
+			{
+				return null;
+			}
+			Annotation[] annotations = collectAnnotations(beanClass, name, readMethod, writeMethod, indexedReadMethod,
+			                                              indexedWriteMethod);
+			return new PropertyMetadata(name, propertyType, readMethod, writeMethod, indexedReadMethod,
+			                            indexedWriteMethod, annotations);
+		}
+
+
+		/**
+		 * Select the write method for a property.
+		 *
+		 * @param candidates   the candidate write methods
+		 * @param propertyType the property type, if known
+		 * @return the write method whose parameter matches the property type; if the type is unknown, the only
+		 *         candidate (if there is exactly one)
+		 */
+		private static Method selectWriteMethod(List<Method> candidates, Class<?> propertyType)
+		{
+			if (propertyType == null)
+			{
+				return candidates.size() == 1 ? candidates.get(0) : null;
+			}
+			for (Method candidate : candidates)
+			{
+				if (candidate.getParameterTypes()[0].equals(propertyType))
+				{
+					return candidate;
+				}
+			}
+			return null;
+		}
+	}
+}
@@ -15,14 +15,10 @@
  */
 package net.sf.opk.beans.util;
 
-import java.beans.BeanInfo;
-import java.beans.IntrospectionException;
-import java.beans.Introspector;
-import java.beans.PropertyDescriptor;
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
 
 import static java.lang.String.format;
@@ -36,63 +32,69 @@ import static java.lang.String.format;
 public final class BeanUtil
 {
 	/**
-	 * Cache for bean properties.
+	 * Find all properties for a bean class.
+	 *
+	 * @param beanClass the bean class to introspect
+	 * @return the properties of the class, mapped by name (the map is immutable)
+	 * @see BeanIntrospector#getProperties(Class)
 	 */
-	private static final Cache<Class<?>, Map<String, PropertyDescriptor>> PROPERTY_CACHE = new Cache<>();
+	public static Map<String, PropertyMetadata> findProperties(Class<?> beanClass)
+	{
+		return BeanIntrospector.getProperties(beanClass);
+	}
 
 
 	/**
-	 * Find all properties for a bean class.
+	 * Find a specific property of a bean class.
 	 *
 	 * @param beanClass the bean class to introspect
-	 * @return the properties of the class, mapped by name
+	 * @param name      the name of the property to find
+	 * @return the property
+	 * @throws IllegalArgumentException when the property does not exist
 	 */
-	public static Map<String, PropertyDescriptor> findProperties(Class<?> beanClass)
+	public static PropertyMetadata findProperty(Class<?> beanClass, String name)
 	{
-		Map<String, PropertyDescriptor> result = PROPERTY_CACHE.get(beanClass);
-		if (result == null)
+		PropertyMetadata property = findProperties(beanClass).get(name);
+		if (property == null)
 		{
-			result = new HashMap<>();
-			BeanInfo beanInfo = findBeanInfo(beanClass, Object.class);
-			for (PropertyDescriptor descriptor : beanInfo.getPropertyDescriptors())
-			{
-				result.put(descriptor.getName(), descriptor);
-			}
-			PROPERTY_CACHE.put(beanClass, result);
+			throw new IllegalArgumentException(format("%s has no property named '%s'", beanClass, name));
 		}
-		return result;
+		return property;
 	}
 
 
-	static BeanInfo findBeanInfo(Class<?> beanClass, Class<?> stopClass)
+	/**
+	 * Find the annotations of a property of a bean class. These are the annotations on the field with the same name as
+	 * the property (if any), followed by those on the getter and setter.
+	 *
+	 * @param beanClass the bean class to introspect
+	 * @param name      the name of the property to find the annotations of
+	 * @return the annotations of the property (do not modify the array)
+	 * @throws IllegalArgumentException when the property does not exist
+	 */
+	public static Annotation[] findAnnotations(Class<?> beanClass, String name)
 	{
-		try
-		{
-			return Introspector.getBeanInfo(beanClass, stopClass);
-		}
-		catch (IntrospectionException e)
-		{
-			throw new IllegalArgumentException(String.format("Failed to get the bean info of %s up to %s.", beanClass,
-			                                                 stopClass), e);
-		}
+		return findProperty(beanClass, name).getAnnotations();
 	}
 
 
 	/**
-	 * Find a specific property of a bean class.
+	 * Find an annotation of a specific type.
 	 *
-	 * @param beanClass the bean class to introspect
-	 * @param name      the name of the property to find
-	 * @return the property, or null if it does not exist
+	 * @param annotations    the annotations to search
+	 * @param annotationType the type of annotation to find
+	 * @return the first annotation of the given type, or {@code null} if there is none
 	 */
-	public static PropertyDescriptor findProperty(Class<?> beanClass, String name)
+	public static <A extends Annotation> A findAnnotation(Annotation[] annotations, Class<A> annotationType)
 	{
-		PropertyDescriptor descriptor = findProperties(beanClass).get(name);
-		if (descriptor == null)
+		for (Annotation annotation : annotations)
 		{
-			throw new IllegalArgumentException(format("%s has no property named '%s'", beanClass, name));
+			if (annotationType.isInstance(annotation))
+			{
+				return annotationType.cast(annotation);
+			}
 		}
-		return descriptor;
+		return null;
 	}
 
 
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+/**
+ * A snapshot of the usage statistics of a cache.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class CacheStatistics
+{
+	private final long hits;
+	private final long misses;
+	private final int size;
+	private final int maximumSize;
+
+
+	/**
+	 * Create a statistics snapshot.
+	 *
+	 * @param hits        the number of lookups that found a value
+	 * @param misses      the number of lookups that did not find a value
+	 * @param size        the current number of entries
+	 * @param maximumSize the maximum number of entries
+	 */
+	public CacheStatistics(long hits, long misses, int size, int maximumSize)
+	{
+		this.hits = hits;
+		this.misses = misses;
+		this.size = size;
+		this.maximumSize = maximumSize;
+	}
+
+
+	public long getHits()
+	{
+		return hits;
+	}
+
+
+	public long getMisses()
+	{
+		return misses;
+	}
+
+
+	/**
+	 * Get the fraction of lookups that found a value.
+	 *
+	 * @return the hit rate, between 0 and 1 (inclusive); 0 if there were no lookups yet
+	 */
+	public double getHitRate()
+	{
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double)hits / lookups;
+	}
+
+
+	public int getSize()
+	{
+		return size;
+	}
+
+
+	public int getMaximumSize()
+	{
+		return maximumSize;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("CacheStatistics{hits=%d, misses=%d, hitRate=%.3f, size=%d/%d}", hits, misses,
+		                     getHitRate(), size, maximumSize);
+	}
+}
@@ -15,25 +15,30 @@
  */
 package net.sf.opk.beans.util;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 
-import com.fasterxml.classmate.MemberResolver;
 import com.fasterxml.classmate.ResolvedType;
-import com.fasterxml.classmate.ResolvedTypeWithMembers;
 import com.fasterxml.classmate.TypeBindings;
 import com.fasterxml.classmate.TypeResolver;
-import com.fasterxml.classmate.members.ResolvedMethod;
 
 import static java.lang.String.format;
 
 
 /**
- * Utility class for generics.
+ * <p>Utility class for generics.</p>
+ *
+ * <p>The resolved types returned by this class are interned: equal types are the same instance. This makes comparing
+ * them (and thus looking them up in caches) cheap, as {@code equals(...)} returns early for identical instances.</p>
+ *
+ * <p>All caches use weak references, so they do not prevent classes (and their class loaders) from being unloaded.</p>
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
@@ -44,13 +49,15 @@ public final class GenericsUtil
 	 */
 	private static final TypeResolver TYPE_RESOLVER = new TypeResolver();
 	/**
-	 * Generics resolver for type members.
+	 * The interned resolved types. Guarded by itself.
 	 */
-	private static final MemberResolver MEMBER_RESOLVER = new MemberResolver(TYPE_RESOLVER);
+	private static final Cache<ResolvedType, ResolvedType> INTERNED_TYPES = new Cache<>();
 	/**
-	 * Cache for resolved method return types.
+	 * Cache for resolved method return types, per type and method. Guarded by itself. The return types are weak
+	 * references, as they may be the type itself (which would then never be garbage collected).
 	 */
-	private static final Cache<ResolvedType, Map<Method, ResolvedType>> RETURN_TYPE_CACHE = new Cache<>();
+	private static final Map<ResolvedType, Map<Method, Reference<ResolvedType>>> RETURN_TYPE_CACHE =
+			new WeakHashMap<>();
 
 
 	/**
@@ -62,7 +69,7 @@ public final class GenericsUtil
 	 */
 	public static ResolvedType resolveType(Class<?> type, Class<?>... typeParameters)
 	{
-		return TYPE_RESOLVER.resolve(type, typeParameters);
+		return intern(TYPE_RESOLVER.resolve(type, typeParameters));
 	}
 
 
@@ -80,12 +87,34 @@ public final class GenericsUtil
 		ResolvedType[] typeParameters = new ResolvedType[otherTypeParameters.length + 1];
 		typeParameters[0] = firstTypeParameter;
 		System.arraycopy(otherTypeParameters, 0, typeParameters, 1, otherTypeParameters.length);
-		return TYPE_RESOLVER.resolve(type, typeParameters);
+		return intern(TYPE_RESOLVER.resolve(type, typeParameters));
+	}
+
+
+	/**
+	 * Intern a resolved type: return the canonical instance of all equal resolved types.
+	 *
+	 * @param type the resolved type to intern
+	 * @return the interned resolved type
+	 */
+	public static ResolvedType intern(ResolvedType type)
+	{
+		synchronized (INTERNED_TYPES)
+		{
+			ResolvedType internedType = INTERNED_TYPES.get(type);
+			if (internedType == null)
+			{
+				internedType = type;
+				INTERNED_TYPES.put(type, type);
+			}
+			return internedType;
+		}
 	}
 
 
 	/**
-	 * Resolve a method return type.
+	 * Resolve a method return type. Only the return type of the method itself is resolved, using the type parameters of
+	 * the class declaring the method.
 	 *
 	 * @param type   the type the method was found on
 	 * @param method the method to resolve
@@ -93,42 +122,90 @@ public final class GenericsUtil
 	 */
 	public static ResolvedType resolveReturnType(ResolvedType type, Method method)
 	{
-		ResolvedType actualType;
-		if (type.canCreateSubtype(method.getDeclaringClass()))
+		ResolvedType internedType = intern(type);
+		synchronized (RETURN_TYPE_CACHE)
 		{
-			actualType = TYPE_RESOLVER.resolveSubtype(type, method.getDeclaringClass());
+			Map<Method, Reference<ResolvedType>> returnTypeByMethod = RETURN_TYPE_CACHE.get(internedType);
+			if (returnTypeByMethod != null)
+			{
+				Reference<ResolvedType> reference = returnTypeByMethod.get(method);
+				ResolvedType resolvedReturnType = reference == null ? null : reference.get();
+				if (resolvedReturnType != null)
+				{
+					return resolvedReturnType;
+				}
+			}
 		}
-		else
+
+		ResolvedType resolvedReturnType = intern(doResolveReturnType(internedType, method));
+		synchronized (RETURN_TYPE_CACHE)
 		{
-			actualType = type;
+			Map<Method, Reference<ResolvedType>> returnTypeByMethod = RETURN_TYPE_CACHE.get(internedType);
+			if (returnTypeByMethod == null)
+			{
+				returnTypeByMethod = new HashMap<>();
+				RETURN_TYPE_CACHE.put(internedType, returnTypeByMethod);
+			}
+			returnTypeByMethod.put(method, new WeakReference<>(resolvedReturnType));
 		}
+		return resolvedReturnType;
+	}
 
-		Map<Method, ResolvedType> returnTypeByMethod = RETURN_TYPE_CACHE.get(actualType);
-		if (returnTypeByMethod == null)
+
+	private static ResolvedType doResolveReturnType(ResolvedType type, Method method)
+	{
+		Class<?> declaringClass = method.getDeclaringClass();
+		ResolvedType actualType;
+		if (type.canCreateSubtype(declaringClass))
 		{
-			returnTypeByMethod = findReturnTypesByMethod(actualType);
-			RETURN_TYPE_CACHE.put(actualType, returnTypeByMethod);
+			actualType = TYPE_RESOLVER.resolveSubtype(type, declaringClass);
+		}
+		else
+		{
+			actualType = type;
 		}
 
-		ResolvedType resolvedReturnType = returnTypeByMethod.get(method);
-		if (resolvedReturnType == null)
+		ResolvedType declaringType = findSupertype(actualType, declaringClass);
+		if (declaringType == null)
 		{
 			throw new IllegalArgumentException(format("%s does not define a method %s", actualType, method));
 		}
-		return resolvedReturnType;
+		return TYPE_RESOLVER.resolve(method.getGenericReturnType(), declaringType.getTypeBindings());
 	}
 
 
-	private static Map<Method, ResolvedType> findReturnTypesByMethod(ResolvedType type)
+	/**
+	 * Find a supertype (or the type itself) of a resolved type.
+	 *
+	 * @param type            the type to search the hierarchy of
+	 * @param erasedSupertype the erased supertype to find
+	 * @return the resolved supertype, or {@code null} if {@code erasedSupertype} is not a supertype of {@code type}
+	 */
+	private static ResolvedType findSupertype(ResolvedType type, Class<?> erasedSupertype)
 	{
-		Map<Method, ResolvedType> returnTypeByMethod = new HashMap<>();
+		if (type.getErasedType().equals(erasedSupertype))
+		{
+			return type;
+		}
 
-		ResolvedTypeWithMembers resolvedTypeWithMembers = MEMBER_RESOLVER.resolve(type, null, null);
-		for (ResolvedMethod resolvedMethod : resolvedTypeWithMembers.getMemberMethods())
+		ResolvedType supertype = null;
+		if (erasedSupertype.isAssignableFrom(type.getErasedType()))
 		{
-			returnTypeByMethod.put(resolvedMethod.getRawMember(), resolvedMethod.getReturnType());
+			ResolvedType parentClass = type.getParentClass();
+			if (parentClass != null)
+			{
+				supertype = findSupertype(parentClass, erasedSupertype);
+			}
+			for (ResolvedType implementedInterface : type.getImplementedInterfaces())
+			{
+				if (supertype != null)
+				{
+					break;
+				}
+				supertype = findSupertype(implementedInterface, erasedSupertype);
+			}
 		}
-		return returnTypeByMethod;
+		return supertype;
 	}
 
 
@@ -174,7 +251,7 @@ public final class GenericsUtil
 				typeParameter = TYPE_RESOLVER.resolve(firstUpperBound, TypeBindings.emptyBindings());
 			}
 		}
-		return typeParameter;
+		return intern(typeParameter);
 	}
 
 
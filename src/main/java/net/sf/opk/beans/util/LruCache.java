@@ -0,0 +1,136 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * A thread-safe cache with a maximum size. When full, the least recently used entry is evicted. Unlike {@link Cache},
+ * it holds its keys and values with strong references, and it keeps statistics.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class LruCache<K, V>
+{
+	/**
+	 * Internal cache, in access order.
+	 */
+	private final Map<K, V> internalCache;
+	/**
+	 * The maximum number of entries in the cache.
+	 */
+	private final int maximumSize;
+	/**
+	 * The number of lookups that found a value.
+	 */
+	private long hits = 0;
+	/**
+	 * The number of lookups that did not find a value.
+	 */
+	private long misses = 0;
+
+
+	/**
+	 * Create a cache.
+	 *
+	 * @param maximumSize the maximum number of entries in the cache
+	 */
+	public LruCache(final int maximumSize)
+	{
+		if (maximumSize < 1)
+		{
+			throw new IllegalArgumentException("The maximum size must be positive.");
+		}
+		this.maximumSize = maximumSize;
+		internalCache = new LinkedHashMap<K, V>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, V> eldest)
+			{
+				return size() > maximumSize;
+			}
+		};
+	}
+
+
+	/**
+	 * Put a key-value pair in the cache. If the cache is full, the least recently used entry is evicted.
+	 *
+	 * @param key   the key to store
+	 * @param value the value to store
+	 */
+	public synchronized void put(K key, V value)
+	{
+		internalCache.put(key, value);
+	}
+
+
+	/**
+	 * Get a value from the cache.
+	 *
+	 * @param key the key used to store the value
+	 * @return the value from the cache, or {@code null} if there is no value
+	 */
+	public synchronized V get(K key)
+	{
+		V value = internalCache.get(key);
+		if (value == null)
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		return value;
+	}
+
+
+	/**
+	 * Remove a value from the cache.
+	 *
+	 * @param key the key used to store the value
+	 */
+	public synchronized void remove(K key)
+	{
+		internalCache.remove(key);
+	}
+
+
+	/**
+	 * Remove all values from the cache. The statistics are not reset.
+	 */
+	public synchronized void clear()
+	{
+		internalCache.clear();
+	}
+
+
+	/**
+	 * Get the current usage statistics of the cache.
+	 *
+	 * @return a snapshot of the cache statistics
+	 */
+	public synchronized CacheStatistics getStatistics()
+	{
+		return new CacheStatistics(hits, misses, internalCache.size(), maximumSize);
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+
+
+/**
+ * Immutable metadata of a bean property, as found by the {@link BeanIntrospector}. A property can have a read method
+ * (getter), a write method (setter), and if it is an indexed property also an indexed read and write method.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public final class PropertyMetadata
+{
+	private final String name;
+	private final Class<?> propertyType;
+	private final Method readMethod;
+	private final Method writeMethod;
+	private final Method indexedReadMethod;
+	private final Method indexedWriteMethod;
+	private final Annotation[] annotations;
+
+
+	/**
+	 * Create property metadata.
+	 *
+	 * @param name               the property name
+	 * @param propertyType       the property type; for properties with only indexed methods, the element type
+	 * @param readMethod         the read method, if any
+	 * @param writeMethod        the write method, if any
+	 * @param indexedReadMethod  the indexed read method, if any
+	 * @param indexedWriteMethod the indexed write method, if any
+	 * @param annotations        the annotations of the property field and methods
+	 */
+	PropertyMetadata(String name, Class<?> propertyType, Method readMethod, Method writeMethod,
+	                 Method indexedReadMethod, Method indexedWriteMethod, Annotation[] annotations)
+	{
+		this.name = name;
+		this.propertyType = propertyType;
+		this.readMethod = readMethod;
+		this.writeMethod = writeMethod;
+		this.indexedReadMethod = indexedReadMethod;
+		this.indexedWriteMethod = indexedWriteMethod;
+		this.annotations = annotations;
+	}
+
+
+	public String getName()
+	{
+		return name;
+	}
+
+
+	/**
+	 * Get the property type. For properties with only indexed methods, this is the type of the elements.
+	 *
+	 * @return the property type
+	 */
+	public Class<?> getPropertyType()
+	{
+		return propertyType;
+	}
+
+
+	public Method getReadMethod()
+	{
+		return readMethod;
+	}
+
+
+	public Method getWriteMethod()
+	{
+		return writeMethod;
+	}
+
+
+	public Method getIndexedReadMethod()
+	{
+		return indexedReadMethod;
+	}
+
+
+	public Method getIndexedWriteMethod()
+	{
+		return indexedWriteMethod;
+	}
+
+
+	/**
+	 * Determine if this is an indexed property, i.e. if it has an indexed read or write method.
+	 *
+	 * @return {@code true} if this is an indexed property, {@code false} otherwise
+	 */
+	public boolean isIndexed()
+	{
+		return indexedReadMethod != null || indexedWriteMethod != null;
+	}
+
+
+	/**
+	 * Get the annotations of the property. These are the annotations on the field with the same name as the property
+	 * (if any), followed by those on the read, write and indexed methods.
+	 *
+	 * @return the annotations of the property (do not modify the array)
+	 */
+	public Annotation[] getAnnotations()
+	{
+		return annotations;
+	}
+
+
+	@Override
+	public String toString()
+	{
+		return String.format("PropertyMetadata{name=%s, propertyType=%s}", name, propertyType.getName());
+	}
+}
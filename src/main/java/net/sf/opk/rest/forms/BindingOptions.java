@@ -0,0 +1,268 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Options for applying form values to a bean, via {@link HTMLForm#applyValuesTo(String, Object, BindingOptions)}.
+ * Instances are immutable: the {@code with...} methods return a copy with the option changed.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public final class BindingOptions
+{
+	/**
+	 * The default options, as used by {@link HTMLForm#applyValuesTo(String, Object)}.
+	 */
+	public static final BindingOptions DEFAULTS = new BindingOptions();
+	/**
+	 * Whether to only call setters for values that changed.
+	 */
+	private boolean dirtyChecking;
+	/**
+	 * How to validate the bean after applying the form values.
+	 */
+	private ValidationMode validationMode;
+	/**
+	 * The validation groups to validate (an empty array means the default group).
+	 */
+	private Class<?>[] groups;
+	/**
+	 * The number of constraint violations after which binding stops.
+	 */
+	private int maxViolations;
+	/**
+	 * The time (in nanoseconds) after which binding stops, or 0 for no limit.
+	 */
+	private long timeBudgetNanos;
+	/**
+	 * The executor to validate large cascaded lists with, or {@code null} to validate on the calling thread only.
+	 */
+	private Executor validationExecutor;
+
+
+	private BindingOptions()
+	{
+		dirtyChecking = false;
+		validationMode = ValidationMode.FULL;
+		groups = new Class<?>[0];
+		maxViolations = Integer.MAX_VALUE;
+		timeBudgetNanos = 0;
+		validationExecutor = null;
+	}
+
+
+	private BindingOptions(BindingOptions options)
+	{
+		dirtyChecking = options.dirtyChecking;
+		validationMode = options.validationMode;
+		groups = options.groups;
+		maxViolations = options.maxViolations;
+		timeBudgetNanos = options.timeBudgetNanos;
+		validationExecutor = options.validationExecutor;
+	}
+
+
+	/**
+	 * <p>Enable or disable dirty checking. When enabled, each converted form value is compared to the current property
+	 * value, and the property is only set (and validated) if the value changed. This prevents needlessly marking
+	 * entities as modified, for example.</p>
+	 *
+	 * <p>Values are compared using {@link java.util.Objects#deepEquals(Object, Object)}.</p>
+	 *
+	 * @param dirtyChecking whether to only set properties whose value changed
+	 * @return a copy of these options, with dirty checking enabled or disabled
+	 */
+	public BindingOptions withDirtyChecking(boolean dirtyChecking)
+	{
+		BindingOptions options = new BindingOptions(this);
+		options.dirtyChecking = dirtyChecking;
+		return options;
+	}
+
+
+	/**
+	 * Determine if dirty checking is enabled.
+	 *
+	 * @return {@code true} if properties are only set when their value changes, {@code false} otherwise
+	 * @see #withDirtyChecking(boolean)
+	 */
+	public boolean isDirtyChecking()
+	{
+		return dirtyChecking;
+	}
+
+
+	/**
+	 * Set how to validate the bean after applying the form values.
+	 *
+	 * @param validationMode the validation mode to use
+	 * @return a copy of these options, with the validation mode changed
+	 */
+	public BindingOptions withValidationMode(ValidationMode validationMode)
+	{
+		if (validationMode == null)
+		{
+			throw new IllegalArgumentException("The validation mode cannot be null.");
+		}
+		BindingOptions options = new BindingOptions(this);
+		options.validationMode = validationMode;
+		return options;
+	}
+
+
+	/**
+	 * Get the validation mode.
+	 *
+	 * @return how the bean is validated after applying the form values
+	 */
+	public ValidationMode getValidationMode()
+	{
+		return validationMode;
+	}
+
+
+	/**
+	 * Set the validation groups to validate. This is useful for multi-step forms (wizards), where each step validates
+	 * only its own group.
+	 *
+	 * @param groups the validation groups to validate; if none are given, the default group is validated
+	 * @return a copy of these options, with the validation groups changed
+	 */
+	public BindingOptions withGroups(Class<?>... groups)
+	{
+		for (Class<?> group : groups)
+		{
+			if (group == null)
+			{
+				throw new IllegalArgumentException("The validation groups cannot be null.");
+			}
+		}
+		BindingOptions options = new BindingOptions(this);
+		options.groups = groups.clone();
+		return options;
+	}
+
+
+	/**
+	 * Get the validation groups.
+	 *
+	 * @return the validation groups to validate; an empty array means the default group
+	 */
+	public Class<?>[] getGroups()
+	{
+		return groups.clone();
+	}
+
+
+	/**
+	 * Set the maximum number of constraint violations. Once this many form values could not be converted or have
+	 * failed validation, binding stops: the remaining form values are not applied, and the remaining properties are
+	 * not validated.
+	 *
+	 * @param maxViolations the maximum number of constraint violations to report (at least 1)
+	 * @return a copy of these options, with the maximum number of constraint violations changed
+	 */
+	public BindingOptions withMaxViolations(int maxViolations)
+	{
+		if (maxViolations < 1)
+		{
+			throw new IllegalArgumentException("The maximum number of violations must be positive.");
+		}
+		BindingOptions options = new BindingOptions(this);
+		options.maxViolations = maxViolations;
+		return options;
+	}
+
+
+	/**
+	 * Get the maximum number of constraint violations.
+	 *
+	 * @return the number of constraint violations after which binding stops ({@link Integer#MAX_VALUE} by default)
+	 */
+	public int getMaxViolations()
+	{
+		return maxViolations;
+	}
+
+
+	/**
+	 * Set the time budget for binding. When it is exceeded, binding stops: the remaining form values are not applied,
+	 * and the bean is not validated (any further). The budget is checked between properties, so it is a soft limit:
+	 * converting or validating a single property is never interrupted.
+	 *
+	 * @param timeBudget the maximum (wall clock) time to spend, or 0 for no limit
+	 * @param unit       the unit of the time budget
+	 * @return a copy of these options, with the time budget changed
+	 */
+	public BindingOptions withTimeBudget(long timeBudget, TimeUnit unit)
+	{
+		if (timeBudget < 0)
+		{
+			throw new IllegalArgumentException("The time budget cannot be negative.");
+		}
+		BindingOptions options = new BindingOptions(this);
+		options.timeBudgetNanos = unit.toNanos(timeBudget);
+		return options;
+	}
+
+
+	/**
+	 * Get the time budget for binding.
+	 *
+	 * @param unit the unit to return the time budget in
+	 * @return the time budget, or 0 if there is no limit
+	 */
+	public long getTimeBudget(TimeUnit unit)
+	{
+		return unit.convert(timeBudgetNanos, TimeUnit.NANOSECONDS);
+	}
+
+
+	/**
+	 * <p>Enable or disable parallel validation. When enabled, the elements of large cascaded lists and arrays (for
+	 * example the lines of a bulk edit form) are split into chunks, that are validated concurrently using the executor.
+	 * See {@link net.sf.opk.rest.forms.validation.ParallelValidator} for details and restrictions.</p>
+	 *
+	 * <p>The executor should have a bounded number of threads, such as {@link
+	 * java.util.concurrent.ForkJoinPool#commonPool()}. Chunks that the executor has not started yet when the calling
+	 * thread needs their result are validated on the calling thread, so a busy executor cannot cause a deadlock.</p>
+	 *
+	 * @param executor the executor to validate with, or {@code null} to validate on the calling thread only
+	 * @return a copy of these options, with parallel validation enabled or disabled
+	 */
+	public BindingOptions withParallelValidation(Executor executor)
+	{
+		BindingOptions options = new BindingOptions(this);
+		options.validationExecutor = executor;
+		return options;
+	}
+
+
+	/**
+	 * Get the executor for parallel validation.
+	 *
+	 * @return the executor to validate large cascaded lists with, or {@code null} if parallel validation is disabled
+	 * @see #withParallelValidation(Executor)
+	 */
+	public Executor getValidationExecutor()
+	{
+		return validationExecutor;
+	}
+}
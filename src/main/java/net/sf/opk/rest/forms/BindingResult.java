@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.util.Collections;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+
+
+/**
+ * The result of applying form values to a bean, via {@link HTMLForm#applyValuesTo(String, Object, BindingOptions)}.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class BindingResult<T>
+{
+	private final Set<ConstraintViolation<T>> constraintViolations;
+	private final Set<String> modifiedFields;
+	private final boolean complete;
+	private final ViolationIndex<T> violationIndex;
+
+
+	/**
+	 * Create a binding result.
+	 *
+	 * @param constraintViolations the constraint violations
+	 * @param modifiedFields       the names of the form fields whose properties have been set
+	 * @param complete             whether all form values were applied and validated
+	 * @param violationIndex       the constraint violations, mapped by form field name
+	 */
+	public BindingResult(Set<ConstraintViolation<T>> constraintViolations, Set<String> modifiedFields,
+	                     boolean complete, ViolationIndex<T> violationIndex)
+	{
+		this.constraintViolations = constraintViolations;
+		this.modifiedFields = Collections.unmodifiableSet(modifiedFields);
+		this.complete = complete;
+		this.violationIndex = violationIndex;
+	}
+
+
+	/**
+	 * Get the constraint violations. Their paths start at the form root.
+	 *
+	 * @return a (hopefully empty) set of constraint violations
+	 */
+	public Set<ConstraintViolation<T>> getConstraintViolations()
+	{
+		return constraintViolations;
+	}
+
+
+	/**
+	 * Get the names of the form fields whose properties have been set, in the order they were applied. With
+	 * {@linkplain BindingOptions#withDirtyChecking(boolean) dirty checking}, these are the fields whose value changed.
+	 *
+	 * @return the names of the modified form fields (the set is immutable)
+	 */
+	public Set<String> getModifiedFields()
+	{
+		return modifiedFields;
+	}
+
+
+	/**
+	 * Determine if binding was completed. Binding stops early when the {@linkplain
+	 * BindingOptions#withMaxViolations(int) maximum number of violations} is reached, or when the {@linkplain
+	 * BindingOptions#withTimeBudget(long, java.util.concurrent.TimeUnit) time budget} is exceeded.
+	 *
+	 * @return {@code true} if all form values were applied and validated, {@code false} if binding stopped early
+	 */
+	public boolean isComplete()
+	{
+		return complete;
+	}
+
+
+	/**
+	 * Get the constraint violations, mapped by the name of the form field they apply to. This is convenient for
+	 * views, as they need not match violations to fields themselves.
+	 *
+	 * @return the index of constraint violations
+	 * @see net.sf.opk.rest.pages.ResourceForward#withViolations(ViolationIndex)
+	 */
+	public ViolationIndex<T> getViolationIndex()
+	{
+		return violationIndex;
+	}
+}
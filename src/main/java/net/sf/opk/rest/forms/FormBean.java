@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+
+/**
+ * <p>Marks a class as a form bean: a bean that form data is applied to using {@link HTMLForm#applyValuesTo(Object)}.
+ * When the application starts, the {@link FormBeanExtension} warms up the caches used to apply form data to form
+ * beans, so the first requests after a deployment are not slower than the others.</p>
+ *
+ * <p>Form beans can also be configured without this annotation, using the system property {@value
+ * FormBeanExtension#FORM_BEANS_PROPERTY}.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface FormBean
+{
+	/**
+	 * The depth to which nested beans are warmed up. A depth of 1 means only the properties of the form bean itself.
+	 */
+	int depth() default FormBeanWarmup.DEFAULT_DEPTH;
+}
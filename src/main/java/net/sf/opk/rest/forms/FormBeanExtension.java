@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.enterprise.context.spi.CreationalContext;
+import javax.enterprise.event.Observes;
+import javax.enterprise.inject.spi.AfterDeploymentValidation;
+import javax.enterprise.inject.spi.Bean;
+import javax.enterprise.inject.spi.BeanManager;
+import javax.enterprise.inject.spi.Extension;
+import javax.enterprise.inject.spi.ProcessAnnotatedType;
+
+import net.sf.opk.beans.ConversionService;
+import net.sf.opk.beans.PropertyParser;
+
+import static java.lang.String.format;
+
+
+/**
+ * <p>CDI extension to warm up the caches used to apply form data to form beans when the application starts (see
+ * {@link FormBeanWarmup}). The caches are warmed up after deployment validation, i.e. before the application handles
+ * its first request.</p>
+ *
+ * <p>The form beans are the classes annotated with {@link FormBean @FormBean}, plus those listed (comma separated)
+ * in the system property {@value #FORM_BEANS_PROPERTY}. The latter are warmed up to the depth in the system property
+ * {@value #DEPTH_PROPERTY}, or {@value FormBeanWarmup#DEFAULT_DEPTH} if not set.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class FormBeanExtension implements Extension
+{
+	/**
+	 * System property with a comma separated list of form bean classes to warm up.
+	 */
+	public static final String FORM_BEANS_PROPERTY = "net.sf.opk.rest.forms.formBeans";
+	/**
+	 * System property with the depth to warm up the form bean classes in {@value #FORM_BEANS_PROPERTY} to.
+	 */
+	public static final String DEPTH_PROPERTY = "net.sf.opk.rest.forms.formBeans.depth";
+	/**
+	 * Logger for this class.
+	 */
+	private static final Logger LOGGER = Logger.getLogger(FormBeanExtension.class.getName());
+	/**
+	 * The form bean classes found so far, with the depth to warm them up to.
+	 */
+	private final Map<Class<?>, Integer> formBeans = new LinkedHashMap<>();
+
+
+	/**
+	 * Register the annotated form beans.
+	 *
+	 * @param event the event for a discovered type
+	 */
+	public <T> void processAnnotatedType(@Observes ProcessAnnotatedType<T> event)
+	{
+		FormBean formBean = event.getAnnotatedType().getAnnotation(FormBean.class);
+		if (formBean != null)
+		{
+			formBeans.put(event.getAnnotatedType().getJavaClass(), formBean.depth());
+		}
+	}
+
+
+	/**
+	 * Warm up the caches for all form beans.
+	 *
+	 * @param event       the event signalling deployment validation has completed
+	 * @param beanManager the bean manager
+	 */
+	public void afterDeploymentValidation(@Observes AfterDeploymentValidation event, BeanManager beanManager)
+	{
+		addConfiguredFormBeans();
+		if (formBeans.isEmpty())
+		{
+			return;
+		}
+
+		long start = System.nanoTime();
+		FormBeanWarmup warmup = new FormBeanWarmup(getReference(beanManager, PropertyParser.class),
+		                                           getReference(beanManager, ConversionService.class));
+		int admittedPaths = 0;
+		for (Map.Entry<Class<?>, Integer> formBean : formBeans.entrySet())
+		{
+			try
+			{
+				admittedPaths += warmup.warmUp(formBean.getKey(), formBean.getValue());
+			}
+			catch (RuntimeException e)
+			{
+				LOGGER.log(Level.WARNING, format("Failed to warm up the caches for form bean %s", formBean.getKey()), e);
+			}
+		}
+		long duration = (System.nanoTime() - start) / 1000000;
+		LOGGER.info(format("Warmed up %d form bean(s) with %d property path(s) in %d ms.", formBeans.size(),
+		                   admittedPaths, duration));
+	}
+
+
+	private void addConfiguredFormBeans()
+	{
+		String classNames = System.getProperty(FORM_BEANS_PROPERTY, "").trim();
+		if (classNames.isEmpty())
+		{
+			return;
+		}
+
+		int depth = Integer.getInteger(DEPTH_PROPERTY, FormBeanWarmup.DEFAULT_DEPTH);
+		ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+		for (String className : classNames.split("\\s*,\\s*"))
+		{
+			try
+			{
+				formBeans.put(Class.forName(className, false, classLoader), depth);
+			}
+			catch (ClassNotFoundException e)
+			{
+				LOGGER.warning(format("Cannot warm up the caches for form bean %s: class not found.", className));
+			}
+		}
+	}
+
+
+	private static <T> T getReference(BeanManager beanManager, Class<T> type)
+	{
+		Bean<?> bean = beanManager.resolve(beanManager.getBeans(type));
+		CreationalContext<?> creationalContext = beanManager.createCreationalContext(bean);
+		return type.cast(beanManager.getReference(bean, type, creationalContext));
+	}
+}
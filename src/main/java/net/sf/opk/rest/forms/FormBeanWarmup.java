@@ -0,0 +1,177 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.classmate.ResolvedType;
+
+import net.sf.opk.beans.ConversionService;
+import net.sf.opk.beans.PropertyParser;
+import net.sf.opk.beans.util.BeanUtil;
+import net.sf.opk.beans.util.GenericsUtil;
+import net.sf.opk.beans.util.PropertyMetadata;
+
+import static net.sf.opk.beans.util.GenericsUtil.resolveReturnType;
+
+
+/**
+ * <p>Warms up the caches used to apply form data to form beans. This walks the property graph of a form bean, and
+ * for each property it introspects the bean class, resolves the (generic) property type and selects the converter.
+ * The paths of properties that can be converted to are admitted to the {@link PropertyParser} cache.</p>
+ *
+ * <p>Nested beans are walked up to a maximum depth. The elements of collections and arrays are walked as well, but as
+ * their paths contain an index, these paths are not admitted.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class FormBeanWarmup
+{
+	/**
+	 * The default depth to which nested beans are warmed up.
+	 */
+	public static final int DEFAULT_DEPTH = 3;
+	/**
+	 * The property parser whose cache to fill.
+	 */
+	private final PropertyParser propertyParser;
+	/**
+	 * The conversion service whose converters to select.
+	 */
+	private final ConversionService conversionService;
+
+
+	/**
+	 * Create a warmup for form beans.
+	 *
+	 * @param propertyParser    the property parser whose cache to fill
+	 * @param conversionService the conversion service whose converters to select
+	 */
+	public FormBeanWarmup(PropertyParser propertyParser, ConversionService conversionService)
+	{
+		this.propertyParser = propertyParser;
+		this.conversionService = conversionService;
+	}
+
+
+	/**
+	 * Warm up the caches for a form bean.
+	 *
+	 * @param beanClass the form bean class
+	 * @param depth     the depth to which nested beans are warmed up; 1 means only the properties of the bean itself
+	 * @return the number of property paths that have been admitted to the property parser cache
+	 */
+	public int warmUp(Class<?> beanClass, int depth)
+	{
+		return warmUp(GenericsUtil.resolveType(beanClass), "", depth, new HashSet<Class<?>>());
+	}
+
+
+	/**
+	 * Warm up the caches for the properties of a (nested) bean.
+	 *
+	 * @param beanType the bean type
+	 * @param prefix   the path prefix of the bean properties, or {@code null} if the paths should not be admitted
+	 * @param depth    the depth to which nested beans are warmed up
+	 * @param path     the bean classes on the path from the form bean to this bean; used to detect cycles
+	 * @return the number of property paths that have been admitted to the property parser cache
+	 */
+	private int warmUp(ResolvedType beanType, String prefix, int depth, Set<Class<?>> path)
+	{
+		Class<?> beanClass = beanType.getErasedType();
+		if (!path.add(beanClass))
+		{
+			return 0;
+		}
+
+		int admittedPaths = 0;
+		for (PropertyMetadata property : BeanUtil.findProperties(beanClass).values())
+		{
+			Method readMethod = property.getReadMethod();
+			if (readMethod == null)
+			{
+				continue;
+			}
+			String propertyPath = prefix == null ? null : prefix + property.getName();
+			ResolvedType propertyType = resolveReturnType(beanType, readMethod);
+			Annotation[] annotations = property.getAnnotations();
+
+			ResolvedType elementType = findElementType(propertyType);
+			if (elementType != null)
+			{
+				// Collections and arrays: these can be converted to if their elements can.
+				if (conversionService.canConvert(elementType, annotations))
+				{
+					conversionService.canConvert(propertyType, annotations);
+					admittedPaths += admit(propertyPath, property);
+				}
+				else if (depth > 1 && isBean(elementType))
+				{
+					admittedPaths += warmUp(elementType, null, depth - 1, path);
+				}
+			}
+			else if (conversionService.canConvert(propertyType, annotations))
+			{
+				admittedPaths += admit(propertyPath, property);
+			}
+			else if (depth > 1 && isBean(propertyType))
+			{
+				String nestedPrefix = propertyPath == null ? null : propertyPath + '.';
+				admittedPaths += warmUp(propertyType, nestedPrefix, depth - 1, path);
+			}
+		}
+
+		path.remove(beanClass);
+		return admittedPaths;
+	}
+
+
+	private int admit(String propertyPath, PropertyMetadata property)
+	{
+		if (propertyPath == null || property.getWriteMethod() == null)
+		{
+			return 0;
+		}
+		propertyParser.admit(propertyPath, propertyParser.parse(propertyPath));
+		return 1;
+	}
+
+
+	private ResolvedType findElementType(ResolvedType type)
+	{
+		if (type.isArray())
+		{
+			return type.getArrayElementType();
+		}
+		else if (type.isInstanceOf(Collection.class))
+		{
+			return GenericsUtil.findTypeParameter(type, Collection.class, 0);
+		}
+		return null;
+	}
+
+
+	private boolean isBean(ResolvedType type)
+	{
+		Class<?> erasedType = type.getErasedType();
+		return !erasedType.isPrimitive() && !erasedType.isArray() && !erasedType.isEnum() &&
+		       !erasedType.getName().startsWith("java");
+	}
+}
@@ -17,23 +17,32 @@ package net.sf.opk.rest.forms;
 
 import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import javax.validation.ConstraintViolation;
 import javax.validation.MessageInterpolator;
+import javax.validation.Path;
 import javax.validation.Validator;
 
 import net.sf.opk.beans.BeanProperty;
 import net.sf.opk.beans.PropertyParser;
+import net.sf.opk.beans.PropertyTrie;
 import net.sf.opk.beans.converters.ConversionException;
 import net.sf.opk.beans.ConversionService;
+import net.sf.opk.rest.forms.validation.ConstraintMetadataCache;
+import net.sf.opk.rest.forms.validation.ParallelValidator;
 import net.sf.opk.rest.forms.validation.SimpleConstraintViolation;
 
 import static java.util.Arrays.asList;
@@ -88,6 +97,14 @@ public class HTMLForm
 	 * The message interpolator to use to translate conversion errors.
 	 */
 	private MessageInterpolator messageInterpolator;
+	/**
+	 * The constraint metadata of the validator, used to skip validating unconstrained beans and properties.
+	 */
+	private ConstraintMetadataCache constraintMetadata;
+	/**
+	 * Validator for beans with large cascaded lists, used if parallel validation is enabled.
+	 */
+	private ParallelValidator parallelValidator;
 
 
 	/**
@@ -99,11 +116,29 @@ public class HTMLForm
 	 */
 	public HTMLForm(PropertyParser propertyParser, ConversionService conversionService, Validator validator,
 	                MessageInterpolator messageInterpolator)
+	{
+		this(propertyParser, conversionService, validator, messageInterpolator, new ConstraintMetadataCache(validator));
+	}
+
+
+	/**
+	 * Create an HTMLForm.
+	 *
+	 * @param propertyParser     the {@code PropertyParser} to use for the {@link #applyValuesTo(String, Object)} method
+	 * @param conversionService  the {@code ConversionService} to use for the {@link #applyValuesTo(String, Object)}
+	 *                           method
+	 * @param validator          the {@code Validator} to use for the {@link #applyValuesTo(String, Object)} method
+	 * @param constraintMetadata the constraint metadata of the validator (shared between forms, as it is a cache)
+	 */
+	public HTMLForm(PropertyParser propertyParser, ConversionService conversionService, Validator validator,
+	                MessageInterpolator messageInterpolator, ConstraintMetadataCache constraintMetadata)
 	{
 		this.propertyParser = propertyParser;
 		this.conversionService = conversionService;
 		this.validator = validator;
 		this.messageInterpolator = messageInterpolator;
+		this.constraintMetadata = constraintMetadata;
+		parallelValidator = new ParallelValidator(validator, constraintMetadata, propertyParser);
 	}
 
 
@@ -216,8 +251,8 @@ public class HTMLForm
 	/**
 	 * <p>Apply all scalar form data to the specified bean.</p>
 	 *
-	 * <p>Each form field value is converted and validated before it is applied, and afterwards the bean as a whole is also validated after the properties
-	 * are set.</p>
+	 * <p>Each form field value is converted and applied, and afterwards the bean as a whole is validated (once). Form
+	 * field values that cannot be converted are reported as constraint violations.</p>
 	 *
 	 * @param bean the Java Bean to apply all scalar form data to
 	 * @return a (hopefully empty) set of constraint violations, whose paths start at the form root
@@ -236,14 +271,30 @@ public class HTMLForm
 	 * <p>If a prefix is specified, it is assumed to be a property whose value is the supplied bean. All form fields
 	 * that represent nested properties of the prefix will be applied to the bean as properties.</p>
 	 *
-	 * <p>In both cases, each form field value is converted and validated before it is applied, and afterwards the
-	 * bean as a whole is also validated after the properties are set.</p>
+	 * <p>In both cases, each form field value is converted and applied, and afterwards the bean as a whole is validated
+	 * (once). Form field values that cannot be converted are reported as constraint violations.</p>
 	 *
 	 * @param prefix an optional qualified Java identifier, used as field name prefix
 	 * @param bean   the Java Bean to apply the scalar form data to
 	 * @return a (hopefully empty) set of constraint violations, whose paths start at the form root
 	 */
 	public <T> Set<ConstraintViolation<T>> applyValuesTo(String prefix, T bean)
+	{
+		return applyValuesTo(prefix, bean, BindingOptions.DEFAULTS).getConstraintViolations();
+	}
+
+
+	/**
+	 * <p>Apply a subset of the scalar form data to the specified bean, as {@link #applyValuesTo(String, Object)}
+	 * does, but with the specified options. The options determine, among others, how the bean is validated: see
+	 * {@link ValidationMode}.</p>
+	 *
+	 * @param prefix  an optional qualified Java identifier, used as field name prefix
+	 * @param bean    the Java Bean to apply the scalar form data to
+	 * @param options the options to use
+	 * @return the result, with a (hopefully empty) set of constraint violations, whose paths start at the form root
+	 */
+	public <T> BindingResult<T> applyValuesTo(String prefix, final T bean, final BindingOptions options)
 	{
 		BeanProperty prefixProperty = PropertyParser.EMPTY_PROPERTY;
 		String nonNullPrefix = "";
@@ -253,65 +304,184 @@ public class HTMLForm
 			nonNullPrefix = prefix + '.';
 		}
 
-		Set<ConstraintViolation<T>> constraintViolations = new HashSet<>();
+		// Collect the properties first, so that shared property path prefixes are evaluated only once.
+		PropertyTrie<Map.Entry<String, List<String>>> properties = new PropertyTrie<>();
 		for (Map.Entry<String, List<String>> formParameter : formData.entrySet())
 		{
 			String parameterName = formParameter.getKey();
 			if (parameterName.startsWith(nonNullPrefix))
 			{
-				String propertyName = parameterName.substring(nonNullPrefix.length());
-				List<String> formValue = formParameter.getValue();
-				setBeanProperty(bean, propertyName, formValue, constraintViolations);
+				properties.add(propertyParser.parse(parameterName.substring(nonNullPrefix.length())), formParameter);
 			}
 		}
-		if (constraintViolations.isEmpty())
+
+		Binding<T> binding = new Binding<>(bean, nonNullPrefix.length(), options);
+		Set<ConstraintViolation<T>> constraintViolations;
+		if (properties.visit(bean, binding))
 		{
-			return validator.validate(bean);
+			constraintViolations = validate(binding);
 		}
 		else
 		{
-			return prefixConstraintViolationPaths(constraintViolations, prefixProperty);
+			constraintViolations = new HashSet<>(binding.conversionViolations);
 		}
+		Map<String, List<ConstraintViolation<T>>> violationsByField = new HashMap<>();
+		constraintViolations = indexConstraintViolations(constraintViolations, prefix, prefixProperty, binding,
+		                                                 violationsByField);
+		return new BindingResult<>(constraintViolations, binding.modifiedFields, binding.complete,
+		                           new ViolationIndex<>(violationsByField));
 	}
 
 
-	private <T> Set<ConstraintViolation<T>> prefixConstraintViolationPaths(Set<ConstraintViolation<T>>
-			                                                                   constraintViolations,
-	                                                                   BeanProperty prefixProperty)
+	/**
+	 * Validate a bean after applying form values to it, according to the validation mode of the binding. Stops when
+	 * the binding exceeds its limits.
+	 *
+	 * @param binding the binding of the form values
+	 * @return the constraint violations, including conversion errors
+	 */
+	private <T> Set<ConstraintViolation<T>> validate(Binding<T> binding)
 	{
-		Set<ConstraintViolation<T>> prefixedConstraintViolations = new HashSet<>();
-		for (ConstraintViolation<T> constraintViolation : constraintViolations)
+		Set<ConstraintViolation<T>> constraintViolations = new HashSet<>(binding.conversionViolations);
+		Class<?> beanClass = binding.bean.getClass();
+		Class<?>[] groups = binding.options.getGroups();
+		boolean touchedOnly = binding.options.getValidationMode() == ValidationMode.TOUCHED;
+		if (touchedOnly)
 		{
-			prefixedConstraintViolations.add(new SimpleConstraintViolation<>(constraintViolation, prefixProperty));
+			if (!hasTouchedClassConstraints(binding))
+			{
+				// Without class-level constraints, validating the touched properties suffices.
+				for (String propertyName : binding.propertiesToValidate)
+				{
+					if (!binding.isWithinLimits(constraintViolations.size()))
+					{
+						return constraintViolations;
+					}
+					binding.addViolations(constraintViolations,
+					                      validator.validateProperty(binding.bean, propertyName, groups));
+				}
+				return constraintViolations;
+			}
+		}
+		else if (!constraintMetadata.isBeanConstrained(beanClass))
+		{
+			return constraintViolations;
+		}
+		if (!binding.isWithinLimits(constraintViolations.size()))
+		{
+			return constraintViolations;
 		}
 
-		return prefixedConstraintViolations;
+		Set<ConstraintViolation<T>> beanViolations = new HashSet<>();
+		Executor executor = binding.options.getValidationExecutor();
+		Set<ConstraintViolation<T>> validationResult = executor == null ? validator.validate(binding.bean, groups) :
+		                                               parallelValidator.validate(binding.bean, executor, groups);
+		for (ConstraintViolation<T> constraintViolation : validationResult)
+		{
+			String path = propertyParser.format(constraintViolation.getPropertyPath());
+			if (touchedOnly ? isTouched(binding, path, constraintViolation) : !binding.unconvertedPaths.contains(path))
+			{
+				beanViolations.add(constraintViolation);
+			}
+		}
+		binding.addViolations(constraintViolations, beanViolations);
+		return constraintViolations;
+	}
+
+
+	/**
+	 * Determine if class-level constraints apply to a binding in {@link ValidationMode#TOUCHED} mode. These are the
+	 * class-level constraints of the bean, and those of the beans with touched properties.
+	 *
+	 * @param binding the binding of the form values
+	 * @return {@code true} if any of these beans has class-level constraints, {@code false} otherwise
+	 */
+	private boolean hasTouchedClassConstraints(Binding<?> binding)
+	{
+		if (constraintMetadata.hasClassConstraints(binding.bean.getClass()))
+		{
+			return true;
+		}
+		for (Object touchedBean : binding.touchedBeans)
+		{
+			if (constraintMetadata.hasClassConstraints(touchedBean.getClass()))
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 
 	/**
-	 * Sets a bean property. If successful, the bean is altered. If not, a {@code ConstraintViolation} is added to the
-	 * collection of constraint violations.
+	 * Determine if a constraint violation applies in {@link ValidationMode#TOUCHED} mode. This is the case for
+	 * violations of the touched properties, and for violations of the class-level constraints of the bean and of the
+	 * beans with touched properties.
 	 *
-	 * @param bean                 the bean whose property to set
-	 * @param propertyName         the property to set
-	 * @param formValue            the value(s) to set the bean property to
-	 * @param constraintViolations the collection to add constraint violations to when they arise
+	 * @param binding             the binding of the form values
+	 * @param path                the formatted path of the constraint violation
+	 * @param constraintViolation the constraint violation
+	 * @return {@code true} if the violation applies, {@code false} if not
 	 */
-	private <T> void setBeanProperty(T bean, String propertyName, List<String> formValue,
-	                             Collection<ConstraintViolation<T>> constraintViolations)
+	private static boolean isTouched(Binding<?> binding, String path, ConstraintViolation<?> constraintViolation)
 	{
-		BeanProperty property = propertyParser.parse(propertyName);
-		try
+		if (path.isEmpty() || binding.touchedPaths.contains(path))
 		{
-			Object value = conversionService.convert(formValue, property.getType(bean));
-			property.setValue(bean, value);
-			constraintViolations.addAll(validator.validateProperty(bean, propertyName));
+			return true;
 		}
-		catch (ConversionException e)
+		// Class-level constraints have the bean itself as invalid value.
+		Object leafBean = constraintViolation.getLeafBean();
+		return leafBean == constraintViolation.getInvalidValue() && binding.touchedBeans.contains(leafBean);
+	}
+
+
+	/**
+	 * Prefix the paths of constraint violations (if there is a prefix), and map them by form field name. Violations
+	 * for properties that are not in the form are mapped by their (prefixed) property path.
+	 *
+	 * @param constraintViolations the constraint violations, with paths relative to the bean
+	 * @param prefix               the prefix of the bean, if any
+	 * @param prefixProperty       the property for the prefix
+	 * @param binding              the binding of the form values
+	 * @param violationsByField    the map to add the (prefixed) constraint violations to, by form field name
+	 * @return the prefixed constraint violations
+	 */
+	private <T> Set<ConstraintViolation<T>> indexConstraintViolations(Set<ConstraintViolation<T>>
+			                                                                  constraintViolations, String prefix,
+	                                                                  BeanProperty prefixProperty, Binding<T> binding,
+	                                                                  Map<String, List<ConstraintViolation<T>>>
+			                                                                  violationsByField)
+	{
+		Set<ConstraintViolation<T>> prefixedConstraintViolations = new HashSet<>();
+		for (ConstraintViolation<T> constraintViolation : constraintViolations)
 		{
-			constraintViolations.add(new SimpleConstraintViolation<>(bean, property, formValue, e.getMessage(), messageInterpolator));
+			String path = propertyParser.format(constraintViolation.getPropertyPath());
+			String fieldName = binding.fieldNames.get(path);
+			if (fieldName == null)
+			{
+				fieldName = path;
+				if (prefix != null)
+				{
+					fieldName = path.isEmpty() || path.charAt(0) == '[' ? prefix + path : prefix + '.' + path;
+				}
+			}
+
+			ConstraintViolation<T> prefixedConstraintViolation = constraintViolation;
+			if (prefix != null)
+			{
+				prefixedConstraintViolation = new SimpleConstraintViolation<>(constraintViolation, prefixProperty);
+			}
+			prefixedConstraintViolations.add(prefixedConstraintViolation);
+
+			List<ConstraintViolation<T>> fieldViolations = violationsByField.get(fieldName);
+			if (fieldViolations == null)
+			{
+				fieldViolations = new ArrayList<>();
+				violationsByField.put(fieldName, fieldViolations);
+			}
+			fieldViolations.add(prefixedConstraintViolation);
 		}
+		return prefixedConstraintViolations;
 	}
 
 
@@ -382,6 +552,195 @@ public class HTMLForm
 	}
 
 
+	/**
+	 * The state of applying form values to a bean. Converts and sets each property it visits.
+	 */
+	private class Binding<T> implements PropertyTrie.Visitor<Map.Entry<String, List<String>>>
+	{
+		private final T bean;
+		private final int prefixLength;
+		private final BindingOptions options;
+		/**
+		 * The constraint violations for form values that could not be converted.
+		 */
+		private final Set<ConstraintViolation<T>> conversionViolations = new HashSet<>();
+		/**
+		 * The formatted paths of the properties whose form value could not be converted.
+		 */
+		private final Set<String> unconvertedPaths = new HashSet<>();
+		/**
+		 * The names of the form fields that have been visited, mapped by their formatted property path (without
+		 * prefix).
+		 */
+		private final Map<String, String> fieldNames = new HashMap<>();
+		/**
+		 * The names of the form fields that have been applied.
+		 */
+		private final Set<String> modifiedFields = new LinkedHashSet<>();
+		/**
+		 * The property names (without prefix) of the form fields that have been applied, and have constraints. Only
+		 * used for {@link ValidationMode#TOUCHED}.
+		 */
+		private final List<String> propertiesToValidate = new ArrayList<>();
+		/**
+		 * The formatted paths (without prefix) of the properties to validate. Only used for {@link
+		 * ValidationMode#TOUCHED}.
+		 */
+		private final Set<String> touchedPaths = new HashSet<>();
+		/**
+		 * The beans (by identity) with properties that have been set. Only used for {@link ValidationMode#TOUCHED}.
+		 */
+		private final Set<Object> touchedBeans = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		/**
+		 * The time ({@link System#nanoTime()}) the binding started.
+		 */
+		private final long startTime = System.nanoTime();
+		/**
+		 * The time budget of the binding in nanoseconds, or 0 if there is none.
+		 */
+		private final long timeBudget;
+		/**
+		 * Whether the binding is (still) within its limits.
+		 */
+		private boolean complete = true;
+
+
+		private Binding(T bean, int prefixLength, BindingOptions options)
+		{
+			this.bean = bean;
+			this.prefixLength = prefixLength;
+			this.options = options;
+			timeBudget = options.getTimeBudget(TimeUnit.NANOSECONDS);
+		}
+
+
+		/**
+		 * Determine if the binding can continue. Once the maximum number of violations is reached, or the time
+		 * budget is exceeded, the binding is incomplete.
+		 *
+		 * @param violationCount the number of violations found so far
+		 * @return {@code true} if the binding is within its limits, {@code false} if it must stop
+		 */
+		private boolean isWithinLimits(int violationCount)
+		{
+			if (complete && (violationCount >= options.getMaxViolations() ||
+			                 timeBudget > 0 && System.nanoTime() - startTime > timeBudget))
+			{
+				complete = false;
+			}
+			return complete;
+		}
+
+
+		/**
+		 * Add constraint violations, up to the maximum number of violations. If any violations are dropped, the
+		 * binding is incomplete.
+		 *
+		 * @param constraintViolations the violations to add to
+		 * @param newViolations        the violations to add
+		 */
+		private void addViolations(Set<ConstraintViolation<T>> constraintViolations,
+		                           Set<ConstraintViolation<T>> newViolations)
+		{
+			for (ConstraintViolation<T> constraintViolation : newViolations)
+			{
+				if (constraintViolations.size() >= options.getMaxViolations())
+				{
+					complete = false;
+					return;
+				}
+				constraintViolations.add(constraintViolation);
+			}
+		}
+
+
+		@Override
+		public boolean visit(PropertyTrie.Leaf leaf, Map.Entry<String, List<String>> formParameter)
+		{
+			if (!isWithinLimits(conversionViolations.size()))
+			{
+				return false;
+			}
+			String parameterName = formParameter.getKey();
+			String propertyName = parameterName.substring(prefixLength);
+			List<String> formValue = formParameter.getValue();
+
+			BeanProperty property = leaf.getProperty();
+			String path = propertyParser.format(property);
+			fieldNames.put(path, parameterName);
+			try
+			{
+				BeanProperty.TypedValue<Object> typedValue = leaf.getTypedValue();
+				Object value = conversionService.convert(formValue, typedValue.getType(), typedValue.getAnnotations());
+				boolean changed = !options.isDirtyChecking() || !Objects.deepEquals(value, typedValue.getValue());
+				if (changed && leaf.setValue(value))
+				{
+					modifiedFields.add(parameterName);
+					if (options.getValidationMode() == ValidationMode.TOUCHED)
+					{
+						touch(leaf, propertyName, path);
+					}
+				}
+				propertyParser.admit(propertyName, property);
+			}
+			catch (ConversionException e)
+			{
+				BeanProperty.TypedValue<Object> parentValue = leaf.getTypedParentValue();
+				Object leafBean = parentValue == null ? null : parentValue.getValue();
+				conversionViolations.add(new SimpleConstraintViolation<>(bean, leafBean, property, formValue,
+				                                                         e.getMessage(), messageInterpolator));
+				unconvertedPaths.add(path);
+			}
+			return true;
+		}
+
+
+		/**
+		 * Register a property that has been set, for {@link ValidationMode#TOUCHED}.
+		 *
+		 * @param leaf         the property, bound to the bean
+		 * @param propertyName the property name (without prefix)
+		 * @param path         the formatted property path (without prefix)
+		 */
+		private void touch(PropertyTrie.Leaf leaf, String propertyName, String path)
+		{
+			BeanProperty.TypedValue<Object> parentValue = leaf.getTypedParentValue();
+			if (parentValue != null && parentValue.getValue() != null)
+			{
+				touchedBeans.add(parentValue.getValue());
+			}
+			if (isConstrained(leaf))
+			{
+				propertiesToValidate.add(propertyName);
+				touchedPaths.add(path);
+			}
+		}
+	}
+
+
+	/**
+	 * Determine if a property may have constraints. Only named properties can be checked: for list indices and map
+	 * keys, the constraints of the list or map apply.
+	 *
+	 * @param leaf the property to check, bound to the bean
+	 * @return {@code false} if the property has no constraints, {@code true} otherwise
+	 */
+	private boolean isConstrained(PropertyTrie.Leaf leaf)
+	{
+		Path.Node lastNode = null;
+		for (Path.Node node : leaf.getProperty().toPath())
+		{
+			lastNode = node;
+		}
+		BeanProperty.TypedValue<Object> parentValue = leaf.getTypedParentValue();
+		if (lastNode == null || lastNode.isInIterable() || parentValue == null || parentValue.getValue() == null)
+		{
+			return true;
+		}
+		return constraintMetadata.isPropertyConstrained(parentValue.getValue().getClass(), lastNode.getName());
+	}
+
+
 	private class NestedIterator<T> implements Iterator<Map.Entry<String, T>>
 	{
 		/**
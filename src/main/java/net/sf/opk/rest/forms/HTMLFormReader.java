@@ -50,6 +50,8 @@ import org.jvnet.mimepull.MIMEPart;
 
 import net.sf.opk.beans.PropertyParser;
 import net.sf.opk.beans.ConversionService;
+import net.sf.opk.rest.forms.validation.CachingMessageInterpolator;
+import net.sf.opk.rest.forms.validation.ConstraintMetadataCache;
 
 import static java.lang.String.format;
 import static javax.mail.internet.MimeUtility.decodeText;
@@ -83,6 +85,7 @@ public class HTMLFormReader implements MessageBodyReader<HTMLForm>
 	private ConversionService conversionService;
 	private Validator validator;
 	private MessageInterpolator messageInterpolator;
+	private ConstraintMetadataCache constraintMetadata;
 	private UriInfo uriInfo;
 
 
@@ -109,7 +112,8 @@ public class HTMLFormReader implements MessageBodyReader<HTMLForm>
 		this.propertyParser = propertyParser;
 		this.conversionService = conversionService;
 		this.validator = validator;
-		this.messageInterpolator = messageInterpolator;
+		constraintMetadata = new ConstraintMetadataCache(validator);
+		this.messageInterpolator = new CachingMessageInterpolator(messageInterpolator);
 	}
 
 
@@ -140,7 +144,8 @@ public class HTMLFormReader implements MessageBodyReader<HTMLForm>
 	{
 		try
 		{
-			HTMLForm htmlForm = new HTMLForm(propertyParser, conversionService, validator, messageInterpolator);
+			HTMLForm htmlForm = new HTMLForm(propertyParser, conversionService, validator, messageInterpolator,
+			                                 constraintMetadata);
 
 			// Determnine the type and character set.
 
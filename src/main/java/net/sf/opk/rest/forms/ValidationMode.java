@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+/**
+ * How {@link HTMLForm#applyValuesTo(String, Object, BindingOptions)} validates a bean after applying form values to
+ * it. In all modes, each constraint is evaluated at most once.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public enum ValidationMode
+{
+	/**
+	 * Validate the entire bean (graph) once, after all values have been applied. Violations on properties whose form
+	 * value could not be converted are replaced by the conversion error. This is the default.
+	 */
+	FULL,
+	/**
+	 * Validate only the properties that have been set, and the class-level constraints of the bean and of the (nested)
+	 * beans whose properties have been set. This is useful for partial updates. Note that evaluating class-level
+	 * constraints requires validating the entire bean, so if there are any, the entire bean is validated once and only
+	 * the violations mentioned above are kept. Such beans do not benefit from this mode.
+	 */
+	TOUCHED
+}
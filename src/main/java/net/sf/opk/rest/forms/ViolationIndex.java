@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import javax.validation.ConstraintViolation;
+
+
+/**
+ * <p>An index of constraint violations, mapped by form field name. Violations of properties that were not in the form
+ * (such as missing required fields, or class-level constraints) are mapped by their formatted property path.</p>
+ *
+ * <p>As the index is an immutable map, views can look up the violations of a field with an expression like
+ * <code>${violations['address.street']}</code>. Lookups take constant time; prefix queries take logarithmic time.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public final class ViolationIndex<T> extends AbstractMap<String, List<ConstraintViolation<T>>>
+{
+	/**
+	 * The violations by field name, for lookups.
+	 */
+	private final Map<String, List<ConstraintViolation<T>>> violationsByField;
+	/**
+	 * The violations by field name, sorted for prefix queries.
+	 */
+	private final NavigableMap<String, List<ConstraintViolation<T>>> sortedViolations;
+
+
+	/**
+	 * Create an index of constraint violations.
+	 *
+	 * @param violationsByField the constraint violations, mapped by form field name (the index makes a copy)
+	 */
+	public ViolationIndex(Map<String, ? extends List<ConstraintViolation<T>>> violationsByField)
+	{
+		this.violationsByField = new HashMap<>();
+		sortedViolations = new TreeMap<>();
+		for (Map.Entry<String, ? extends List<ConstraintViolation<T>>> entry : violationsByField.entrySet())
+		{
+			List<ConstraintViolation<T>> violations = Collections.unmodifiableList(new ArrayList<>(entry.getValue()));
+			this.violationsByField.put(entry.getKey(), violations);
+			sortedViolations.put(entry.getKey(), violations);
+		}
+	}
+
+
+	/**
+	 * Get the violations of a form field.
+	 *
+	 * @param fieldName the name of a form field
+	 * @return the violations of the field, or {@code null} if there are none
+	 */
+	@Override
+	public List<ConstraintViolation<T>> get(Object fieldName)
+	{
+		return violationsByField.get(fieldName);
+	}
+
+
+	@Override
+	public boolean containsKey(Object fieldName)
+	{
+		return violationsByField.containsKey(fieldName);
+	}
+
+
+	@Override
+	public int size()
+	{
+		return violationsByField.size();
+	}
+
+
+	@Override
+	public Set<Entry<String, List<ConstraintViolation<T>>>> entrySet()
+	{
+		return Collections.unmodifiableMap(sortedViolations).entrySet();
+	}
+
+
+	/**
+	 * Get the messages of the violations of a form field.
+	 *
+	 * @param fieldName the name of a form field
+	 * @return the messages of the violations of the field (empty if there are none)
+	 */
+	public List<String> getMessages(String fieldName)
+	{
+		List<ConstraintViolation<T>> violations = violationsByField.get(fieldName);
+		if (violations == null)
+		{
+			return Collections.emptyList();
+		}
+		List<String> messages = new ArrayList<>(violations.size());
+		for (ConstraintViolation<T> violation : violations)
+		{
+			messages.add(violation.getMessage());
+		}
+		return messages;
+	}
+
+
+	/**
+	 * Get the violations of a form field and all fields nested in it. For example, the prefix {@code address} matches
+	 * {@code address}, {@code address.street} and {@code address[0]}, but not {@code addressLine}.
+	 *
+	 * @param prefix the name of a form field
+	 * @return the violations of the field and the fields nested in it, sorted by field name (the map is immutable)
+	 */
+	public SortedMap<String, List<ConstraintViolation<T>>> withPrefix(String prefix)
+	{
+		SortedMap<String, List<ConstraintViolation<T>>> result = new TreeMap<>();
+		for (Entry<String, List<ConstraintViolation<T>>> entry : sortedViolations.tailMap(prefix, true).entrySet())
+		{
+			String fieldName = entry.getKey();
+			if (!fieldName.startsWith(prefix))
+			{
+				break;
+			}
+			if (isNested(fieldName, prefix))
+			{
+				result.put(fieldName, entry.getValue());
+			}
+		}
+		return Collections.unmodifiableSortedMap(result);
+	}
+
+
+	/**
+	 * Determine if a form field or any field nested in it has violations.
+	 *
+	 * @param prefix the name of a form field
+	 * @return {@code true} if there are violations for the field or any field nested in it, {@code false} otherwise
+	 */
+	public boolean hasViolations(String prefix)
+	{
+		for (String fieldName : sortedViolations.tailMap(prefix, true).keySet())
+		{
+			if (!fieldName.startsWith(prefix))
+			{
+				break;
+			}
+			if (isNested(fieldName, prefix))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+
+	private static boolean isNested(String fieldName, String prefix)
+	{
+		if (prefix.isEmpty() || fieldName.length() == prefix.length())
+		{
+			return true;
+		}
+		char separator = fieldName.charAt(prefix.length());
+		return separator == '.' || separator == '[';
+	}
+}
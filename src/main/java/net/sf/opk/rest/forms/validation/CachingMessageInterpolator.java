@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms.validation;
+
+import java.util.Locale;
+import javax.validation.MessageInterpolator;
+
+import net.sf.opk.beans.util.CacheStatistics;
+import net.sf.opk.beans.util.LruCache;
+
+
+/**
+ * <p>A message interpolator that caches the messages of constraints without parameters (attributes), per template and
+ * locale. Other messages are interpolated by the wrapped interpolator each time.</p>
+ *
+ * <p>Note that this assumes the wrapped interpolator does not use the validated value, as is the case for Bean
+ * Validation 1.0 interpolators.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class CachingMessageInterpolator implements MessageInterpolator
+{
+	/**
+	 * The maximum number of messages to cache. Conversion error messages can contain user input, so the cache must be
+	 * bounded.
+	 */
+	private static final int MAXIMUM_CACHE_SIZE = 256;
+	/**
+	 * The interpolator to delegate to.
+	 */
+	private final MessageInterpolator delegate;
+	/**
+	 * The cached messages, mapped by template and locale.
+	 */
+	private final LruCache<MessageKey, String> cache = new LruCache<>(MAXIMUM_CACHE_SIZE);
+
+
+	/**
+	 * Create a caching message interpolator.
+	 *
+	 * @param delegate the interpolator to delegate to
+	 */
+	public CachingMessageInterpolator(MessageInterpolator delegate)
+	{
+		this.delegate = delegate;
+	}
+
+
+	@Override
+	public String interpolate(String messageTemplate, Context context)
+	{
+		if (!isCacheable(messageTemplate, context))
+		{
+			return delegate.interpolate(messageTemplate, context);
+		}
+		MessageKey key = new MessageKey(messageTemplate, Locale.getDefault());
+		String message = cache.get(key);
+		if (message == null)
+		{
+			message = delegate.interpolate(messageTemplate, context);
+			cache.put(key, message);
+		}
+		return message;
+	}
+
+
+	@Override
+	public String interpolate(String messageTemplate, Context context, Locale locale)
+	{
+		if (!isCacheable(messageTemplate, context))
+		{
+			return delegate.interpolate(messageTemplate, context, locale);
+		}
+		MessageKey key = new MessageKey(messageTemplate, locale);
+		String message = cache.get(key);
+		if (message == null)
+		{
+			message = delegate.interpolate(messageTemplate, context, locale);
+			cache.put(key, message);
+		}
+		return message;
+	}
+
+
+	private static boolean isCacheable(String messageTemplate, Context context)
+	{
+		return messageTemplate != null && context.getConstraintDescriptor().getAttributes().isEmpty();
+	}
+
+
+	/**
+	 * Get the statistics of the message cache.
+	 *
+	 * @return the cache statistics
+	 */
+	public CacheStatistics getCacheStatistics()
+	{
+		return cache.getStatistics();
+	}
+
+
+	/**
+	 * Cache key for interpolated messages.
+	 */
+	private static final class MessageKey
+	{
+		private final String messageTemplate;
+		private final Locale locale;
+
+
+		private MessageKey(String messageTemplate, Locale locale)
+		{
+			this.messageTemplate = messageTemplate;
+			this.locale = locale;
+		}
+
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof MessageKey))
+			{
+				return false;
+			}
+			MessageKey that = (MessageKey)o;
+			return messageTemplate.equals(that.messageTemplate) && locale.equals(that.locale);
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * messageTemplate.hashCode() + locale.hashCode();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms.validation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+
+
+/**
+ * Cache for the constraint metadata of bean classes. This allows skipping the validation of beans and properties that
+ * have no constraints, which is the case for most form fields.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class ConstraintMetadataCache
+{
+	/**
+	 * The validator to query for constraint metadata.
+	 */
+	private final Validator validator;
+	/**
+	 * The cached constraint metadata.
+	 */
+	private final ConcurrentMap<Class<?>, ClassMetadata> cache = new ConcurrentHashMap<>();
+
+
+	/**
+	 * Create a cache for the constraint metadata of a validator.
+	 *
+	 * @param validator the validator whose constraint metadata to cache
+	 */
+	public ConstraintMetadataCache(Validator validator)
+	{
+		this.validator = validator;
+	}
+
+
+	/**
+	 * <p>Determine if a bean class requires validation: if it has constraints on the class or its properties, or if it
+	 * has properties that are validated in cascade.</p>
+	 *
+	 * <p>This is determined from the class and property descriptors, not with {@link
+	 * BeanDescriptor#isBeanConstrained()}: Hibernate Validator 4.1 returns {@code false} from that method for beans
+	 * whose only validation is a cascade (i.e. that only have {@code @Valid} properties).</p>
+	 *
+	 * @param beanClass the bean class
+	 * @return {@code true} if validating the bean may yield constraint violations, {@code false} if not
+	 */
+	public boolean isBeanConstrained(Class<?> beanClass)
+	{
+		return getClassMetadata(beanClass).beanConstrained;
+	}
+
+
+	/**
+	 * Determine if a bean class has class-level constraints.
+	 *
+	 * @param beanClass the bean class
+	 * @return {@code true} if the class has class-level constraints, {@code false} if not
+	 */
+	public boolean hasClassConstraints(Class<?> beanClass)
+	{
+		return getClassMetadata(beanClass).classConstraints;
+	}
+
+
+	/**
+	 * Determine if a property has constraints. This ignores cascaded validation, which is not done when validating a
+	 * single property.
+	 *
+	 * @param beanClass    the bean class
+	 * @param propertyName the name of the property (not a path)
+	 * @return {@code true} if the property has constraints, {@code false} if not
+	 */
+	public boolean isPropertyConstrained(Class<?> beanClass, String propertyName)
+	{
+		ClassMetadata classMetadata = getClassMetadata(beanClass);
+		Boolean constrained = classMetadata.constrainedProperties.get(propertyName);
+		if (constrained == null)
+		{
+			PropertyDescriptor descriptor = classMetadata.descriptor.getConstraintsForProperty(propertyName);
+			constrained = descriptor != null && descriptor.hasConstraints();
+			classMetadata.constrainedProperties.put(propertyName, constrained);
+		}
+		return constrained;
+	}
+
+
+	/**
+	 * Get the constraint metadata of a bean class.
+	 *
+	 * @param beanClass the bean class
+	 * @return the (cached) bean descriptor, as returned by {@link Validator#getConstraintsForClass(Class)}
+	 */
+	public BeanDescriptor getConstraintsForClass(Class<?> beanClass)
+	{
+		return getClassMetadata(beanClass).descriptor;
+	}
+
+
+	private ClassMetadata getClassMetadata(Class<?> beanClass)
+	{
+		ClassMetadata classMetadata = cache.get(beanClass);
+		if (classMetadata == null)
+		{
+			classMetadata = new ClassMetadata(validator.getConstraintsForClass(beanClass));
+			ClassMetadata existing = cache.putIfAbsent(beanClass, classMetadata);
+			if (existing != null)
+			{
+				classMetadata = existing;
+			}
+		}
+		return classMetadata;
+	}
+
+
+	private static class ClassMetadata
+	{
+		private final BeanDescriptor descriptor;
+		private final boolean beanConstrained;
+		private final boolean classConstraints;
+		private final ConcurrentMap<String, Boolean> constrainedProperties = new ConcurrentHashMap<>();
+
+
+		private ClassMetadata(BeanDescriptor descriptor)
+		{
+			this.descriptor = descriptor;
+			classConstraints = descriptor.hasConstraints();
+			beanConstrained = classConstraints || hasConstrainedProperties(descriptor);
+		}
+
+
+		private static boolean hasConstrainedProperties(BeanDescriptor descriptor)
+		{
+			for (PropertyDescriptor propertyDescriptor : descriptor.getConstrainedProperties())
+			{
+				if (propertyDescriptor.hasConstraints() || propertyDescriptor.isCascaded())
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+}
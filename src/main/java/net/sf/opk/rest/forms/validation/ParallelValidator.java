@@ -0,0 +1,387 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms.validation;
+
+import java.lang.annotation.ElementType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.TraversableResolver;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.ValidationException;
+import javax.validation.Validator;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+
+import net.sf.opk.beans.BeanProperty;
+import net.sf.opk.beans.BeanPropertyException;
+import net.sf.opk.beans.PropertyParser;
+
+
+/**
+ * <p>Validates beans with large cascaded lists (or arrays) in parallel. The elements of these lists are split into
+ * chunks, which are validated concurrently using an executor. The rest of the bean is validated on the calling thread,
+ * property by property. The violations of the elements are prefixed with the property path of their element.</p>
+ *
+ * <p>Bean Validation cannot validate a bean without its cascaded properties, nor only the class-level constraints of a
+ * bean. Therefore, beans with class-level constraints, or with cascaded properties that are neither a list, an array
+ * nor a bean (for example a set or map), are validated normally. The same holds for beans without large lists.</p>
+ *
+ * <p>Cascaded properties are read through their getters, but only if the {@link TraversableResolver} allows to reach
+ * and cascade them; otherwise they are skipped, like the validator does. This way, unloaded lazy properties of JPA
+ * entities are not loaded. Note that the elements of a list are validated as separate beans, so a traversable resolver
+ * sees them as root beans. For the default traversable resolver (which only checks whether a JPA property is loaded)
+ * the result is the same as that of {@link Validator#validate(Object, Class[])}.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class ParallelValidator
+{
+	/**
+	 * The minimum number of list elements to validate as a chunk. Smaller lists are validated on the calling thread.
+	 */
+	public static final int MINIMUM_CHUNK_SIZE = 64;
+	/**
+	 * The (empty) path to a root bean.
+	 */
+	private static final Path ROOT_PATH = new Path()
+	{
+		@Override
+		public Iterator<Node> iterator()
+		{
+			return Collections.<Node>emptyList().iterator();
+		}
+
+
+		@Override
+		public String toString()
+		{
+			return "";
+		}
+	};
+	private final Validator validator;
+	private final ConstraintMetadataCache constraintMetadata;
+	private final PropertyParser propertyParser;
+	private final TraversableResolver traversableResolver;
+
+
+	/**
+	 * Create a parallel validator. It uses the traversable resolver of the default validator factory, which is the one
+	 * the container validator uses.
+	 *
+	 * @param validator          the validator to delegate to
+	 * @param constraintMetadata the constraint metadata of the validator
+	 * @param propertyParser     the property parser to read cascaded properties and to prefix violations with
+	 */
+	public ParallelValidator(Validator validator, ConstraintMetadataCache constraintMetadata,
+	                         PropertyParser propertyParser)
+	{
+		this(validator, constraintMetadata, propertyParser, DefaultTraversableResolver.INSTANCE);
+	}
+
+
+	/**
+	 * Create a parallel validator.
+	 *
+	 * @param validator           the validator to delegate to
+	 * @param constraintMetadata  the constraint metadata of the validator
+	 * @param propertyParser      the property parser to read cascaded properties and to prefix violations with
+	 * @param traversableResolver the traversable resolver of the validator, to determine which cascaded properties may
+	 *                            be read; if {@code null}, all beans are validated normally
+	 */
+	public ParallelValidator(Validator validator, ConstraintMetadataCache constraintMetadata,
+	                         PropertyParser propertyParser, TraversableResolver traversableResolver)
+	{
+		this.validator = validator;
+		this.constraintMetadata = constraintMetadata;
+		this.propertyParser = propertyParser;
+		this.traversableResolver = traversableResolver;
+	}
+
+
+	/**
+	 * Validate a bean, validating the elements of large cascaded lists in parallel.
+	 *
+	 * @param bean     the bean to validate
+	 * @param executor the executor to validate list elements with (it should have a bounded number of threads)
+	 * @param groups   the validation groups to validate (if none, the default group is validated)
+	 * @return the constraint violations
+	 */
+	public <T> Set<ConstraintViolation<T>> validate(T bean, Executor executor, Class<?>... groups)
+	{
+		BeanDescriptor descriptor = constraintMetadata.getConstraintsForClass(bean.getClass());
+		Map<String, Object> cascadedValues = findCascadedValues(bean, descriptor);
+		if (cascadedValues == null)
+		{
+			return validator.validate(bean, groups);
+		}
+
+		int parallelism = 2 * Runtime.getRuntime().availableProcessors();
+		List<FutureTask<Set<ConstraintViolation<T>>>> chunks = new ArrayList<>();
+		for (Map.Entry<String, Object> entry : cascadedValues.entrySet())
+		{
+			if (entry.getValue() instanceof Object[] && ((Object[])entry.getValue()).length > MINIMUM_CHUNK_SIZE)
+			{
+				Object[] elements = (Object[])entry.getValue();
+				int chunkSize = Math.max(MINIMUM_CHUNK_SIZE, (elements.length + parallelism - 1) / parallelism);
+				for (int start = 0; start < elements.length; start += chunkSize)
+				{
+					FutureTask<Set<ConstraintViolation<T>>> chunk = new FutureTask<>(
+							new ElementValidation<>(bean, entry.getKey(), elements, start,
+							                        Math.min(start + chunkSize, elements.length), groups));
+					executor.execute(chunk);
+					chunks.add(chunk);
+				}
+				entry.setValue(null);
+			}
+		}
+
+		Set<ConstraintViolation<T>> constraintViolations = new HashSet<>();
+		for (PropertyDescriptor property : descriptor.getConstrainedProperties())
+		{
+			constraintViolations.addAll(validator.validateProperty(bean, property.getPropertyName(), groups));
+		}
+		for (Map.Entry<String, Object> entry : cascadedValues.entrySet())
+		{
+			Object value = entry.getValue();
+			if (value instanceof Object[])
+			{
+				Object[] elements = (Object[])value;
+				constraintViolations.addAll(validateElements(bean, entry.getKey(), elements, 0, elements.length,
+				                                             groups));
+			}
+			else if (value != null)
+			{
+				for (ConstraintViolation<?> constraintViolation : validator.validate(value, groups))
+				{
+					constraintViolations.add(new SimpleConstraintViolation<>(bean, constraintViolation,
+					                                                         propertyParser.parse(entry.getKey())));
+				}
+			}
+		}
+		for (FutureTask<Set<ConstraintViolation<T>>> chunk : chunks)
+		{
+			constraintViolations.addAll(await(chunk));
+		}
+		return constraintViolations;
+	}
+
+
+	/**
+	 * Find the values of the cascaded properties of a bean. Lists and arrays are returned as arrays. Properties that the
+	 * traversable resolver does not allow to reach or cascade are skipped (and not read).
+	 *
+	 * @param bean       the bean to inspect
+	 * @param descriptor the constraint metadata of the bean
+	 * @return the values of the cascaded properties by property name, or {@code null} if the bean cannot (or need
+	 *         not) be validated in parallel
+	 */
+	private Map<String, Object> findCascadedValues(Object bean, BeanDescriptor descriptor)
+	{
+		if (traversableResolver == null || descriptor.hasConstraints())
+		{
+			return null;
+		}
+
+		Map<String, Object> cascadedValues = new LinkedHashMap<>();
+		boolean hasLargeList = false;
+		try
+		{
+			for (PropertyDescriptor property : descriptor.getConstrainedProperties())
+			{
+				if (property.isCascaded() && isTraversable(bean, property.getPropertyName()))
+				{
+					Object value = propertyParser.parse(property.getPropertyName()).getValue(bean);
+					if (value instanceof List)
+					{
+						value = ((List<?>)value).toArray();
+					}
+					else if (value instanceof Iterable || value instanceof Map ||
+					         value != null && value.getClass().isArray() && !(value instanceof Object[]))
+					{
+						return null;
+					}
+					hasLargeList |= value instanceof Object[] && ((Object[])value).length > MINIMUM_CHUNK_SIZE;
+					cascadedValues.put(property.getPropertyName(), value);
+				}
+			}
+		}
+		catch (BeanPropertyException ignored)
+		{
+			// The property cannot be read (e.g. a field without getter): let the validator handle it.
+			return null;
+		}
+		return hasLargeList ? cascadedValues : null;
+	}
+
+
+	/**
+	 * Determine if the validator would cascade into a property of a (root) bean.
+	 *
+	 * @param bean         the root bean
+	 * @param propertyName the name of a cascaded property of the bean
+	 * @return {@code true} if the traversable resolver allows to reach and cascade the property, {@code false} otherwise
+	 */
+	private boolean isTraversable(Object bean, String propertyName)
+	{
+		Path.Node node = propertyParser.parse(propertyName).toPath().iterator().next();
+		Class<?> beanType = bean.getClass();
+		ElementType elementType = isCascadedField(beanType, propertyName) ? ElementType.FIELD : ElementType.METHOD;
+		return traversableResolver.isReachable(bean, node, beanType, ROOT_PATH, elementType) &&
+		       traversableResolver.isCascadable(bean, node, beanType, ROOT_PATH, elementType);
+	}
+
+
+	private static boolean isCascadedField(Class<?> beanType, String propertyName)
+	{
+		for (Class<?> type = beanType; type != null; type = type.getSuperclass())
+		{
+			for (Field field : type.getDeclaredFields())
+			{
+				if (field.getName().equals(propertyName) && field.isAnnotationPresent(Valid.class))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+
+	private <T> Set<ConstraintViolation<T>> validateElements(T bean, String propertyName, Object[] elements, int start,
+	                                                         int end, Class<?>[] groups)
+	{
+		Set<ConstraintViolation<T>> constraintViolations = new HashSet<>();
+		for (int index = start; index < end; index++)
+		{
+			if (elements[index] != null)
+			{
+				Set<ConstraintViolation<Object>> elementViolations = validator.validate(elements[index], groups);
+				if (!elementViolations.isEmpty())
+				{
+					BeanProperty prefix = propertyParser.parse(propertyName + '[' + index + ']');
+					for (ConstraintViolation<Object> constraintViolation : elementViolations)
+					{
+						constraintViolations.add(new SimpleConstraintViolation<>(bean, constraintViolation, prefix));
+					}
+				}
+			}
+		}
+		return constraintViolations;
+	}
+
+
+	/**
+	 * Wait for the result of a chunk. If the executor has not started the chunk yet, it is validated on the current
+	 * thread. This way, validation cannot deadlock if all threads of the executor are busy (possibly waiting for this
+	 * thread).
+	 *
+	 * @param chunk the chunk to wait for
+	 * @return the result of the chunk
+	 */
+	private static <V> V await(FutureTask<V> chunk)
+	{
+		// Does nothing if the chunk has already been started.
+		chunk.run();
+		try
+		{
+			return chunk.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ValidationException("Interrupted while validating in parallel.", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+			{
+				throw (RuntimeException)cause;
+			}
+			throw new ValidationException("Parallel validation failed.", cause);
+		}
+	}
+
+
+	/**
+	 * Holder for the traversable resolver of the default validator factory, which is only built when needed.
+	 */
+	private static final class DefaultTraversableResolver
+	{
+		private static final TraversableResolver INSTANCE = findTraversableResolver();
+
+
+		private static TraversableResolver findTraversableResolver()
+		{
+			try
+			{
+				return Validation.buildDefaultValidatorFactory().getTraversableResolver();
+			}
+			catch (ValidationException ignored)
+			{
+				// No usable Bean Validation provider: we cannot determine what the validator cascades into.
+				return null;
+			}
+		}
+	}
+
+
+	/**
+	 * Validates a chunk of list elements.
+	 */
+	private class ElementValidation<T> implements Callable<Set<ConstraintViolation<T>>>
+	{
+		private final T bean;
+		private final String propertyName;
+		private final Object[] elements;
+		private final int start;
+		private final int end;
+		private final Class<?>[] groups;
+
+
+		private ElementValidation(T bean, String propertyName, Object[] elements, int start, int end,
+		                          Class<?>[] groups)
+		{
+			this.bean = bean;
+			this.propertyName = propertyName;
+			this.elements = elements;
+			this.start = start;
+			this.end = end;
+			this.groups = groups;
+		}
+
+
+		@Override
+		public Set<ConstraintViolation<T>> call()
+		{
+			return validateElements(bean, propertyName, elements, start, end, groups);
+		}
+	}
+}
@@ -15,7 +15,14 @@ import net.sf.opk.beans.BeanProperty;
  */
 public class SimpleConstraintViolation<T> implements ConstraintViolation<T>
 {
-	private final String message;
+	/**
+	 * The message; {@code null} until it has been interpolated, if created from a message template.
+	 */
+	private volatile String message;
+	/**
+	 * The interpolator to determine the message with, or {@code null} if the message is known.
+	 */
+	private final MessageInterpolator interpolator;
 	private final String messageTemplate;
 	private final T rootBean;
 	private final Class<T> rootBeanClass;
@@ -41,6 +48,7 @@ public class SimpleConstraintViolation<T> implements ConstraintViolation<T>
 	                                 Object invalidValue, ConstraintDescriptor<?> constraintDescriptor)
 	{
 		this.message = message;
+		interpolator = null;
 		this.messageTemplate = messageTemplate;
 		this.rootBean = rootBean;
 		this.rootBeanClass = rootBeanClass;
@@ -52,14 +60,51 @@ public class SimpleConstraintViolation<T> implements ConstraintViolation<T>
 
 
 	/**
-	 * Create a constraint violation by prefixing the property path of an existing constraint violation.
+	 * Create a constraint violation by prefixing the property path of an existing constraint violation. If that
+	 * violation has not interpolated its message yet, neither does this one.
 	 */
 	public SimpleConstraintViolation(ConstraintViolation<T> constraintViolation, BeanProperty propertyPrefix)
 	{
-		this(constraintViolation.getMessage(), constraintViolation.getMessageTemplate(),
-		     constraintViolation.getRootBean(), constraintViolation.getRootBeanClass(), constraintViolation.getLeafBean(),
-		     propertyPrefix.prefixTo(constraintViolation.getPropertyPath()), constraintViolation.getInvalidValue(),
-		     constraintViolation.getConstraintDescriptor());
+		this(constraintViolation.getRootBean(), constraintViolation, propertyPrefix);
+	}
+
+
+	/**
+	 * Create a constraint violation for a new root bean, by prefixing the property path of an existing constraint
+	 * violation. This is used when (part of) a bean graph is validated separately, starting at a nested bean. If the
+	 * existing violation has not interpolated its message yet, neither does this one.
+	 *
+	 * @param rootBean            the new root bean
+	 * @param constraintViolation the constraint violation to prefix
+	 * @param propertyPrefix      the property (of the new root bean) whose value was the root bean of the violation
+	 */
+	public SimpleConstraintViolation(T rootBean, ConstraintViolation<?> constraintViolation, BeanProperty propertyPrefix)
+	{
+		if (constraintViolation instanceof SimpleConstraintViolation)
+		{
+			SimpleConstraintViolation<?> simpleConstraintViolation = (SimpleConstraintViolation<?>)constraintViolation;
+			message = simpleConstraintViolation.message;
+			interpolator = simpleConstraintViolation.interpolator;
+		}
+		else
+		{
+			message = constraintViolation.getMessage();
+			interpolator = null;
+		}
+		messageTemplate = constraintViolation.getMessageTemplate();
+		this.rootBean = rootBean;
+		if (rootBean == constraintViolation.getRootBean())
+		{
+			rootBeanClass = (Class<T>)constraintViolation.getRootBeanClass();
+		}
+		else
+		{
+			rootBeanClass = (Class<T>)rootBean.getClass();
+		}
+		leafBean = constraintViolation.getLeafBean();
+		propertyPath = propertyPrefix.prefixTo(constraintViolation.getPropertyPath());
+		invalidValue = constraintViolation.getInvalidValue();
+		constraintDescriptor = constraintViolation.getConstraintDescriptor();
 	}
 
 
@@ -72,39 +117,63 @@ public class SimpleConstraintViolation<T> implements ConstraintViolation<T>
 	 * @param messageTemplate the template for the messsage
 	 * @param interpolator    the message interpolator that can determine the actual message to use
 	 */
-	public SimpleConstraintViolation(T rootBean, BeanProperty property, final Object invalidValue, String messageTemplate, MessageInterpolator interpolator)
+	public SimpleConstraintViolation(T rootBean, BeanProperty property, Object invalidValue, String messageTemplate, MessageInterpolator interpolator)
+	{
+		this(rootBean, property.getTypedParentValue(rootBean).getValue(), property, invalidValue, messageTemplate,
+		     interpolator);
+	}
+
+
+	/**
+	 * Create a constraint violation based on a bean, property, invalid value and message template. The message is
+	 * interpolated when it is first requested.
+	 *
+	 * @param rootBean        the bean on which the violation was reported
+	 * @param leafBean        the bean whose property is invalid (the value of the parent property)
+	 * @param property        the invalid property
+	 * @param invalidValue    the invalid property value (this property is also set for a conversion constraint, whereas the bean property is not)
+	 * @param messageTemplate the template for the messsage
+	 * @param interpolator    the message interpolator that can determine the actual message to use
+	 */
+	public SimpleConstraintViolation(T rootBean, Object leafBean, BeanProperty property, Object invalidValue,
+	                                 String messageTemplate, MessageInterpolator interpolator)
 	{
 		this.rootBean = rootBean;
 		rootBeanClass = (Class<T>)rootBean.getClass();
-		leafBean = property.getTypedParentValue(rootBean).getValue();
+		this.leafBean = leafBean;
 		this.messageTemplate = messageTemplate;
 		propertyPath = property.toPath();
 		this.invalidValue = invalidValue;
 		constraintDescriptor = ConversionConstraintDescriptor.INSTANCE;
-
-		MessageInterpolator.Context context = new MessageInterpolator.Context()
-		{
-			@Override
-			public ConstraintDescriptor<?> getConstraintDescriptor()
-			{
-				return ConversionConstraintDescriptor.INSTANCE;
-			}
-
-
-			@Override
-			public Object getValidatedValue()
-			{
-				return invalidValue;
-			}
-		};
-		message = interpolator.interpolate(messageTemplate, context);
+		this.interpolator = interpolator;
 	}
 
 
 	@Override
 	public String getMessage()
 	{
-		return message;
+		String result = message;
+		if (result == null && interpolator != null)
+		{
+			MessageInterpolator.Context context = new MessageInterpolator.Context()
+			{
+				@Override
+				public ConstraintDescriptor<?> getConstraintDescriptor()
+				{
+					return constraintDescriptor;
+				}
+
+
+				@Override
+				public Object getValidatedValue()
+				{
+					return invalidValue;
+				}
+			};
+			result = interpolator.interpolate(messageTemplate, context);
+			message = result;
+		}
+		return result;
 	}
 
 
@@ -155,4 +224,44 @@ public class SimpleConstraintViolation<T> implements ConstraintViolation<T>
 	{
 		return constraintDescriptor;
 	}
+
+
+	/**
+	 * Constraint violations are equal if they describe the same violation: the same message template, root bean, leaf
+	 * bean, property path, invalid value and constraint. Beans are compared by identity. Messages are not compared, as
+	 * they may not have been interpolated yet.
+	 */
+	@Override
+	public boolean equals(Object o)
+	{
+		if (this == o)
+		{
+			return true;
+		}
+		if (!(o instanceof SimpleConstraintViolation))
+		{
+			return false;
+		}
+
+		SimpleConstraintViolation<?> that = (SimpleConstraintViolation<?>)o;
+		return rootBean == that.rootBean && leafBean == that.leafBean &&
+		       equals(messageTemplate, that.messageTemplate) && equals(propertyPath, that.propertyPath) &&
+		       equals(invalidValue, that.invalidValue) && equals(constraintDescriptor, that.constraintDescriptor);
+	}
+
+
+	private static boolean equals(Object o1, Object o2)
+	{
+		return o1 == null ? o2 == null : o1.equals(o2);
+	}
+
+
+	@Override
+	public int hashCode()
+	{
+		int result = System.identityHashCode(rootBean);
+		result = 31 * result + (messageTemplate == null ? 0 : messageTemplate.hashCode());
+		result = 31 * result + (propertyPath == null ? 0 : propertyPath.hashCode());
+		return result;
+	}
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.pages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+
+/**
+ * A response that buffers its content, so it can be cached. Headers are passed to the wrapped response.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+class BufferingResponse extends HttpServletResponseWrapper
+{
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	private ServletOutputStream outputStream;
+	private PrintWriter writer;
+	/**
+	 * Whether the response is successful, and may thus be cached.
+	 */
+	private boolean successful = true;
+
+
+	BufferingResponse(HttpServletResponse response)
+	{
+		super(response);
+	}
+
+
+	@Override
+	public ServletOutputStream getOutputStream()
+	{
+		if (writer != null)
+		{
+			throw new IllegalStateException("getWriter() has already been called.");
+		}
+		if (outputStream == null)
+		{
+			outputStream = new ServletOutputStream()
+			{
+				@Override
+				public void write(int b)
+				{
+					buffer.write(b);
+				}
+
+
+				@Override
+				public void write(byte[] b, int off, int len)
+				{
+					buffer.write(b, off, len);
+				}
+			};
+		}
+		return outputStream;
+	}
+
+
+	@Override
+	public PrintWriter getWriter() throws IOException
+	{
+		if (outputStream != null)
+		{
+			throw new IllegalStateException("getOutputStream() has already been called.");
+		}
+		if (writer == null)
+		{
+			writer = new PrintWriter(new OutputStreamWriter(buffer, getCharacterEncoding()));
+		}
+		return writer;
+	}
+
+
+	@Override
+	public void flushBuffer()
+	{
+		// The content is written when the view has been rendered: do not commit the response yet.
+		if (writer != null)
+		{
+			writer.flush();
+		}
+	}
+
+
+	@Override
+	public void resetBuffer()
+	{
+		super.resetBuffer();
+		buffer.reset();
+	}
+
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		buffer.reset();
+	}
+
+
+	@Override
+	public void setContentLength(int len)
+	{
+		// Ignored: the content length is set when the content is written.
+	}
+
+
+	@Override
+	public void setStatus(int sc)
+	{
+		super.setStatus(sc);
+		successful = sc == SC_OK;
+	}
+
+
+	@Override
+	public void sendError(int sc) throws IOException
+	{
+		successful = false;
+		super.sendError(sc);
+	}
+
+
+	@Override
+	public void sendError(int sc, String msg) throws IOException
+	{
+		successful = false;
+		super.sendError(sc, msg);
+	}
+
+
+	@Override
+	public void sendRedirect(String location) throws IOException
+	{
+		successful = false;
+		super.sendRedirect(location);
+	}
+
+
+	/**
+	 * Determine if the response was successful (and can be cached).
+	 *
+	 * @return {@code true} if the view was rendered successfully, {@code false} otherwise
+	 */
+	boolean isSuccessful()
+	{
+		return successful;
+	}
+
+
+	/**
+	 * Get the buffered content.
+	 *
+	 * @return the content written to the response
+	 */
+	byte[] getContent()
+	{
+		if (writer != null)
+		{
+			writer.flush();
+		}
+		return buffer.toByteArray();
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.pages;
+
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+
+/**
+ * A request that determines the values of deferred attributes when they are first accessed. After that, they are
+ * ordinary attributes of the wrapped request.
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+class DeferredAttributeRequest extends HttpServletRequestWrapper
+{
+	/**
+	 * The deferred attributes that have not been accessed yet.
+	 */
+	private final Map<String, FutureTask<?>> deferredAttributes;
+
+
+	DeferredAttributeRequest(HttpServletRequest request, Map<String, FutureTask<?>> deferredAttributes)
+	{
+		super(request);
+		this.deferredAttributes = new ConcurrentHashMap<>(deferredAttributes);
+	}
+
+
+	@Override
+	public Object getAttribute(String name)
+	{
+		FutureTask<?> task = deferredAttributes.get(name);
+		if (task != null)
+		{
+			Object value;
+			try
+			{
+				value = ResourceForward.await(name, task);
+			}
+			catch (ServletException e)
+			{
+				throw new IllegalStateException(e.getMessage(), e.getCause());
+			}
+			// Only the first thread to get here sets the attribute: the view may have replaced it in the mean time.
+			synchronized (task)
+			{
+				if (deferredAttributes.remove(name, task))
+				{
+					super.setAttribute(name, value);
+				}
+			}
+		}
+		return super.getAttribute(name);
+	}
+
+
+	@Override
+	public Enumeration<String> getAttributeNames()
+	{
+		Set<String> names = new LinkedHashSet<>(Collections.list(super.getAttributeNames()));
+		names.addAll(deferredAttributes.keySet());
+		return Collections.enumeration(names);
+	}
+
+
+	@Override
+	public void setAttribute(String name, Object value)
+	{
+		deferredAttributes.remove(name);
+		super.setAttribute(name, value);
+	}
+
+
+	@Override
+	public void removeAttribute(String name)
+	{
+		deferredAttributes.remove(name);
+		super.removeAttribute(name);
+	}
+}
@@ -15,10 +15,23 @@
  */
 package net.sf.opk.rest.pages;
 
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 
+import net.sf.opk.rest.forms.ViolationIndex;
+
+import static java.lang.String.format;
+
 
 /**
  * A description of a request forward as result of a JAX-RS resource.
@@ -27,8 +40,18 @@ import javax.servlet.http.HttpServletRequest;
  */
 public class ResourceForward
 {
+	/**
+	 * The name of the attribute for the violation index, as set by {@link #withViolations(ViolationIndex)}.
+	 */
+	public static final String VIOLATIONS_ATTRIBUTE = "violations";
 	private String resourcePath;
 	private Map<String, Object> attributes;
+	private Map<String, FutureTask<?>> deferredAttributes;
+	private ViewCache viewCache;
+	private String[] cacheKeyAttributes;
+	private Set<String> cacheTags;
+	private Callable<String> eTag;
+	private Callable<Date> lastModified;
 
 
 	/**
@@ -40,6 +63,8 @@ public class ResourceForward
 	{
 		this.resourcePath = resourcePath;
 		attributes = new HashMap<>();
+		deferredAttributes = new HashMap<>();
+		cacheTags = new HashSet<>();
 	}
 
 
@@ -52,14 +77,252 @@ public class ResourceForward
 	 */
 	public ResourceForward withAttribute(String name, Object value)
 	{
+		deferredAttributes.remove(name);
 		attributes.put(name, value);
 		return this;
 	}
 
 
 	/**
-	 * Return the resource path. Used in {@link ResourceForwardFilter#forward(ResourceForward)} to do the actual request
-	 * forward.
+	 * Make a lazily determined attribute available for the forwarded resource. The supplier is called when the view
+	 * first accesses the attribute, so views that do not use it do not pay for it.
+	 *
+	 * @param name     the attribute name
+	 * @param supplier a supplier of the attribute value
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withLazyAttribute(String name, Callable<?> supplier)
+	{
+		return withDeferredAttribute(name, new FutureTask<>(supplier));
+	}
+
+
+	/**
+	 * <p>Make an attribute available for the forwarded resource, and start determining its value immediately on the
+	 * given executor. This way, independent attributes (such as the results of several queries) are determined
+	 * concurrently. The view waits for the value when it first accesses the attribute.</p>
+	 *
+	 * <p>Use a bounded executor, such as a fixed size thread pool. If the executor has not started the supplier by the
+	 * time the view needs the value, the supplier is called on the thread rendering the view instead.</p>
+	 *
+	 * @param name     the attribute name
+	 * @param supplier a supplier of the attribute value
+	 * @param executor the executor to call the supplier on
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withPrefetchedAttribute(String name, Callable<?> supplier, Executor executor)
+	{
+		FutureTask<?> task = new FutureTask<>(supplier);
+		executor.execute(task);
+		return withDeferredAttribute(name, task);
+	}
+
+
+	private ResourceForward withDeferredAttribute(String name, FutureTask<?> task)
+	{
+		attributes.remove(name);
+		deferredAttributes.put(name, task);
+		return this;
+	}
+
+
+	/**
+	 * Make the constraint violations of a form available for the forwarded resource, as the attribute {@value
+	 * #VIOLATIONS_ATTRIBUTE}. Views can then look up the violations of each field by its name, for example with
+	 * <code>${violations['address.street']}</code>.
+	 *
+	 * @param violationIndex the constraint violations, mapped by form field name
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 * @see net.sf.opk.rest.forms.BindingResult#getViolationIndex()
+	 */
+	public ResourceForward withViolations(ViolationIndex<?> violationIndex)
+	{
+		return withAttribute(VIOLATIONS_ATTRIBUTE, violationIndex);
+	}
+
+
+	/**
+	 * Cache the rendered view. The output of the view is cached by resource path and the values of the key attributes:
+	 * if a view with the same path and key attribute values is cached, it is used instead of forwarding to the view.
+	 * Thus the key attributes must include all attributes (such as ids and versions) that determine the output.
+	 *
+	 * @param viewCache     the cache to use
+	 * @param keyAttributes the names of the attributes that determine the output of the view
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward cachedIn(ViewCache viewCache, String... keyAttributes)
+	{
+		this.viewCache = viewCache;
+		cacheKeyAttributes = keyAttributes.clone();
+		return this;
+	}
+
+
+	/**
+	 * Tag the cached view, so it can be {@linkplain ViewCache#invalidate(String) invalidated} by tag. Has no effect if
+	 * the view is not {@linkplain #cachedIn(ViewCache, String...) cached}.
+	 *
+	 * @param tags the tags of the view
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withCacheTags(String... tags)
+	{
+		cacheTags.addAll(Arrays.asList(tags));
+		return this;
+	}
+
+
+	/**
+	 * Set the entity tag of the view. If a {@code GET} or {@code HEAD} request has an {@code If-None-Match} header that
+	 * matches it, the response is {@code 304 Not Modified}, and the request is not forwarded.
+	 *
+	 * @param eTag the entity tag; if not quoted (optionally with the weak prefix {@code W/}), it is quoted for you
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withETag(String eTag)
+	{
+		return withETag(new Constant<>(eTag));
+	}
+
+
+	/**
+	 * Set the entity tag of the view. Like {@link #withETag(String)}, but the entity tag is only determined when the
+	 * response is written.
+	 *
+	 * @param eTag a supplier of the entity tag
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withETag(Callable<String> eTag)
+	{
+		this.eTag = eTag;
+		return this;
+	}
+
+
+	/**
+	 * Set the last modification time of the view. If a {@code GET} or {@code HEAD} request has an {@code
+	 * If-Modified-Since} header that is not before it (and no {@code If-None-Match} header), the response is {@code 304
+	 * Not Modified}, and the request is not forwarded.
+	 *
+	 * @param lastModified the last modification time of the view
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withLastModified(Date lastModified)
+	{
+		return withLastModified(new Constant<>(lastModified));
+	}
+
+
+	/**
+	 * Set the last modification time of the view. Like {@link #withLastModified(Date)}, but the time is only
+	 * determined when the response is written.
+	 *
+	 * @param lastModified a supplier of the last modification time of the view
+	 * @return this {@code ResourceForward}; allows for fluent programming
+	 */
+	public ResourceForward withLastModified(Callable<Date> lastModified)
+	{
+		this.lastModified = lastModified;
+		return this;
+	}
+
+
+	/**
+	 * Return the entity tag of the view, as used in the {@code ETag} header.
+	 *
+	 * @return the (quoted) entity tag, or {@code null} if there is none
+	 * @throws ServletException when the entity tag cannot be determined
+	 */
+	String eTag() throws ServletException
+	{
+		String value = evaluate(eTag);
+		if (value == null || value.startsWith("\"") || value.startsWith("W/\""))
+		{
+			return value;
+		}
+		return '"' + value + '"';
+	}
+
+
+	/**
+	 * Return the last modification time of the view, as used in the {@code Last-Modified} header.
+	 *
+	 * @return the last modification time, or {@code null} if there is none
+	 * @throws ServletException when the last modification time cannot be determined
+	 */
+	Date lastModified() throws ServletException
+	{
+		return evaluate(lastModified);
+	}
+
+
+	private static <T> T evaluate(Callable<T> supplier) throws ServletException
+	{
+		if (supplier == null)
+		{
+			return null;
+		}
+		try
+		{
+			return supplier.call();
+		}
+		catch (Exception e)
+		{
+			throw new ServletException("Failed to determine the response headers.", e);
+		}
+	}
+
+
+	/**
+	 * Return the cache for the rendered view. Used in {@link ResourceForwardFilter#forward(ResourceForward,
+	 * HttpServletRequest)}.
+	 *
+	 * @return the view cache, or {@code null} if the view should not be cached
+	 */
+	ViewCache viewCache()
+	{
+		return viewCache;
+	}
+
+
+	/**
+	 * Return the key to cache the rendered view by.
+	 *
+	 * @return the cache key, based on the resource path and the key attributes
+	 * @throws ServletException when the value of a deferred key attribute cannot be determined
+	 */
+	ViewCache.Key cacheKey() throws ServletException
+	{
+		Object[] keyValues = new Object[2 * cacheKeyAttributes.length];
+		for (int i = 0; i < cacheKeyAttributes.length; i++)
+		{
+			String name = cacheKeyAttributes[i];
+			FutureTask<?> task = deferredAttributes.remove(name);
+			if (task != null)
+			{
+				attributes.put(name, await(name, task));
+			}
+			keyValues[2 * i] = name;
+			keyValues[2 * i + 1] = attributes.get(name);
+		}
+		return new ViewCache.Key(resourcePath, keyValues);
+	}
+
+
+	/**
+	 * Return the tags of the cached view.
+	 *
+	 * @return the tags to invalidate the cached view by
+	 */
+	Set<String> cacheTags()
+	{
+		return cacheTags;
+	}
+
+
+	/**
+	 * Return the resource path. Used in {@link ResourceForwardFilter#forward(ResourceForward, HttpServletRequest)} to
+	 * do the actual request forward.
 	 *
 	 * @return the resource path to forward to
 	 */
@@ -70,14 +333,83 @@ public class ResourceForward
 
 
 	/**
-	 * Make the attributes available for the forwarded resource. Used in {@link ResourceForwardFilter#forward(ResourceForward)}.
+	 * Make the attributes available for the forwarded resource. Used in {@link
+	 * ResourceForwardFilter#forward(ResourceForward, HttpServletRequest)}. Deferred attributes are determined when
+	 * first accessed.
+	 *
+	 * @param request the request to forward
+	 * @return the request to forward with: a wrapper of the request if there are deferred attributes
 	 */
-	void supplyAttributes(HttpServletRequest request)
+	HttpServletRequest supplyAttributes(HttpServletRequest request)
 	{
 		for (Map.Entry<String, Object> entry : attributes.entrySet())
 		{
 			request.setAttribute(entry.getKey(), entry.getValue());
 		}
+		return deferredAttributes.isEmpty() ? request : new DeferredAttributeRequest(request, deferredAttributes);
 	}
-}
 
+
+	/**
+	 * Cancel determining the values of deferred attributes that have not started yet. Used in {@link
+	 * ResourceForwardFilter#forward(ResourceForward, HttpServletRequest)} when the view is not rendered.
+	 */
+	void discardDeferredAttributes()
+	{
+		for (FutureTask<?> task : deferredAttributes.values())
+		{
+			task.cancel(false);
+		}
+	}
+
+
+	/**
+	 * Wait for the value of a deferred attribute. If determining the value has not started yet, it is done on the
+	 * current thread.
+	 *
+	 * @param name the attribute name
+	 * @param task the task that determines the attribute value
+	 * @return the attribute value
+	 * @throws ServletException when the value cannot be determined
+	 */
+	static Object await(String name, FutureTask<?> task) throws ServletException
+	{
+		// Does nothing if the task has already been started.
+		task.run();
+		try
+		{
+			return task.get();
+		}
+		catch (ExecutionException e)
+		{
+			throw new ServletException(format("Failed to determine the attribute '%s'.", name), e.getCause());
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new ServletException(format("Interrupted while waiting for the attribute '%s'.", name), e);
+		}
+	}
+
+
+	/**
+	 * A supplier of a fixed value.
+	 */
+	private static class Constant<T> implements Callable<T>
+	{
+		private final T value;
+
+
+		Constant(T value)
+		{
+			this.value = value;
+		}
+
+
+		@Override
+		public T call()
+		{
+			return value;
+		}
+	}
+}
@@ -16,11 +16,16 @@
 package net.sf.opk.rest.pages;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.annotation.WebFilter;
@@ -29,46 +34,227 @@ import javax.servlet.http.HttpServletResponse;
 
 
 /**
- * Filter to provide the {@link ResourceForwardWriter} with the real requests and responses provided by the container.
- * This is needed because they provide more functionality that is available via a CDI/JAX-RS provided proxies of {@link
- * HttpServletRequest} and {@link HttpServletResponse}.
+ * <p>Filter to provide the {@link ResourceForwardWriter} with the real requests and responses provided by the
+ * container. This is needed because they provide more functionality that is available via a CDI/JAX-RS provided
+ * proxies of {@link HttpServletRequest} and {@link HttpServletResponse}.</p>
+ *
+ * <p>The request and response are stored as attributes of the request itself. Unlike thread-bound storage, this
+ * survives asynchronous processing: the writer can find them via any view of the request, on any thread.</p>
  *
  * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
  */
-@WebFilter("/*")
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
 public class ResourceForwardFilter implements Filter
 {
 	/**
-	 * A thread-based cache for the HTTP requests handled by this filter. Required for the method {@link
-	 * #forward(ResourceForward)}.
-	 *
-	 * Ideally, it would be private. But we also want to test if it's used.
+	 * The name of the request attribute that holds the HTTP request handled by this filter. Required for the method
+	 * {@link #forward(ResourceForward, HttpServletRequest)}.
+	 */
+	static final String REQUEST_ATTRIBUTE = ResourceForwardFilter.class.getName() + ".request";
+	/**
+	 * The name of the request attribute that holds the HTTP response handled by this filter. Required for the method
+	 * {@link #forward(ResourceForward, HttpServletRequest)}.
 	 */
-	static ThreadLocal<HttpServletRequest> requestCache = new ThreadLocal<>();
+	static final String RESPONSE_ATTRIBUTE = ResourceForwardFilter.class.getName() + ".response";
 	/**
-	 * A thread-based cache for the HTTP reqponses handled by this filter. Required for the method {@link
+	 * The HTTP request handled by this filter on the current thread. Only required for the deprecated method {@link
 	 * #forward(ResourceForward)}.
-	 *
-	 * Ideally, it would be private. But we also want to test if it's used.
 	 */
-	static ThreadLocal<HttpServletResponse> responseCache = new ThreadLocal<>();
+	private static final ThreadLocal<HttpServletRequest> CURRENT_REQUEST = new ThreadLocal<>();
 
 
 	/**
 	 * Forward the current request (i.e. the one handled by the current thread) as specified.
 	 *
 	 * @param resourceForward a specification of the request forward to perform
-	 * @throws IOException      when forwarding fails due to an I/O error
-	 * @throws ServletException when forwarding fails for another reason
+	 * @throws IOException           when forwarding fails due to an I/O error
+	 * @throws ServletException      when forwarding fails for another reason
+	 * @throws IllegalStateException when the current thread is not handling a request for this filter (for example
+	 *                               when asynchronous processing has moved the request to another thread)
+	 * @deprecated Thread-bound requests do not survive asynchronous processing; use {@link #forward(ResourceForward,
+	 *             HttpServletRequest)} instead
 	 */
+	@Deprecated
 	public static void forward(ResourceForward resourceForward) throws IOException, ServletException
 	{
-		HttpServletRequest request = requestCache.get();
-		HttpServletResponse response = responseCache.get();
+		HttpServletRequest request = CURRENT_REQUEST.get();
+		if (request == null)
+		{
+			throw new IllegalStateException("No request is handled by the ResourceForwardFilter on this thread.");
+		}
+		forward(resourceForward, request);
+	}
+
+
+	/**
+	 * <p>Forward a request as specified.</p>
+	 *
+	 * <p>The request is forwarded using a {@link RequestDispatcher}, which blocks until the view has been rendered. This
+	 * also holds for asynchronous requests: the view is rendered on the thread that writes the resumed response, as the
+	 * JAX-RS implementation completes the request after the response has been written.</p>
+	 *
+	 * <p>{@linkplain ResourceForward#withLazyAttribute(String, Callable) Lazy} and {@linkplain
+	 * ResourceForward#withPrefetchedAttribute(String, Callable, Executor) prefetched} attributes are determined when
+	 * the view first accesses them.</p>
+	 *
+	 * <p>If the view has an {@linkplain ResourceForward#withETag(String) entity tag} or {@linkplain
+	 * ResourceForward#withLastModified(Date) last modification time}, these are set as response headers. If they
+	 * satisfy the conditional headers of a {@code GET} or {@code HEAD} request, the response is {@code 304 Not
+	 * Modified} instead, and the view is not rendered at all.</p>
+	 *
+	 * <p>If the view is {@linkplain ResourceForward#cachedIn(ViewCache, String...) cached}, the cached output is used
+	 * instead, if available. Otherwise, the output of a (synchronous) forward is cached if it was successful.</p>
+	 *
+	 * @param resourceForward a specification of the request forward to perform
+	 * @param currentRequest  the request to forward, or a proxy for it (such as the one injected by JAX-RS)
+	 * @throws IOException           when forwarding fails due to an I/O error
+	 * @throws ServletException      when forwarding fails for another reason
+	 * @throws IllegalStateException when the request was not handled by this filter
+	 */
+	public static void forward(ResourceForward resourceForward, HttpServletRequest currentRequest)
+			throws IOException, ServletException
+	{
+		HttpServletRequest request = (HttpServletRequest)currentRequest.getAttribute(REQUEST_ATTRIBUTE);
+		HttpServletResponse response = (HttpServletResponse)currentRequest.getAttribute(RESPONSE_ATTRIBUTE);
+		if (request == null || response == null)
+		{
+			throw new IllegalStateException("The request was not handled by the ResourceForwardFilter.");
+		}
+
+		String eTag = resourceForward.eTag();
+		Date lastModified = resourceForward.lastModified();
+		if (eTag != null)
+		{
+			response.setHeader("ETag", eTag);
+		}
+		if (lastModified != null)
+		{
+			response.setDateHeader("Last-Modified", lastModified.getTime());
+		}
+		if (isNotModified(request, eTag, lastModified))
+		{
+			// Commit the response, so the JAX-RS implementation cannot change the status anymore.
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			response.flushBuffer();
+			resourceForward.discardDeferredAttributes();
+			return;
+		}
+
+		ViewCache viewCache = resourceForward.viewCache();
+		ViewCache.Key cacheKey = null;
+		if (viewCache != null)
+		{
+			cacheKey = resourceForward.cacheKey();
+			ViewCache.Entry cachedView = viewCache.get(cacheKey);
+			if (cachedView != null)
+			{
+				if (cachedView.getContentType() != null)
+				{
+					response.setContentType(cachedView.getContentType());
+				}
+				writeContent(response, cachedView.getContent());
+				resourceForward.discardDeferredAttributes();
+				return;
+			}
+		}
+
+		if (cacheKey == null)
+		{
+			RequestDispatcher dispatcher = request.getRequestDispatcher(resourceForward.resourcePath());
+			dispatcher.forward(resourceForward.supplyAttributes(request), response);
+		}
+		else
+		{
+			BufferingResponse bufferingResponse = new BufferingResponse(response);
+			RequestDispatcher dispatcher = request.getRequestDispatcher(resourceForward.resourcePath());
+			dispatcher.forward(resourceForward.supplyAttributes(request), bufferingResponse);
+
+			byte[] content = bufferingResponse.getContent();
+			if (bufferingResponse.isSuccessful())
+			{
+				viewCache.put(cacheKey, response.getContentType(), content, resourceForward.cacheTags());
+			}
+			if (!response.isCommitted())
+			{
+				writeContent(response, content);
+			}
+		}
+	}
+
+
+	/**
+	 * Evaluate the conditional headers {@code If-None-Match} and {@code If-Modified-Since} (RFC 7232). If both are
+	 * present, {@code If-Modified-Since} is ignored.
+	 *
+	 * @param request      the request to evaluate
+	 * @param eTag         the entity tag of the view (if any)
+	 * @param lastModified the last modification time of the view (if any)
+	 * @return {@code true} if the client has the current view, {@code false} if it must be rendered
+	 */
+	private static boolean isNotModified(HttpServletRequest request, String eTag, Date lastModified)
+	{
+		String method = request.getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method))
+		{
+			return false;
+		}
+
+		Enumeration<String> ifNoneMatch = request.getHeaders("If-None-Match");
+		if (ifNoneMatch != null && ifNoneMatch.hasMoreElements())
+		{
+			return eTag != null && matchesAny(eTag, ifNoneMatch);
+		}
+
+		if (lastModified == null)
+		{
+			return false;
+		}
+		long ifModifiedSince;
+		try
+		{
+			ifModifiedSince = request.getDateHeader("If-Modified-Since");
+		}
+		catch (IllegalArgumentException ignored)
+		{
+			// Invalid dates are ignored.
+			return false;
+		}
+		// HTTP dates have a precision of seconds.
+		return ifModifiedSince != -1 && lastModified.getTime() / 1000 <= ifModifiedSince / 1000;
+	}
+
+
+	private static boolean matchesAny(String eTag, Enumeration<String> headers)
+	{
+		String opaqueTag = stripWeakPrefix(eTag);
+		while (headers.hasMoreElements())
+		{
+			for (String candidate : headers.nextElement().split(","))
+			{
+				candidate = candidate.trim();
+				// If-None-Match uses the weak comparison.
+				if ("*".equals(candidate) || opaqueTag.equals(stripWeakPrefix(candidate)))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
 
-		resourceForward.supplyAttributes(request);
-		RequestDispatcher dispatcher = request.getRequestDispatcher(resourceForward.resourcePath());
-		dispatcher.forward(request, response);
+
+	private static String stripWeakPrefix(String eTag)
+	{
+		return eTag.startsWith("W/") ? eTag.substring(2) : eTag;
+	}
+
+
+	private static void writeContent(HttpServletResponse response, byte[] content) throws IOException
+	{
+		response.setContentLength(content.length);
+		ServletOutputStream outputStream = response.getOutputStream();
+		outputStream.write(content);
+		outputStream.flush();
 	}
 
 
@@ -76,10 +262,12 @@ public class ResourceForwardFilter implements Filter
 	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
 			throws IOException, ServletException
 	{
+		HttpServletRequest previousRequest = CURRENT_REQUEST.get();
 		if (request instanceof HttpServletRequest && response instanceof HttpServletResponse)
 		{
-			requestCache.set((HttpServletRequest)request);
-			responseCache.set((HttpServletResponse)response);
+			request.setAttribute(REQUEST_ATTRIBUTE, request);
+			request.setAttribute(RESPONSE_ATTRIBUTE, response);
+			CURRENT_REQUEST.set((HttpServletRequest)request);
 		}
 
 		try
@@ -88,8 +276,20 @@ public class ResourceForwardFilter implements Filter
 		}
 		finally
 		{
-			requestCache.set(null);
-			responseCache.set(null);
+			if (previousRequest == null)
+			{
+				CURRENT_REQUEST.remove();
+			}
+			else
+			{
+				CURRENT_REQUEST.set(previousRequest);
+			}
+			// Asynchronous requests are completed later: they still need the attributes.
+			if (!request.isAsyncStarted())
+			{
+				request.removeAttribute(REQUEST_ATTRIBUTE);
+				request.removeAttribute(RESPONSE_ATTRIBUTE);
+			}
 		}
 	}
 
@@ -21,8 +21,10 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.ext.MessageBodyWriter;
@@ -38,6 +40,23 @@ import javax.ws.rs.ext.Provider;
 @Produces(MediaType.TEXT_HTML)
 public class ResourceForwardWriter implements MessageBodyWriter<ResourceForward>
 {
+	/**
+	 * The current request. This is a proxy, that JAX-RS resolves to the request being handled.
+	 */
+	private HttpServletRequest request;
+
+
+	/**
+	 * Setter to inject the current request with. Without this, the instance cannot forward requests.
+	 *
+	 * @param request the request being handled (usually a proxy)
+	 */
+	@Context
+	public void setRequest(HttpServletRequest request)
+	{
+		this.request = request;
+	}
+
 
 	@Override
 	public long getSize(ResourceForward resourceForward, Class<?> type, Type genericType, Annotation[] annotations,
@@ -62,7 +81,9 @@ public class ResourceForwardWriter implements MessageBodyWriter<ResourceForward>
 	 * ThreadLocal&lt;HttpServletRequest&gt;} and {@code ThreadLocal&lt;HttpServletRequest&gt;} is a Jersey extension, and
 	 * thus not portable.</p>
 	 *
-	 * <p>The filter used does provide a standards compliant way to access the request and response objects.</p>
+	 * <p>The filter used does provide a standards compliant way to access the request and response objects: it stores
+	 * them in the request, where they can be found via the injected proxy. As this does not depend on the current
+	 * thread, it also works for asynchronous requests.</p>
 	 *
 	 * @param resourceForward the {@code ResourceForward} to handle
 	 * @param type            always {@code ResourceForward.class}
@@ -85,7 +106,7 @@ public class ResourceForwardWriter implements MessageBodyWriter<ResourceForward>
 	{
 		try
 		{
-			ResourceForwardFilter.forward(resourceForward);
+			ResourceForwardFilter.forward(resourceForward, request);
 		}
 		catch (ServletException e)
 		{
@@ -0,0 +1,305 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.pages;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.opk.beans.util.CacheStatistics;
+
+
+/**
+ * <p>A cache for rendered views. Views are only cached when a {@link ResourceForward} opts in with {@link
+ * ResourceForward#cachedIn(ViewCache, String...)}. Cached output is keyed by the resource path and the values of the
+ * declared key attributes (for example an id and a version), and it is served without forwarding to the view.</p>
+ *
+ * <p>The cache has a maximum number of entries, evicting the least recently used entry when full. Entries expire after
+ * a fixed time to live, and can be invalidated by tag. Only the content type and the content of a view are cached:
+ * views whose output depends on other headers (such as cookies) should not be cached.</p>
+ *
+ * <p>Create one instance per application (for example with a CDI producer), and share it between resources.</p>
+ *
+ * @author <a href="mailto:oscar@westravanholthe.nl">Oscar Westra van Holthe - Kind</a>
+ */
+public class ViewCache
+{
+	/**
+	 * The cached views, in access order.
+	 */
+	private final Map<Key, Entry> entries;
+	/**
+	 * The keys of the cached views, mapped by tag.
+	 */
+	private final Map<String, Set<Key>> keysByTag = new HashMap<>();
+	/**
+	 * The maximum number of entries in the cache.
+	 */
+	private final int maximumSize;
+	/**
+	 * The time to live of entries, in nanoseconds.
+	 */
+	private final long timeToLive;
+	/**
+	 * The number of lookups that found a view.
+	 */
+	private long hits = 0;
+	/**
+	 * The number of lookups that did not find a view.
+	 */
+	private long misses = 0;
+
+
+	/**
+	 * Create a view cache.
+	 *
+	 * @param maximumSize the maximum number of views to cache
+	 * @param timeToLive  the time views are cached
+	 * @param unit        the unit of the time to live
+	 */
+	public ViewCache(final int maximumSize, long timeToLive, TimeUnit unit)
+	{
+		if (maximumSize < 1)
+		{
+			throw new IllegalArgumentException("The maximum size must be positive.");
+		}
+		if (timeToLive <= 0)
+		{
+			throw new IllegalArgumentException("The time to live must be positive.");
+		}
+		this.maximumSize = maximumSize;
+		this.timeToLive = unit.toNanos(timeToLive);
+		entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true)
+		{
+			private static final long serialVersionUID = 1L;
+
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+			{
+				if (size() > maximumSize)
+				{
+					untag(eldest.getKey(), eldest.getValue());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+
+	/**
+	 * Get a cached view.
+	 *
+	 * @param key the key of the view
+	 * @return the cached view, or {@code null} if it is not cached (or has expired)
+	 */
+	synchronized Entry get(Key key)
+	{
+		Entry entry = entries.get(key);
+		if (entry != null && System.nanoTime() - entry.created > timeToLive)
+		{
+			remove(key);
+			entry = null;
+		}
+		if (entry == null)
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		return entry;
+	}
+
+
+	/**
+	 * Cache a rendered view.
+	 *
+	 * @param key         the key of the view
+	 * @param contentType the content type of the view
+	 * @param content     the rendered view
+	 * @param tags        the tags to invalidate the view by
+	 */
+	synchronized void put(Key key, String contentType, byte[] content, Set<String> tags)
+	{
+		remove(key);
+		Entry entry = new Entry(contentType, content, tags);
+		for (String tag : tags)
+		{
+			Set<Key> keys = keysByTag.get(tag);
+			if (keys == null)
+			{
+				keys = new HashSet<>();
+				keysByTag.put(tag, keys);
+			}
+			keys.add(key);
+		}
+		entries.put(key, entry);
+	}
+
+
+	private void remove(Key key)
+	{
+		Entry entry = entries.remove(key);
+		if (entry != null)
+		{
+			untag(key, entry);
+		}
+	}
+
+
+	private void untag(Key key, Entry entry)
+	{
+		for (String tag : entry.tags)
+		{
+			Set<Key> keys = keysByTag.get(tag);
+			if (keys != null)
+			{
+				keys.remove(key);
+				if (keys.isEmpty())
+				{
+					keysByTag.remove(tag);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Remove all views with a tag from the cache.
+	 *
+	 * @param tag the tag of the views to remove
+	 */
+	public synchronized void invalidate(String tag)
+	{
+		Set<Key> keys = keysByTag.remove(tag);
+		if (keys != null)
+		{
+			for (Key key : keys)
+			{
+				remove(key);
+			}
+		}
+	}
+
+
+	/**
+	 * Remove all views from the cache. The statistics are not reset.
+	 */
+	public synchronized void invalidateAll()
+	{
+		entries.clear();
+		keysByTag.clear();
+	}
+
+
+	/**
+	 * Get the current usage statistics of the cache.
+	 *
+	 * @return a snapshot of the cache statistics
+	 */
+	public synchronized CacheStatistics getStatistics()
+	{
+		return new CacheStatistics(hits, misses, entries.size(), maximumSize);
+	}
+
+
+	/**
+	 * The key of a cached view: the resource path, and the names and values of the key attributes.
+	 */
+	static final class Key
+	{
+		private final String resourcePath;
+		private final Object[] attributes;
+		private final int hashCode;
+
+
+		/**
+		 * Create a key.
+		 *
+		 * @param resourcePath the path of the view
+		 * @param attributes   the names and values of the key attributes, alternating
+		 */
+		Key(String resourcePath, Object... attributes)
+		{
+			this.resourcePath = resourcePath;
+			this.attributes = attributes;
+			hashCode = 31 * resourcePath.hashCode() + Arrays.hashCode(attributes);
+		}
+
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (this == o)
+			{
+				return true;
+			}
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key that = (Key)o;
+			return resourcePath.equals(that.resourcePath) && Arrays.equals(attributes, that.attributes);
+		}
+
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+	}
+
+
+	/**
+	 * A cached view.
+	 */
+	static final class Entry
+	{
+		private final String contentType;
+		private final byte[] content;
+		private final Set<String> tags;
+		private final long created = System.nanoTime();
+
+
+		private Entry(String contentType, byte[] content, Set<String> tags)
+		{
+			this.contentType = contentType;
+			this.content = content;
+			this.tags = Collections.unmodifiableSet(new HashSet<>(tags));
+		}
+
+
+		String getContentType()
+		{
+			return contentType;
+		}
+
+
+		byte[] getContent()
+		{
+			return content;
+		}
+	}
+}
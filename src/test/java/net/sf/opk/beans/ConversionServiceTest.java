@@ -17,21 +17,36 @@ package net.sf.opk.beans;
 
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import javax.enterprise.inject.Instance;
 import javax.enterprise.util.TypeLiteral;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.fasterxml.classmate.ResolvedType;
+
+import net.sf.opk.beans.converters.ArrayConverter;
+import net.sf.opk.beans.converters.CollectionConverter;
 import net.sf.opk.beans.converters.ConversionException;
+import net.sf.opk.beans.util.CacheStatistics;
 
 import static java.util.Collections.singletonList;
 import static net.sf.opk.beans.util.GenericsUtil.resolveType;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -39,13 +54,14 @@ public class ConversionServiceTest
 {
 	private static final String TEXT = "abc";
 	private static final Long VALUE = 42L;
+	private Converter converter;
 	private ConversionService conversionService;
 
 
 	@Before
 	public void initialize()
 	{
-		Converter converter = mock(Converter.class);
+		converter = mock(Converter.class);
 		when(converter.canConvertTo(resolveType(Integer.class))).thenReturn(false);
 		when(converter.canConvertTo(resolveType(String.class))).thenReturn(true);
 		when(converter.convertTo(resolveType(String.class), singletonList(TEXT))).thenReturn(TEXT);
@@ -63,6 +79,14 @@ public class ConversionServiceTest
 	}
 
 
+	@Test
+	public void testCanConvert()
+	{
+		assertTrue(conversionService.canConvert(resolveType(String.class), ConversionService.NO_ANNOTATIONS));
+		assertFalse(conversionService.canConvert(resolveType(Integer.class), ConversionService.NO_ANNOTATIONS));
+	}
+
+
 	@Test
 	public void testConversionSuccess()
 	{
@@ -88,6 +112,178 @@ public class ConversionServiceTest
 	}
 
 
+	@Test
+	public void testMemoization()
+	{
+		assertNull(conversionService.getMemoizationStatistics(Long.class));
+		conversionService.memoize(Long.class, 10);
+
+		List<String> values = new ArrayList<>(singletonList(VALUE.toString()));
+		Long result1 = conversionService.convert(values, resolveType(Long.class));
+		values.set(0, "changed after conversion");
+		Long result2 = conversionService.convert(singletonList(VALUE.toString()), resolveType(Long.class));
+		List<Long> result3 = conversionService.convertEach(singletonList(VALUE.toString()), resolveType(Long.class));
+		String result4 = conversionService.convert(singletonList(TEXT), resolveType(String.class));
+		String result5 = conversionService.convert(singletonList(TEXT), resolveType(String.class));
+
+		assertEquals(VALUE, result1);
+		assertSame(result1, result2);
+		assertSame(result1, result3.get(0));
+		assertEquals(TEXT, result4);
+		assertEquals(TEXT, result5);
+		verify(converter, times(1)).convertTo(eq(resolveType(Long.class)), any(List.class));
+		verify(converter, times(2)).convertTo(resolveType(String.class), singletonList(TEXT));
+
+		CacheStatistics statistics = conversionService.getMemoizationStatistics(Long.class);
+		assertEquals(2, statistics.getHits());
+		assertEquals(1, statistics.getMisses());
+		assertEquals(1, statistics.getSize());
+		assertEquals(2.0 / 3, statistics.getHitRate(), 1e-9);
+		assertNull(conversionService.getMemoizationStatistics(String.class));
+	}
+
+
+	@Test
+	public void testBatchConversion()
+	{
+		TagRepository repository = new TagRepository(200);
+		ConvertersInstance converters = new ConvertersInstance(new TagConverter(repository));
+		ConversionService batchConversionService = new ConversionService(converters);
+		converters.add(new CollectionConverter(batchConversionService));
+		converters.add(new ArrayConverter(batchConversionService));
+
+		List<String> ids = new ArrayList<>();
+		for (int id = 199; id >= 0; id--)
+		{
+			ids.add(String.valueOf(id));
+		}
+
+		List<Tag> tagList = batchConversionService.convert(ids, resolveType(List.class, Tag.class));
+		assertEquals(1, repository.getLookupCount());
+		assertEquals(200, tagList.size());
+		assertEquals(199, tagList.get(0).id);
+		assertEquals(0, tagList.get(199).id);
+
+		Tag[] tagArray = batchConversionService.convert(ids, resolveType(Tag[].class));
+		assertEquals(2, repository.getLookupCount());
+		assertEquals(Arrays.asList(tagArray), tagList);
+
+		Tag tag = batchConversionService.convert(singletonList("42"), resolveType(Tag.class));
+		assertEquals(3, repository.getLookupCount());
+		assertEquals(42, tag.id);
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testBatchConversionFailure()
+	{
+		TagRepository repository = new TagRepository(1);
+		ConversionService batchConversionService = new ConversionService(new ConvertersInstance(new TagConverter(
+				repository)));
+
+		batchConversionService.convertEach(Arrays.asList("0", "1"), resolveType(Tag.class));
+	}
+
+
+	private static class Tag
+	{
+		private final long id;
+
+
+		private Tag(long id)
+		{
+			this.id = id;
+		}
+	}
+
+	/**
+	 * In-memory stand-in for a database repository, that counts the lookups.
+	 */
+	private static class TagRepository
+	{
+		private final Map<Long, Tag> tagsById = new HashMap<>();
+		private int lookupCount = 0;
+
+
+		private TagRepository(int size)
+		{
+			for (long id = 0; id < size; id++)
+			{
+				tagsById.put(id, new Tag(id));
+			}
+		}
+
+
+		public Map<Long, Tag> findAll(List<Long> ids)
+		{
+			lookupCount++;
+			Map<Long, Tag> result = new HashMap<>();
+			for (Long id : ids)
+			{
+				Tag tag = tagsById.get(id);
+				if (tag != null)
+				{
+					result.put(id, tag);
+				}
+			}
+			return result;
+		}
+
+
+		public int getLookupCount()
+		{
+			return lookupCount;
+		}
+	}
+
+	private static class TagConverter implements BatchConverter
+	{
+		private final TagRepository repository;
+
+
+		private TagConverter(TagRepository repository)
+		{
+			this.repository = repository;
+		}
+
+
+		@Override
+		public boolean canConvertTo(ResolvedType resolvedType)
+		{
+			return resolvedType.getErasedType().equals(Tag.class);
+		}
+
+
+		@Override
+		public <T> T convertTo(ResolvedType resolvedType, List<String> values)
+		{
+			List<T> tags = convertEach(resolvedType, values);
+			return tags.get(0);
+		}
+
+
+		@Override
+		public <T> List<T> convertEach(ResolvedType resolvedType, List<String> values)
+		{
+			List<Long> ids = new ArrayList<>();
+			for (String value : values)
+			{
+				ids.add(Long.valueOf(value));
+			}
+
+			Map<Long, Tag> tagsById = repository.findAll(ids);
+			List<T> result = new ArrayList<>();
+			for (Long id : ids)
+			{
+				if (tagsById.containsKey(id))
+				{
+					result.add((T)tagsById.get(id));
+				}
+			}
+			return result;
+		}
+	}
+
 	private class ConvertersInstance implements Instance<Converter>
 	{
 		private List<Converter> converters;
@@ -100,6 +296,12 @@ public class ConversionServiceTest
 		}
 
 
+		private void add(Converter converter)
+		{
+			converters.add(converter);
+		}
+
+
 		@Override
 		public Instance<Converter> select(Annotation... annotations)
 		{
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+import com.fasterxml.classmate.TypeResolver;
+import org.junit.Test;
+
+import static net.sf.opk.beans.util.GenericsUtil.resolveType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+
+public class InlineCacheTest
+{
+	@Test
+	public void testLookup()
+	{
+		ResolvedType stringType = resolveType(String.class);
+		ResolvedType listType = resolveType(List.class, Integer.class);
+
+		InlineCache<String> cache = new InlineCache<>();
+		assertNull(cache.get(stringType));
+
+		cache.put(stringType, "string");
+		cache.put(listType, "list");
+		assertEquals("string", cache.get(stringType));
+		assertEquals("list", cache.get(listType));
+		assertEquals(2, cache.size());
+
+		// Types that are not interned are found as well.
+		ResolvedType uninternedListType = new TypeResolver().resolve(List.class, Integer.class);
+		assertNotSame(listType, uninternedListType);
+		assertEquals("list", cache.get(uninternedListType));
+		assertNull(cache.get(resolveType(List.class, Long.class)));
+	}
+
+
+	@Test
+	public void testDuplicatesAreNotAdded()
+	{
+		ResolvedType stringType = resolveType(String.class);
+
+		InlineCache<String> cache = new InlineCache<>();
+		cache.put(stringType, "first");
+		cache.put(stringType, "second");
+		cache.put(new TypeResolver().resolve(String.class), "third");
+		assertEquals(1, cache.size());
+		assertEquals("first", cache.get(stringType));
+	}
+
+
+	@Test
+	public void testMaximumSize()
+	{
+		Class<?>[] classes = {String.class, Integer.class, Long.class, Double.class, Float.class, Short.class};
+
+		InlineCache<Class<?>> cache = new InlineCache<>();
+		for (Class<?> type : classes)
+		{
+			cache.put(resolveType(type), type);
+		}
+		assertEquals(InlineCache.MAXIMUM_SIZE, cache.size());
+		assertEquals(String.class, cache.get(resolveType(String.class)));
+		assertNull(cache.get(resolveType(Short.class)));
+	}
+}
@@ -15,6 +15,7 @@
  */
 package net.sf.opk.beans;
 
+import java.lang.reflect.Array;
 import java.util.Iterator;
 import java.util.List;
 import javax.validation.Path;
@@ -76,7 +77,7 @@ public class ListIndexTest extends NestedPropertyTestBase
 		assertEquals(Long.TYPE, typedValue.getType().getErasedType());
 		assertEquals(Long.TYPE, arrayIndex.getType(array).getErasedType());
 		assertEquals(array[1], typedValue.getValue());
-		assertEquals(array[1], arrayIndex.getValue(array));
+		assertEquals(Long.valueOf(array[1]), arrayIndex.getValue(array));
 	}
 
 
@@ -118,6 +119,43 @@ public class ListIndexTest extends NestedPropertyTestBase
 	}
 
 
+	@Test
+	public void testPrimitiveArrays()
+	{
+		Object[] arrays = {new boolean[2], new byte[2], new short[2], new char[2], new int[2], new long[2],
+		                   new float[2], new double[2], new String[2]};
+		Object[] values = {true, (byte)1, (short)2, 'c', 4, 5L, 6.0f, 7.0, "eight"};
+
+		for (int i = 0; i < arrays.length; i++)
+		{
+			ListIndex index = new ListIndex(createParentBean(arrays[i].getClass()), 1);
+			assertTrue(index.setValue(arrays[i], values[i]));
+			assertEquals(values[i], index.getValue(arrays[i]));
+			assertEquals(values[i], Array.get(arrays[i], 1));
+		}
+	}
+
+
+	@Test
+	public void testMatrix()
+	{
+		double[][] matrix = new double[3][4];
+		ListIndex cell = new ListIndex(new ListIndex(createParentBean(double[][].class), 2), 3);
+
+		assertTrue(cell.setValue(matrix, 1.5));
+		assertEquals(1.5, matrix[2][3], 0.0);
+		assertEquals(Double.TYPE, cell.getType(matrix).getErasedType());
+		assertEquals(Double.valueOf(1.5), cell.getValue(matrix));
+	}
+
+
+	@Test(expected = BeanPropertyException.class)
+	public void testNullPrimitive()
+	{
+		arrayIndex.setValue(array, null);
+	}
+
+
 	@Test
 	public void testSetListValue1()
 	{
@@ -17,6 +17,7 @@ package net.sf.opk.beans;
 
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import javax.validation.Path;
 
@@ -30,11 +31,14 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
 public class MapKeyTest extends NestedPropertyTestBase
 {
+	private ConversionService conversionService;
 	private Map<Integer, String> map;
 	private MapKey mapKey;
 	private int keyValue;
@@ -46,7 +50,7 @@ public class MapKeyTest extends NestedPropertyTestBase
 		String key = "42";
 		keyValue = 42;
 
-		ConversionService conversionService = mock(ConversionService.class);
+		conversionService = mock(ConversionService.class);
 		when(conversionService.convert(singletonList(key), resolveType(Integer.class))).thenReturn(keyValue);
 
 		map = new HashMap<>();
@@ -97,6 +101,22 @@ public class MapKeyTest extends NestedPropertyTestBase
 	}
 
 
+	@Test
+	public void testKeyConversionCache()
+	{
+		assertEquals(map.get(keyValue), mapKey.getValue(map));
+		assertTrue(mapKey.setValue(map, "the answer"));
+		assertEquals("the answer", mapKey.getValue(map));
+		verify(conversionService, times(1)).convert(singletonList("42"), resolveType(Integer.class));
+
+		// Mutable keys are converted on each access.
+		MapKey listKey = new MapKey(conversionService, createParentBean(Map.class, List.class, String.class), "42");
+		listKey.getValue(new HashMap<>());
+		listKey.getValue(new HashMap<>());
+		verify(conversionService, times(2)).convert(singletonList("42"), resolveType(List.class));
+	}
+
+
 	@Test
 	public void testGetNullForNull()
 	{
@@ -236,6 +236,20 @@ public class NamedPropertyTest extends NestedPropertyTestBase
 	}
 
 
+	@Test
+	public void testPolymorphicParent()
+	{
+		NamedProperty property = new NamedProperty(new RootProperty(), "name");
+		assertEquals("John Doe", property.getValue(bean));
+		assertEquals(Integer.valueOf(42), property.getValue(new OtherBean()));
+		assertEquals(resolveType(Integer.class), property.getType(new OtherBean()));
+
+		assertTrue(property.setValue(bean, "Jane Doe"));
+		assertEquals("Jane Doe", property.getValue(bean));
+		assertEquals(String.class, property.getType(bean).getErasedType());
+	}
+
+
 	@Test
 	public void testPath1()
 	{
@@ -356,4 +370,16 @@ public class NamedPropertyTest extends NestedPropertyTestBase
 			       '}';
 		}
 	}
+
+
+	/**
+	 * Another bean with a {@code name} property, for {@link NamedPropertyTest}.
+	 */
+	public static class OtherBean
+	{
+		public Integer getName()
+		{
+			return 42;
+		}
+	}
 }
@@ -26,8 +26,10 @@ import org.junit.Test;
 import static java.util.Collections.singletonList;
 import static net.sf.opk.beans.util.GenericsUtil.resolveType;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -101,7 +103,7 @@ public class PropertyParserTest
 		BeanProperty property = propertyParser.parse("parent.indexed1[" + INDEX1_STRING + "]");
 
 		bean.getParent().setIndexed1(new int[]{value1, value1});
-		assertEquals(value1, property.getValue(bean));
+		assertEquals(Integer.valueOf(value1), property.getValue(bean));
 
 		property.setValue(bean, value2);
 		assertEquals(value2, bean.getParent().getIndexed1()[INDEX1]);
@@ -118,7 +120,7 @@ public class PropertyParserTest
 
 		bean.getParent().setIndexed2(INDEX1, value1);
 		bean.getParent().setIndexed2(INDEX2, value1);
-		assertEquals(value1, property.getValue(bean));
+		assertEquals(Integer.valueOf(value1), property.getValue(bean));
 
 		property.setValue(bean, value2);
 		assertEquals(value2, bean.getParent().getIndexed2(INDEX1));
@@ -183,6 +185,8 @@ public class PropertyParserTest
 	@Test
 	public void testParsedPropertyCache()
 	{
+		propertyParser.admit("parent.aliases", propertyParser.parse("parent.aliases"));
+
 		long time1 = System.nanoTime();
 		BeanProperty property1 = propertyParser.parse("parent.aliases");
 		long time2 = System.nanoTime();
@@ -196,6 +200,69 @@ public class PropertyParserTest
 	}
 
 
+	@Test
+	public void testCacheAdmission()
+	{
+		BeanProperty property1 = propertyParser.parse("parent.name");
+		BeanProperty property2 = propertyParser.parse("parent.name");
+		assertNotSame(property1, property2);
+		assertEquals(0, propertyParser.getCacheStatistics().getSize());
+
+		propertyParser.admit("parent.name", property2);
+		assertSame(property2, propertyParser.parse("parent.name"));
+		assertEquals(1, propertyParser.getCacheStatistics().getSize());
+		assertEquals(1, propertyParser.getCacheStatistics().getHits());
+	}
+
+
+	@Test
+	public void testNegativeCache()
+	{
+		String message1 = parseWithError("parent..name");
+		String message2 = parseWithError("parent..name");
+		assertEquals(message1, message2);
+		assertEquals(0, propertyParser.getCacheStatistics().getSize());
+	}
+
+
+	@Test
+	public void testPathLimits()
+	{
+		StringBuilder deepPath = new StringBuilder("parent");
+		for (int i = 1; i < PropertyParser.MAXIMUM_PATH_DEPTH; i++)
+		{
+			deepPath.append(".parent");
+		}
+		propertyParser.parse(deepPath.toString());
+		deepPath.append(".parent");
+		assertEquals("Not a property path: more than 32 properties deep.", parseWithError(deepPath.toString()));
+
+		StringBuilder longName = new StringBuilder();
+		for (int i = 0; i <= PropertyParser.MAXIMUM_PATH_LENGTH; i++)
+		{
+			longName.append('x');
+		}
+		assertEquals("Not a property path: longer than 1024 characters.", parseWithError(longName.toString()));
+		// Overly long paths are not cached: that would use unbounded memory.
+		assertEquals(1, propertyParser.negativeCache.getStatistics().getSize());
+	}
+
+
+	private String parseWithError(String path)
+	{
+		try
+		{
+			propertyParser.parse(path);
+			fail("Expected a BeanPropertyException for: " + path);
+			return null;
+		}
+		catch (BeanPropertyException e)
+		{
+			return e.getMessage();
+		}
+	}
+
+
 	@Test(expected = BeanPropertyException.class)
 	public void testParseError1()
 	{
@@ -224,6 +291,40 @@ public class PropertyParserTest
 	}
 
 
+	@Test
+	public void testParseErrorMessage()
+	{
+		String[] invalidPaths = {"parent.name x", "parent..name", "parent.name[]", "parent.variables['KEY1'", "parent[0]x"};
+		String[] unparsedTails = {".name x", "..name", "[]", "['KEY1'", "[0]x"};
+
+		for (int i = 0; i < invalidPaths.length; i++)
+		{
+			try
+			{
+				propertyParser.parse(invalidPaths[i]);
+				fail("Expected a BeanPropertyException for: " + invalidPaths[i]);
+			}
+			catch (BeanPropertyException e)
+			{
+				assertEquals("Not a property path; failed to parse: \"" + unparsedTails[i] + '"', e.getMessage());
+			}
+		}
+	}
+
+
+	@Test(expected = BeanPropertyException.class)
+	public void testParseErrorWithLongInput()
+	{
+		// Such input caused a lot of backtracking with a regular expression based parser.
+		StringBuilder path = new StringBuilder("parent.variables['");
+		for (int i = 0; i < 100000; i++)
+		{
+			path.append("\\']x");
+		}
+		propertyParser.parse(path.toString());
+	}
+
+
 	@Test
 	public void testFormatProperty() throws Exception
 	{
@@ -242,6 +343,8 @@ public class PropertyParserTest
 
 		testFormatProperty("parent.variables[KEY1]", "parent.variables['KEY1']");
 		testFormatProperty("parent.variables[\"KEY1\"]", "parent.variables['KEY1']");
+		testFormatProperty("parent.variables['KEY\\'1']['KEY2'].name", "parent.variables['KEY\\'1']['KEY2'].name");
+		testFormatProperty("parent.variables[\"KEY\\\"1\\\\\"]", "parent.variables['KEY\"1\\\\']");
 	}
 
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+
+public class PropertyPathTest
+{
+	private final PropertyParser propertyParser = new PropertyParser(mock(ConversionService.class));
+
+
+	@Test
+	public void testEquality()
+	{
+		Path path1 = propertyParser.parse("order.lines[2].attributes['x']").toPath();
+		Path path2 = propertyParser.parse("order.lines[2].attributes[\"x\"]").toPath();
+		Path path3 = propertyParser.parse("order.lines[3].attributes['x']").toPath();
+
+		assertEquals(path1, path2);
+		assertEquals(path1.hashCode(), path2.hashCode());
+		assertNotEquals(path1, path3);
+		assertNotEquals(path1, propertyParser.parse("order.lines[2]").toPath());
+		assertNotEquals(path1, "order.lines[2].attributes['x']");
+		assertEquals(PropertyPath.EMPTY, new PathBuilder().build());
+	}
+
+
+	@Test
+	public void testSharedNodes()
+	{
+		BeanProperty parent = propertyParser.parse("order.lines");
+		BeanProperty child = new NamedProperty(parent, "quantity");
+
+		Path path = child.toPath();
+		assertSame(path, child.toPath());
+		assertEquals(3, ((PropertyPath)path).size());
+
+		Iterator<Path.Node> parentNodes = parent.toPath().iterator();
+		Iterator<Path.Node> childNodes = path.iterator();
+		assertSame(parentNodes.next(), childNodes.next());
+		assertSame(parentNodes.next(), childNodes.next());
+		assertFalse(parentNodes.hasNext());
+		assertEquals("quantity", childNodes.next().getName());
+		assertFalse(childNodes.hasNext());
+	}
+
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable()
+	{
+		Iterator<Path.Node> iterator = propertyParser.parse("order").toPath().iterator();
+		iterator.next();
+		iterator.remove();
+	}
+
+
+	@Test
+	public void testFormat()
+	{
+		Path path = propertyParser.parse("order.lines[2].attributes['it\\'s']").toPath();
+		assertEquals("order.lines[2].attributes['it\\'s']", path.toString());
+		assertSame(path.toString(), path.toString());
+		assertEquals("[1].name", new PathBuilder().addIndexedNode(1).addNamedNode("name").build().toString());
+		assertEquals("", PropertyPath.EMPTY.toString());
+	}
+
+
+	@Test
+	public void testFormatValidatorPaths()
+	{
+		Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+		Set<String> formattedPaths = new HashSet<>();
+		for (ConstraintViolation<Order> violation : validator.validate(new Order()))
+		{
+			formattedPaths.add(propertyParser.format(violation.getPropertyPath()));
+		}
+
+		assertEquals(new HashSet<>(Arrays.asList("lines[1].quantity", "linesByCode['it\\'s'].quantity",
+		                                         "lineArray[0].quantity", "shipments[1].lines[0].quantity",
+		                                         "mainLine.quantity")), formattedPaths);
+	}
+
+
+	public static class Order
+	{
+		@Valid
+		private List<Line> lines = Arrays.asList(new Line(1), new Line(null));
+		@Valid
+		private Map<String, Line> linesByCode = Collections.singletonMap("it's", new Line(null));
+		@Valid
+		private Line[] lineArray = {new Line(null)};
+		@Valid
+		private List<Shipment> shipments = Arrays.asList(new Shipment(new Line(1)), new Shipment(new Line(null)));
+		@Valid
+		private Line mainLine = new Line(null);
+	}
+
+
+	public static class Shipment
+	{
+		@Valid
+		private List<Line> lines;
+
+
+		public Shipment(Line line)
+		{
+			lines = Collections.singletonList(line);
+		}
+	}
+
+
+	public static class Line
+	{
+		@NotNull
+		private Integer quantity;
+
+
+		public Line(Integer quantity)
+		{
+			this.quantity = quantity;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+
+
+public class PropertyTrieTest
+{
+	private PropertyParser propertyParser;
+	private Order order;
+
+
+	@Before
+	public void initialize()
+	{
+		propertyParser = new PropertyParser(mock(ConversionService.class));
+
+		order = new Order();
+		order.lines.add(new Line());
+		order.lines.add(new Line());
+	}
+
+
+	@Test
+	public void testSharedPrefixes()
+	{
+		PropertyTrie<Integer> trie = new PropertyTrie<>();
+		trie.add(propertyParser.parse("lines[0].quantity"), 1);
+		trie.add(propertyParser.parse("lines[0].price"), 2);
+		trie.add(propertyParser.parse("lines[1].quantity"), 3);
+		trie.add(propertyParser.parse("lines[1].price"), 4);
+		assertEquals(4, trie.size());
+
+		final List<String> visited = new ArrayList<>();
+		trie.visit(order, new PropertyTrie.Visitor<Integer>()
+		{
+			@Override
+			public boolean visit(PropertyTrie.Leaf leaf, Integer value)
+			{
+				visited.add(propertyParser.format(leaf.getProperty()));
+				assertNull(leaf.getTypedValue().getValue());
+				leaf.setValue(value);
+				return true;
+			}
+		});
+
+		assertEquals(Arrays.asList("lines[0].quantity", "lines[0].price", "lines[1].quantity", "lines[1].price"),
+		             visited);
+		assertEquals(1, order.linesRead);
+		assertEquals(Integer.valueOf(1), order.getLines().get(0).getQuantity());
+		assertEquals(Integer.valueOf(2), order.getLines().get(0).getPrice());
+		assertEquals(Integer.valueOf(3), order.getLines().get(1).getQuantity());
+		assertEquals(Integer.valueOf(4), order.getLines().get(1).getPrice());
+	}
+
+
+	@Test
+	public void testNestedPropertiesUseNewValue()
+	{
+		final Line newLine = new Line();
+
+		PropertyTrie<Object> trie = new PropertyTrie<>();
+		trie.add(propertyParser.parse("firstLine"), newLine);
+		trie.add(propertyParser.parse("firstLine.quantity"), 42);
+		trie.visit(order, new PropertyTrie.Visitor<Object>()
+		{
+			@Override
+			public boolean visit(PropertyTrie.Leaf leaf, Object value)
+			{
+				return leaf.setValue(value);
+			}
+		});
+
+		assertEquals(newLine, order.getFirstLine());
+		assertEquals(Integer.valueOf(42), newLine.getQuantity());
+		assertNull(order.getLines().get(1).getQuantity());
+	}
+
+
+	@Test
+	public void testNullParent()
+	{
+		PropertyTrie<Integer> trie = new PropertyTrie<>();
+		trie.add(propertyParser.parse("lines[0].quantity"), 1);
+		trie.visit(new Order(null), new PropertyTrie.Visitor<Integer>()
+		{
+			@Override
+			public boolean visit(PropertyTrie.Leaf leaf, Integer value)
+			{
+				assertFalse(leaf.setValue(value));
+				return true;
+			}
+		});
+	}
+
+
+	@Test
+	public void testStopVisiting()
+	{
+		PropertyTrie<Integer> trie = new PropertyTrie<>();
+		trie.add(propertyParser.parse("lines[0].quantity"), 1);
+		trie.add(propertyParser.parse("lines[0].price"), 2);
+		trie.add(propertyParser.parse("lines[1].quantity"), 3);
+
+		final List<Integer> visited = new ArrayList<>();
+		assertFalse(trie.visit(order, new PropertyTrie.Visitor<Integer>()
+		{
+			@Override
+			public boolean visit(PropertyTrie.Leaf leaf, Integer value)
+			{
+				visited.add(value);
+				return value < 2;
+			}
+		}));
+		assertEquals(Arrays.asList(1, 2), visited);
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDifferentRoots()
+	{
+		PropertyTrie<Integer> trie = new PropertyTrie<>();
+		trie.add(propertyParser.parse("lines"), 1);
+		trie.add(new NamedProperty(new RootProperty(), "lines"), 2);
+	}
+
+
+	/**
+	 * Dummy bean for {@link PropertyTrieTest}.
+	 */
+	public static class Order
+	{
+		private List<Line> lines;
+		private int linesRead = 0;
+
+
+		public Order()
+		{
+			this(new ArrayList<Line>());
+		}
+
+
+		public Order(List<Line> lines)
+		{
+			this.lines = lines;
+		}
+
+
+		public List<Line> getLines()
+		{
+			linesRead++;
+			return lines;
+		}
+
+
+		public Line getFirstLine()
+		{
+			return lines.get(0);
+		}
+
+
+		public void setFirstLine(Line firstLine)
+		{
+			lines.set(0, firstLine);
+		}
+	}
+
+
+	/**
+	 * Dummy bean for {@link PropertyTrieTest}.
+	 */
+	public static class Line
+	{
+		private Integer quantity;
+		private Integer price;
+
+
+		public Integer getQuantity()
+		{
+			return quantity;
+		}
+
+
+		public void setQuantity(Integer quantity)
+		{
+			this.quantity = quantity;
+		}
+
+
+		public Integer getPrice()
+		{
+			return price;
+		}
+
+
+		public void setPrice(Integer price)
+		{
+			this.price = price;
+		}
+	}
+}
@@ -28,6 +28,7 @@ import org.junit.Test;
 import net.sf.opk.beans.ConversionService;
 
 import static java.util.Arrays.asList;
+import static net.sf.opk.beans.ConversionService.NO_ANNOTATIONS;
 import static net.sf.opk.beans.util.GenericsUtil.resolveType;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -48,8 +49,7 @@ public class CollectionConverterTest
 	public void initialize()
 	{
 		ConversionService conversionService = mock(ConversionService.class);
-		when(conversionService.convert(asList(VALUE1), resolveType(String.class))).thenReturn(VALUE1);
-		when(conversionService.convert(asList(VALUE2), resolveType(String.class))).thenReturn(VALUE2);
+		when(conversionService.<String>convertEach(VALUES_LIST, resolveType(String.class), NO_ANNOTATIONS)).thenReturn(VALUES_LIST);
 
 		converter = new CollectionConverter(conversionService);
 	}
@@ -110,7 +110,7 @@ public class ConverterByValueOfTest
 	{
 		ResolvedType resolvedType = resolveType(Long.class);
 		assertTrue(converter.canConvertTo(resolvedType));
-		assertEquals(123L, converter.convertTo(resolvedType, singletonList("123")));
+		assertEquals(Long.valueOf(123L), converter.convertTo(resolvedType, singletonList("123")));
 	}
 
 
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Annotation;
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static net.sf.opk.beans.ConversionService.NO_ANNOTATIONS;
+import static net.sf.opk.beans.util.BeanUtil.findAnnotations;
+import static net.sf.opk.beans.util.GenericsUtil.resolveType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class FormattedNumberConverterTest
+{
+	private FormattedNumberConverter converter;
+	private Annotation[] amountAnnotations;
+	private Annotation[] countAnnotations;
+
+
+	@Before
+	public void initialize()
+	{
+		converter = new FormattedNumberConverter();
+		amountAnnotations = findAnnotations(Bean.class, "amount");
+		countAnnotations = findAnnotations(Bean.class, "count");
+	}
+
+
+	@Test
+	public void testPriority() throws Exception
+	{
+		assertEquals(Integer.MIN_VALUE + 4, converter.getPriority());
+	}
+
+
+	@Test
+	public void testImpossibleConversion() throws Exception
+	{
+		assertFalse(converter.canConvertTo(resolveType(Long.class)));
+		assertFalse(converter.canConvertTo(resolveType(Long.class), NO_ANNOTATIONS));
+		assertFalse(converter.canConvertTo(resolveType(String.class), amountAnnotations));
+		assertFalse(converter.canConvertTo(resolveType(List.class), amountAnnotations));
+	}
+
+
+	@Test
+	public void testConversion() throws Exception
+	{
+		ResolvedType resolvedType = resolveType(BigDecimal.class);
+		assertTrue(converter.canConvertTo(resolvedType, amountAnnotations));
+		assertEquals(new BigDecimal("1234567.89"), converter.convertTo(resolvedType, singletonList("1.234.567,89"),
+		                                                               amountAnnotations));
+		assertEquals(Double.valueOf(1234.5), converter.convertTo(resolveType(Double.TYPE), singletonList("1.234,5"),
+		                                                         amountAnnotations));
+	}
+
+
+	@Test
+	public void testWholeNumberConversion() throws Exception
+	{
+		ResolvedType resolvedType = resolveType(Integer.TYPE);
+		assertTrue(converter.canConvertTo(resolvedType, countAnnotations));
+		assertEquals(Integer.valueOf(1234567), converter.convertTo(resolvedType, singletonList("1,234,567"),
+		                                                           countAnnotations));
+	}
+
+
+	@Test
+	public void testEmptyConversion() throws Exception
+	{
+		assertNull(converter.convertTo(resolveType(Long.class), singletonList(""), countAnnotations));
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testConversionWithoutPattern() throws Exception
+	{
+		converter.convertTo(resolveType(Long.class), singletonList("123"));
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testPartialMatch() throws Exception
+	{
+		converter.convertTo(resolveType(BigDecimal.class), singletonList("12,34 EUR"), amountAnnotations);
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testFraction() throws Exception
+	{
+		converter.convertTo(resolveType(Integer.class), singletonList("12.5"), countAnnotations);
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testOutOfRange() throws Exception
+	{
+		converter.convertTo(resolveType(Byte.class), singletonList("1,234"), countAnnotations);
+	}
+
+
+	public static class Bean
+	{
+		@NumberPattern(value = "#,##0.00", locale = "nl")
+		private BigDecimal amount;
+		private int count;
+
+
+		public BigDecimal getAmount()
+		{
+			return amount;
+		}
+
+
+		public void setAmount(BigDecimal amount)
+		{
+			this.amount = amount;
+		}
+
+
+		@NumberPattern(value = "#,##0", locale = "en")
+		public int getCount()
+		{
+			return count;
+		}
+
+
+		public void setCount(int count)
+		{
+			this.count = count;
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.converters;
+
+import java.lang.annotation.Annotation;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Collections.singletonList;
+import static net.sf.opk.beans.ConversionService.NO_ANNOTATIONS;
+import static net.sf.opk.beans.util.BeanUtil.findAnnotations;
+import static net.sf.opk.beans.util.GenericsUtil.resolveType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+public class JavaTimeConverterTest
+{
+	private JavaTimeConverter converter;
+
+
+	@Before
+	public void initialize()
+	{
+		converter = new JavaTimeConverter();
+	}
+
+
+	@Test
+	public void testPriority() throws Exception
+	{
+		assertEquals(Integer.MIN_VALUE + 4, converter.getPriority());
+	}
+
+
+	@Test
+	public void testImpossibleConversion() throws Exception
+	{
+		assertFalse(converter.canConvertTo(resolveType(List.class)));
+		assertFalse(converter.canConvertTo(resolveType(String.class)));
+	}
+
+
+	@Test
+	public void testIsoConversion() throws Exception
+	{
+		ResolvedType resolvedType = resolveType(LocalDate.class);
+		assertTrue(converter.canConvertTo(resolvedType));
+		assertFalse(converter.canConvertTo(resolvedType, NO_ANNOTATIONS));
+		assertEquals(LocalDate.of(2013, 2, 28), converter.convertTo(resolvedType, singletonList("2013-02-28")));
+		assertEquals(YearMonth.of(2013, 2), converter.convertTo(resolveType(YearMonth.class), singletonList("2013-02")));
+		assertEquals(Instant.ofEpochSecond(0), converter.convertTo(resolveType(Instant.class),
+		                                                              singletonList("1970-01-01T00:00:00Z")));
+		assertEquals(OffsetDateTime.of(2013, 2, 28, 12, 34, 0, 0, ZoneOffset.ofHours(1)),
+		             converter.convertTo(resolveType(OffsetDateTime.class), singletonList("2013-02-28T12:34+01:00")));
+	}
+
+
+	@Test
+	public void testEmptyConversion() throws Exception
+	{
+		Annotation[] annotations = findAnnotations(Bean.class, "date");
+		assertNull(converter.convertTo(resolveType(LocalDate.class), singletonList("")));
+		assertNull(converter.convertTo(resolveType(LocalDate.class), singletonList(""), annotations));
+	}
+
+
+	@Test
+	public void testPatternConversion() throws Exception
+	{
+		ResolvedType resolvedType = resolveType(LocalDate.class);
+		Annotation[] annotations = findAnnotations(Bean.class, "date");
+		assertTrue(converter.canConvertTo(resolvedType, annotations));
+		assertEquals(LocalDate.of(2013, 2, 28), converter.convertTo(resolvedType, singletonList("28-02-2013"),
+		                                                            annotations));
+		// The formatter is reused.
+		assertEquals(LocalDate.of(2013, 3, 1), converter.convertTo(resolvedType, singletonList("01-03-2013"),
+		                                                           annotations));
+	}
+
+
+	@Test
+	public void testLocalizedPatternConversion() throws Exception
+	{
+		ResolvedType resolvedType = resolveType(LocalDateTime.class);
+		Annotation[] annotations = findAnnotations(Bean.class, "dateTime");
+		assertTrue(converter.canConvertTo(resolvedType, annotations));
+		assertEquals(LocalDateTime.of(2013, 3, 1, 12, 34), converter.convertTo(resolvedType,
+		                                                                       singletonList("1 mars 2013 12:34"),
+		                                                                       annotations));
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testIsoConversionFailure() throws Exception
+	{
+		converter.convertTo(resolveType(LocalDate.class), singletonList("28-02-2013"));
+	}
+
+
+	@Test(expected = ConversionException.class)
+	public void testPatternConversionFailure() throws Exception
+	{
+		converter.convertTo(resolveType(LocalDate.class), singletonList("2013-02-28"),
+		                    findAnnotations(Bean.class, "date"));
+	}
+
+
+	public static class Bean
+	{
+		@DateTimePattern("dd-MM-uuuu")
+		private LocalDate date;
+		@DateTimePattern(value = "d MMMM uuuu HH:mm", locale = "fr")
+		private LocalDateTime dateTime;
+
+
+		public LocalDate getDate()
+		{
+			return date;
+		}
+
+
+		public void setDate(LocalDate date)
+		{
+			this.date = date;
+		}
+
+
+		public LocalDateTime getDateTime()
+		{
+			return dateTime;
+		}
+
+
+		public void setDateTime(LocalDateTime dateTime)
+		{
+			this.dateTime = dateTime;
+		}
+	}
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+import java.lang.annotation.Annotation;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+
+public class BeanIntrospectorTest extends UtilityClassTestBase
+{
+	@Test
+	public void testUtilityClass() throws Exception
+	{
+		confirmUtilityClass(BeanIntrospector.class);
+	}
+
+
+	@Test
+	public void testSimpleProperties() throws Exception
+	{
+		Map<String, PropertyMetadata> properties = BeanIntrospector.getProperties(Bean.class);
+		assertEquals(6, properties.size());
+		assertSame(properties, BeanIntrospector.getProperties(Bean.class));
+
+		PropertyMetadata name = properties.get("name");
+		assertEquals("name", name.getName());
+		assertEquals(String.class, name.getPropertyType());
+		assertEquals(Bean.class.getMethod("getName"), name.getReadMethod());
+		assertEquals(Bean.class.getMethod("setName", String.class), name.getWriteMethod());
+		assertFalse(name.isIndexed());
+
+		PropertyMetadata active = properties.get("active");
+		assertEquals(Boolean.TYPE, active.getPropertyType());
+		assertEquals(Bean.class.getMethod("isActive"), active.getReadMethod());
+
+		// A setter of another type than the getter is not the property setter.
+		PropertyMetadata count = properties.get("count");
+		assertEquals(Integer.TYPE, count.getPropertyType());
+		assertNull(count.getWriteMethod());
+
+		assertEquals("URL", properties.get("URL").getName());
+	}
+
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testPropertiesAreImmutable()
+	{
+		BeanIntrospector.getProperties(Bean.class).remove("name");
+	}
+
+
+	@Test
+	public void testIndexedProperties() throws Exception
+	{
+		Map<String, PropertyMetadata> properties = BeanIntrospector.getProperties(Bean.class);
+
+		PropertyMetadata items = properties.get("items");
+		assertEquals(String[].class, items.getPropertyType());
+		assertEquals(Bean.class.getMethod("getItems"), items.getReadMethod());
+		assertEquals(Bean.class.getMethod("getItems", Integer.TYPE), items.getIndexedReadMethod());
+		assertEquals(Bean.class.getMethod("setItems", Integer.TYPE, String.class), items.getIndexedWriteMethod());
+		assertTrue(items.isIndexed());
+
+		PropertyMetadata values = properties.get("values");
+		assertEquals(Long.TYPE, values.getPropertyType());
+		assertNull(values.getReadMethod());
+		assertNull(values.getWriteMethod());
+		assertEquals(Bean.class.getMethod("getValues", Integer.TYPE), values.getIndexedReadMethod());
+		assertNull(values.getIndexedWriteMethod());
+	}
+
+
+	@Test
+	public void testFluentProperties() throws Exception
+	{
+		Map<String, PropertyMetadata> properties = BeanIntrospector.getProperties(FluentBean.class);
+		assertEquals(2, properties.size());
+
+		PropertyMetadata name = properties.get("name");
+		assertEquals(FluentBean.class.getMethod("getName"), name.getReadMethod());
+		assertEquals(FluentBean.class.getMethod("setName", String.class), name.getWriteMethod());
+
+		PropertyMetadata label = properties.get("label");
+		assertEquals(String.class, label.getPropertyType());
+		assertEquals(FluentBean.class.getMethod("label"), label.getReadMethod());
+		assertEquals(FluentBean.class.getMethod("label", String.class), label.getWriteMethod());
+
+		// Without a getter, a method returning the bean is not a setter.
+		assertFalse(properties.containsKey("append"));
+	}
+
+
+	@Test
+	public void testGenericProperties() throws Exception
+	{
+		Map<String, PropertyMetadata> properties = BeanIntrospector.getProperties(StringHolder.class);
+		assertEquals(1, properties.size());
+
+		PropertyMetadata value = properties.get("value");
+		assertEquals(String.class, value.getPropertyType());
+		assertEquals(StringHolder.class.getMethod("getValue"), value.getReadMethod());
+		assertEquals(StringHolder.class.getMethod("setValue", String.class), value.getWriteMethod());
+	}
+
+
+	@Test
+	public void testAnnotations() throws Exception
+	{
+		Annotation[] annotations = BeanIntrospector.getProperties(Bean.class).get("name").getAnnotations();
+		assertEquals(1, annotations.length);
+		assertEquals(Deprecated.class, annotations[0].annotationType());
+	}
+
+
+	@Test
+	public void testDecapitalize()
+	{
+		assertEquals("name", BeanIntrospector.decapitalize("Name"));
+		assertEquals("URL", BeanIntrospector.decapitalize("URL"));
+		assertEquals("x", BeanIntrospector.decapitalize("X"));
+	}
+
+
+	public static class Bean
+	{
+		@Deprecated
+		private String name;
+		private boolean active;
+		private int count;
+		private String[] items;
+
+
+		public static Bean getInstance()
+		{
+			return new Bean();
+		}
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+
+
+		public boolean isActive()
+		{
+			return active;
+		}
+
+
+		public void setActive(boolean active)
+		{
+			this.active = active;
+		}
+
+
+		public int getCount()
+		{
+			return count;
+		}
+
+
+		public void setCount(String count)
+		{
+			this.count = Integer.parseInt(count);
+		}
+
+
+		public String getURL()
+		{
+			return "http://example.com/";
+		}
+
+
+		public String[] getItems()
+		{
+			return items;
+		}
+
+
+		public String getItems(int index)
+		{
+			return items[index];
+		}
+
+
+		public void setItems(int index, String item)
+		{
+			items[index] = item;
+		}
+
+
+		public long getValues(int index)
+		{
+			return index;
+		}
+	}
+
+
+	public static class FluentBean
+	{
+		private String name;
+		private String label;
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public FluentBean setName(String name)
+		{
+			this.name = name;
+			return this;
+		}
+
+
+		public String label()
+		{
+			return label;
+		}
+
+
+		public FluentBean label(String label)
+		{
+			this.label = label;
+			return this;
+		}
+
+
+		public FluentBean append(String suffix)
+		{
+			label += suffix;
+			return this;
+		}
+	}
+
+
+	public static class Holder<T>
+	{
+		private T value;
+
+
+		public T getValue()
+		{
+			return value;
+		}
+
+
+		public void setValue(T value)
+		{
+			this.value = value;
+		}
+	}
+
+
+	public static class StringHolder extends Holder<String>
+	{
+		@Override
+		public String getValue()
+		{
+			return super.getValue();
+		}
+
+
+		@Override
+		public void setValue(String value)
+		{
+			super.setValue(value);
+		}
+	}
+}
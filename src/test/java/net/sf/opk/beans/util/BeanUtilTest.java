@@ -15,7 +15,6 @@
  */
 package net.sf.opk.beans.util;
 
-import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -36,22 +35,15 @@ public class BeanUtilTest extends UtilityClassTestBase
 	}
 
 
-	@Test(expected = IllegalArgumentException.class)
-	public void testIntrospectionFailure()
-	{
-		BeanUtil.findBeanInfo(String.class, Number.class);
-	}
-
-
 	@Test
 	public void testFindProperties()
 	{
-		Map<String, PropertyDescriptor> properties = BeanUtil.findProperties(DummyBean.class);
+		Map<String, PropertyMetadata> properties = BeanUtil.findProperties(DummyBean.class);
 		assertEquals(2, properties.size());
 		assertEquals(String.class, properties.get("name").getPropertyType());
 		assertEquals(Integer.TYPE, properties.get("age").getPropertyType());
 
-		Map<String, PropertyDescriptor> properties2 = BeanUtil.findProperties(DummyBean.class);
+		Map<String, PropertyMetadata> properties2 = BeanUtil.findProperties(DummyBean.class);
 		assertSame(properties, properties2);
 	}
 
@@ -59,7 +51,7 @@ public class BeanUtilTest extends UtilityClassTestBase
 	@Test
 	public void testFindProperty1()
 	{
-		PropertyDescriptor property = BeanUtil.findProperty(DummyBean.class, "name");
+		PropertyMetadata property = BeanUtil.findProperty(DummyBean.class, "name");
 		assertEquals(String.class, property.getPropertyType());
 	}
 
@@ -15,6 +15,8 @@
  */
 package net.sf.opk.beans.util;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.AbstractMap;
@@ -24,10 +26,12 @@ import java.util.Map;
 import java.util.Set;
 
 import com.fasterxml.classmate.ResolvedType;
+import com.fasterxml.classmate.TypeResolver;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
 
@@ -99,6 +103,51 @@ public class GenericsUtilTest extends UtilityClassTestBase
 	}
 
 
+	@Test
+	public void testResolveInheritedReturnType() throws NoSuchMethodException
+	{
+		ResolvedType type = GenericsUtil.resolveType(DummySubClass1.class);
+
+		Method get = Map.class.getMethod("get", Object.class);
+		assertSame(GenericsUtil.resolveType(Integer.class), GenericsUtil.resolveReturnType(type, get));
+
+		Method entrySet = DummyClass1.class.getMethod("entrySet");
+		ResolvedType entrySetType = GenericsUtil.resolveReturnType(type, entrySet);
+		ResolvedType entryType = entrySetType.getTypeParameters().get(0);
+		assertEquals(Map.Entry.class, entryType.getErasedType());
+		assertEquals(String.class, entryType.getTypeParameters().get(0).getErasedType());
+		assertEquals(Integer.class, entryType.getTypeParameters().get(1).getErasedType());
+	}
+
+
+	@Test
+	public void testInterning()
+	{
+		assertSame(GenericsUtil.resolveType(List.class, String.class), GenericsUtil.resolveType(List.class,
+		                                                                                        String.class));
+		ResolvedType type = GenericsUtil.resolveType(DummyClass1.class);
+		assertSame(GenericsUtil.resolveType(Number.class), GenericsUtil.findTypeParameter(type, DummyClass1.class, 0));
+	}
+
+
+	@Test
+	public void testCachesDoNotRetainTypes() throws NoSuchMethodException
+	{
+		Method getSelf = SelfReference.class.getMethod("getSelf");
+		// Use a separate resolver, as the resolver of GenericsUtil has a (bounded) cache of its own.
+		ResolvedType type = GenericsUtil.intern(new TypeResolver().resolve(SelfReference.class, Thread.State.class));
+		assertSame(type, GenericsUtil.resolveReturnType(type, getSelf));
+
+		Reference<ResolvedType> reference = new WeakReference<>(type);
+		type = null;
+		for (int i = 0; i < 10 && reference.get() != null; i++)
+		{
+			System.gc();
+		}
+		assertNull(reference.get());
+	}
+
+
 	@Test(expected = IllegalArgumentException.class)
 	public void testResolveReturnType2() throws NoSuchMethodException
 	{
@@ -197,4 +246,13 @@ public class GenericsUtilTest extends UtilityClassTestBase
 			return 0;
 		}
 	}
+
+
+	public static class SelfReference<T>
+	{
+		public SelfReference<T> getSelf()
+		{
+			return this;
+		}
+	}
 }
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.beans.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+
+public class LruCacheTest
+{
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize()
+	{
+		new LruCache<String, String>(0);
+	}
+
+
+	@Test
+	public void testEviction()
+	{
+		LruCache<String, Integer> cache = new LruCache<>(2);
+		cache.put("one", 1);
+		cache.put("two", 2);
+		assertEquals(Integer.valueOf(1), cache.get("one"));
+
+		cache.put("three", 3); // Evicts "two": "one" was used more recently.
+		assertNull(cache.get("two"));
+		assertEquals(Integer.valueOf(1), cache.get("one"));
+		assertEquals(Integer.valueOf(3), cache.get("three"));
+
+		cache.remove("three");
+		assertNull(cache.get("three"));
+
+		CacheStatistics statistics = cache.getStatistics();
+		assertEquals(3, statistics.getHits());
+		assertEquals(2, statistics.getMisses());
+		assertEquals(1, statistics.getSize());
+		assertEquals(2, statistics.getMaximumSize());
+		assertEquals(0.6, statistics.getHitRate(), 1e-9);
+
+		cache.clear();
+		assertEquals(0, cache.getStatistics().getSize());
+		assertEquals(0.0, new CacheStatistics(0, 0, 0, 1).getHitRate(), 0);
+	}
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2012-2013 Oscar Westra van Holthe - Kind
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied. See the License for the specific language governing permissions and limitations under the
+ * License.
+ */
+package net.sf.opk.rest.forms;
+
+import java.lang.annotation.Annotation;
+import java.util.Collection;
+import java.util.List;
+
+import com.fasterxml.classmate.ResolvedType;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import net.sf.opk.beans.ConversionService;
+import net.sf.opk.beans.PropertyParser;
+
+import static net.sf.opk.beans.ConversionService.NO_ANNOTATIONS;
+import static net.sf.opk.beans.util.GenericsUtil.resolveType;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class FormBeanWarmupTest
+{
+	private PropertyParser propertyParser;
+	private ConversionService conversionService;
+	private FormBeanWarmup warmup;
+
+
+	@Before
+	public void initialize()
+	{
+		conversionService = mock(ConversionService.class);
+		when(conversionService.canConvert(any(ResolvedType.class), any(Annotation[].class))).thenAnswer(
+				new Answer<Boolean>()
+				{
+					@Override
+					public Boolean answer(InvocationOnMock invocation) throws Throwable
+					{
+						ResolvedType type = (ResolvedType)invocation.getArguments()[0];
+						return type.isPrimitive() || type.isInstanceOf(String.class) ||
+						       type.isInstanceOf(Collection.class);
+					}
+				});
+
+		propertyParser = new PropertyParser(conversionService);
+		warmup = new FormBeanWarmup(propertyParser, conversionService);
+	}
+
+
+	@Test
+	public void testWarmUp()
+	{
+		assertEquals(4, warmup.warmUp(Form.class, 3));
+		assertEquals(4, propertyParser.getCacheStatistics().getSize());
+
+		// Admitted paths are cached.
+		assertSame(propertyParser.parse("address.street"), propertyParser.parse("address.street"));
+		assertSame(propertyParser.parse("tags"), propertyParser.parse("tags"));
+
+		// The element types are prepared as well.
+		verify(conversionService, atLeastOnce()).canConvert(resolveType(String.class), NO_ANNOTATIONS);
+		verify(conversionService, atLeastOnce()).canConvert(resolveType(List.class, String.class), NO_ANNOTATIONS);
+		verify(conversionService, atLeastOnce()).canConvert(resolveType(Integer.TYPE), NO_ANNOTATIONS);
+	}
+
+
+	@Test
+	public void testWarmUpWithoutNesting()
+	{
+		assertEquals(3, warmup.warmUp(Form.class, 1));
+		assertEquals(3, propertyParser.getCacheStatistics().getSize());
+	}
+
+
+	@FormBean
+	public static class Form
+	{
+		private String name;
+		private int age;
+		private Address address;
+		private List<Address> addresses;
+		private List<String> tags;
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+
+
+		public int getAge()
+		{
+			return age;
+		}
+
+
+		public void setAge(int age)
+		{
+			this.age = age;
+		}
+
+
+		public Address getAddress()
+		{
+			return address;
+		}
+
+
+		public List<Address> getAddresses()
+		{
+			return addresses;
+		}
+
+
+		public List<String> getTags()
+		{
+			return tags;
+		}
+
+
+		public void setTags(List<String> tags)
+		{
+			this.tags = tags;
+		}
+
+
+		public String getSummary()
+		{
+			return name + " (" + age + ')';
+		}
+	}
+
+
+	public static class Address
+	{
+		private String street;
+		private Form owner;
+
+
+		public String getStreet()
+		{
+			return street;
+		}
+
+
+		public void setStreet(String street)
+		{
+			this.street = street;
+		}
+
+
+		public Form getOwner()
+		{
+			return owner;
+		}
+	}
+}
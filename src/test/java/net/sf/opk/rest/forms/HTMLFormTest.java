@@ -17,7 +17,13 @@ package net.sf.opk.rest.forms;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -25,23 +31,35 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.validation.Constraint;
+import javax.validation.ConstraintValidator;
+import javax.validation.ConstraintValidatorContext;
 import javax.validation.ConstraintViolation;
 import javax.validation.MessageInterpolator;
 import javax.validation.Path;
+import javax.validation.Payload;
+import javax.validation.Valid;
 import javax.validation.Validation;
 import javax.validation.Validator;
 import javax.validation.ValidatorFactory;
 import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
 import javax.ws.rs.core.MediaType;
 
 import com.fasterxml.classmate.ResolvedType;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import net.sf.opk.beans.ConversionService;
 import net.sf.opk.beans.PropertyParser;
 import net.sf.opk.beans.converters.ConversionException;
 
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
 import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
 import static org.junit.Assert.assertArrayEquals;
@@ -51,14 +69,19 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
 public class HTMLFormTest
 {
 	private ConversionService conversionService;
+	private PropertyParser propertyParser;
 	private HTMLForm htmlForm;
 
 
@@ -67,7 +90,7 @@ public class HTMLFormTest
 	{
 		conversionService = mock(ConversionService.class);
 
-		PropertyParser propertyParser = new PropertyParser(conversionService);
+		propertyParser = new PropertyParser(conversionService);
 		ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
 		Validator validator = validatorFactory.getValidator();
 		MessageInterpolator messageInterpolator = validatorFactory.getMessageInterpolator();
@@ -212,14 +235,16 @@ public class HTMLFormTest
 		bean.setParent(new SimpleParentBean());
 
 		Object value1 = new Object();
-		when(conversionService.convert(eq(asList("value1", "value2", "value3", "value4")), any(ResolvedType.class))).thenReturn(value1);
+		when(conversionService.convert(eq(asList("value1", "value2", "value3", "value4")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(value1);
 
-		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class))).thenReturn(true);
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
 
 		assertTrue(htmlForm.applyValuesTo(bean).isEmpty());
 
 		assertSame(value1, bean.getField1());
 		assertTrue(bean.getParent().isField2());
+		// Both bound paths have been admitted to the cache.
+		assertEquals(2, propertyParser.getCacheStatistics().getSize());
 	}
 
 
@@ -228,9 +253,9 @@ public class HTMLFormTest
 	{
 		SimpleParentBean bean = new SimpleParentBean();
 
-		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class))).thenReturn(true);
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
 
-		when(conversionService.convert(eq(singletonList("2")), any(ResolvedType.class))).thenReturn(2);
+		when(conversionService.convert(eq(singletonList("2")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(2);
 
 		htmlForm.add("parent.field3", "2");
 		assertTrue(htmlForm.applyValuesTo("parent", bean).isEmpty());
@@ -247,9 +272,9 @@ public class HTMLFormTest
 
 		SimpleParentBean bean = new SimpleParentBean();
 
-		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class))).thenThrow(new ConversionException(message));
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenThrow(new ConversionException(message));
 
-		when(conversionService.convert(eq(singletonList("5")), any(ResolvedType.class))).thenReturn(5);
+		when(conversionService.convert(eq(singletonList("5")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(5);
 
 		htmlForm.add("parent.field3", "5");
 		Set<ConstraintViolation<SimpleParentBean>> violations = htmlForm.applyValuesTo("parent", bean);
@@ -267,10 +292,224 @@ public class HTMLFormTest
 			paths.add(path(violation.getPropertyPath()));
 		}
 		assertEquals(new HashSet<>(asList(message, "must be less than or equal to 3")), messages);
+		// Only the path that could be bound has been admitted to the cache.
+		assertEquals(1, propertyParser.getCacheStatistics().getSize());
 		assertEquals(new HashSet<>(asList("parent.field2", "parent.field3")), paths);
 	}
 
 
+	@Test
+	public void testViolationIndex()
+	{
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenThrow(new ConversionException("an error"));
+
+		SimpleParentBean bean = new SimpleParentBean();
+		bean.setField3(5);
+		BindingResult<SimpleParentBean> result = htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS);
+
+		ViolationIndex<SimpleParentBean> violations = result.getViolationIndex();
+		assertEquals(2, violations.size());
+		assertEquals(singletonList("an error"), violations.getMessages("parent.field2"));
+		assertEquals(singletonList("must be less than or equal to 3"), violations.getMessages("parent.field3"));
+		assertEquals(2, violations.withPrefix("parent").size());
+	}
+
+
+	@Test
+	public void testDirtyChecking()
+	{
+		SimpleParentBean bean = new SimpleParentBean();
+		bean.setField2(true);
+		bean.setField3(2);
+
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
+
+		when(conversionService.convert(eq(singletonList("3")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(3);
+
+		htmlForm.add("parent.field3", "3");
+		BindingResult<SimpleParentBean> result = htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS);
+		assertTrue(result.getConstraintViolations().isEmpty());
+		assertEquals(asList("parent.field2", "parent.field3"), new ArrayList<>(result.getModifiedFields()));
+
+		bean.setField3(2);
+		result = htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS.withDirtyChecking(true));
+		assertTrue(result.getConstraintViolations().isEmpty());
+		assertEquals(singletonList("parent.field3"), new ArrayList<>(result.getModifiedFields()));
+		assertEquals(3, bean.getField3());
+		assertFalse(BindingOptions.DEFAULTS.isDirtyChecking());
+	}
+
+
+	@Test
+	public void testValidationModes()
+	{
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
+
+		SimpleParentBean bean = new SimpleParentBean();
+		bean.setField3(5);
+		BindingOptions touched = BindingOptions.DEFAULTS.withValidationMode(ValidationMode.TOUCHED);
+		assertTrue(htmlForm.applyValuesTo("parent", bean, touched).getConstraintViolations().isEmpty());
+
+		Set<ConstraintViolation<SimpleParentBean>> violations = htmlForm.applyValuesTo("parent", bean);
+		assertEquals(1, violations.size());
+		assertEquals("parent.field3", path(violations.iterator().next().getPropertyPath()));
+
+		// The violation of the old value is replaced by the conversion error.
+		when(conversionService.convert(eq(singletonList("x")), any(ResolvedType.class), any(Annotation[].class))).thenThrow(new ConversionException("not a number"));
+		htmlForm.add("parent.field3", "x");
+		violations = htmlForm.applyValuesTo("parent", bean);
+		assertEquals(1, violations.size());
+		assertEquals("not a number", violations.iterator().next().getMessage());
+		assertEquals(ValidationMode.FULL, BindingOptions.DEFAULTS.getValidationMode());
+	}
+
+
+	@Test
+	public void testCascadedValidation()
+	{
+		when(conversionService.convert(eq(singletonList("x")), any(ResolvedType.class), any(Annotation[].class))).thenThrow(new ConversionException("not a number"));
+
+		// The bean itself has no constraints: it only validates its list elements in cascade.
+		CascadingBean bean = new CascadingBean();
+		bean.getLines().get(0).setField3(5);
+		bean.getLines().get(1).setField3(7);
+		htmlForm.add("order.lines[1].field3", "x");
+		BindingResult<CascadingBean> result = htmlForm.applyValuesTo("order", bean, BindingOptions.DEFAULTS);
+
+		// The violation of the old value of lines[1] is replaced by the conversion error.
+		assertEquals(2, result.getConstraintViolations().size());
+		assertEquals(singletonList("must be less than or equal to 3"),
+		             result.getViolationIndex().getMessages("order.lines[0].field3"));
+		assertEquals(singletonList("not a number"), result.getViolationIndex().getMessages("order.lines[1].field3"));
+	}
+
+
+	@Test
+	public void testValidationGroups()
+	{
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
+
+		SimpleParentBean bean = new SimpleParentBean();
+		bean.setField3(5);
+		BindingOptions secondStep = BindingOptions.DEFAULTS.withGroups(SecondStep.class);
+		assertTrue(htmlForm.applyValuesTo("parent", bean, secondStep).getConstraintViolations().isEmpty());
+
+		bean.setField3(0);
+		Set<ConstraintViolation<SimpleParentBean>> violations =
+				htmlForm.applyValuesTo("parent", bean, secondStep).getConstraintViolations();
+		assertEquals(1, violations.size());
+		assertEquals("must be greater than or equal to 1", violations.iterator().next().getMessage());
+		assertEquals(0, BindingOptions.DEFAULTS.getGroups().length);
+	}
+
+
+	@Test
+	public void testMaximumViolations()
+	{
+		when(conversionService.convert(any(List.class), any(ResolvedType.class), any(Annotation[].class))).thenThrow(new ConversionException("invalid"));
+
+		htmlForm.add("parent.field3", "x");
+		SimpleParentBean bean = new SimpleParentBean();
+		BindingResult<SimpleParentBean> result = htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS);
+		assertEquals(2, result.getConstraintViolations().size());
+		assertTrue(result.isComplete());
+
+		result = htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS.withMaxViolations(1));
+		assertEquals(1, result.getConstraintViolations().size());
+		assertFalse(result.isComplete());
+		assertEquals(Integer.MAX_VALUE, BindingOptions.DEFAULTS.getMaxViolations());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaximumViolations()
+	{
+		BindingOptions.DEFAULTS.withMaxViolations(0);
+	}
+
+
+	@Test
+	public void testTimeBudget()
+	{
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable
+			{
+				Thread.sleep(20);
+				return true;
+			}
+		});
+
+		when(conversionService.convert(eq(singletonList("2")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(2);
+
+		htmlForm.add("parent.field3", "2");
+		SimpleParentBean bean = new SimpleParentBean();
+		// Warm up the caches, so the time budget is only spent on converting values.
+		assertTrue(htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS).isComplete());
+
+		BindingResult<SimpleParentBean> result =
+				htmlForm.applyValuesTo("parent", bean, BindingOptions.DEFAULTS.withTimeBudget(5, TimeUnit.MILLISECONDS));
+		assertTrue(result.getConstraintViolations().isEmpty());
+		assertEquals(singletonList("parent.field2"), new ArrayList<>(result.getModifiedFields()));
+		assertFalse(result.isComplete());
+		assertEquals(0, BindingOptions.DEFAULTS.getTimeBudget(TimeUnit.NANOSECONDS));
+	}
+
+
+	@Test
+	public void testUnconstrainedPropertiesAreNotValidated()
+	{
+		when(conversionService.convert(eq(singletonList("true")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(true);
+
+		ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+		Validator validator = mock(Validator.class, new DelegatingAnswer(validatorFactory.getValidator()));
+		HTMLForm form = new HTMLForm(propertyParser, conversionService, validator,
+		                             validatorFactory.getMessageInterpolator());
+		addFieldValues(form);
+
+		SimpleParentBean bean = new SimpleParentBean();
+		BindingOptions touched = BindingOptions.DEFAULTS.withValidationMode(ValidationMode.TOUCHED);
+		assertTrue(form.applyValuesTo("parent", bean, touched).getConstraintViolations().isEmpty());
+		assertTrue(bean.isField2());
+
+		verify(validator, never()).validateProperty(any(), anyString());
+		verify(validator, never()).validate(any());
+	}
+
+
+	@Test
+	public void testTouchedValidationWithClassConstraints()
+	{
+		when(conversionService.convert(eq(singletonList("20")), any(ResolvedType.class), any(Annotation[].class))).thenReturn(20);
+
+		ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory();
+		Validator validator = mock(Validator.class, new DelegatingAnswer(validatorFactory.getValidator()));
+		HTMLForm form = new HTMLForm(propertyParser, conversionService, validator,
+		                             validatorFactory.getMessageInterpolator());
+		form.add("range.low", "20");
+		form.add("holder.range.low", "20");
+		BindingOptions touched = BindingOptions.DEFAULTS.withValidationMode(ValidationMode.TOUCHED);
+
+		// The class-level constraint and the touched property are validated, but the untouched property is not.
+		RangeBean range = new RangeBean();
+		range.setHigh(5);
+		BindingResult<RangeBean> result = form.applyValuesTo("range", range, touched);
+		assertEquals(new HashSet<>(asList("range", "range.low")), result.getViolationIndex().keySet());
+
+		// The same holds for the class-level constraints of nested beans with touched properties.
+		RangeHolder holder = new RangeHolder();
+		holder.getRange().setHigh(5);
+		BindingResult<RangeHolder> holderResult = form.applyValuesTo("holder", holder, touched);
+		assertEquals(new HashSet<>(asList("holder.range", "holder.range.low")),
+		             holderResult.getViolationIndex().keySet());
+
+		// Each constraint is evaluated once: the touched properties are not validated separately.
+		verify(validator, never()).validateProperty(any(), anyString());
+		verify(validator, times(2)).validate(any());
+	}
+
+
 	private String path(Path propertyPath)
 	{
 		StringBuilder buffer = new StringBuilder();
@@ -361,10 +600,171 @@ public class HTMLFormTest
 		}
 	}
 
+	public static class CascadingBean
+	{
+		@Valid
+		private List<SimpleParentBean> lines = asList(new SimpleParentBean(), new SimpleParentBean());
+
+
+		public List<SimpleParentBean> getLines()
+		{
+			return lines;
+		}
+
+
+		public void setLines(List<SimpleParentBean> lines)
+		{
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Delegates invocations of a mock to a real object, passing variable arguments as an array again.
+	 */
+	private static class DelegatingAnswer implements Answer<Object>
+	{
+		private final Object delegate;
+
+
+		private DelegatingAnswer(Object delegate)
+		{
+			this.delegate = delegate;
+		}
+
+
+		@Override
+		public Object answer(InvocationOnMock invocation) throws Throwable
+		{
+			Method method = invocation.getMethod();
+			Object[] arguments = invocation.getArguments();
+			if (method.isVarArgs())
+			{
+				int fixedCount = method.getParameterTypes().length - 1;
+				Class<?> varArgType = method.getParameterTypes()[fixedCount].getComponentType();
+				Object varArgs = Array.newInstance(varArgType, arguments.length - fixedCount);
+				System.arraycopy(arguments, fixedCount, varArgs, 0, arguments.length - fixedCount);
+				arguments = Arrays.copyOf(arguments, fixedCount + 1);
+				arguments[fixedCount] = varArgs;
+			}
+			return method.invoke(delegate, arguments);
+		}
+	}
+
+	public interface SecondStep
+	{
+	}
+
+	@Target(TYPE)
+	@Retention(RUNTIME)
+	@Constraint(validatedBy = OrderedRangeValidator.class)
+	public @interface OrderedRange
+	{
+		String message() default "low must not exceed high";
+
+		Class<?>[] groups() default {};
+
+		Class<? extends Payload>[] payload() default {};
+	}
+
+	public static class OrderedRangeValidator implements ConstraintValidator<OrderedRange, RangeBean>
+	{
+		@Override
+		public void initialize(OrderedRange constraintAnnotation)
+		{
+			// Nothing to do.
+		}
+
+
+		@Override
+		public boolean isValid(RangeBean value, ConstraintValidatorContext context)
+		{
+			return value.getLow() <= value.getHigh();
+		}
+	}
+
+	@OrderedRange
+	public static class RangeBean
+	{
+		@Max(10)
+		private int low;
+		private int high;
+		@NotNull
+		private String name;
+
+
+		public int getLow()
+		{
+			return low;
+		}
+
+
+		public void setLow(int low)
+		{
+			this.low = low;
+		}
+
+
+		public int getHigh()
+		{
+			return high;
+		}
+
+
+		public void setHigh(int high)
+		{
+			this.high = high;
+		}
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+	}
+
+	public static class RangeHolder
+	{
+		@Valid
+		private RangeBean range = new RangeBean();
+		@NotNull
+		private String label;
+
+
+		public RangeBean getRange()
+		{
+			return range;
+		}
+
+
+		public void setRange(RangeBean range)
+		{
+			this.range = range;
+		}
+
+
+		public String getLabel()
+		{
+			return label;
+		}
+
+
+		public void setLabel(String label)
+		{
+			this.label = label;
+		}
+	}
+
 	public static class SimpleParentBean
 	{
 		private boolean field2;
 		@Max(3)
+		@Min(value = 1, groups = SecondStep.class)
 		private int field3;
 
 
@@ -0,0 +1,84 @@
+package net.sf.opk.rest.forms;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.validation.ConstraintViolation;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class ViolationIndexTest
+{
+	private ConstraintViolation<Object> streetViolation;
+	private ViolationIndex<Object> index;
+
+
+	@Before
+	public void initialize()
+	{
+		streetViolation = violation("street is required");
+		Map<String, List<ConstraintViolation<Object>>> violationsByField = new HashMap<>();
+		violationsByField.put("address", Arrays.asList(violation("invalid address")));
+		violationsByField.put("address.street", Arrays.asList(streetViolation));
+		violationsByField.put("address[1].number", Arrays.asList(violation("not a number")));
+		violationsByField.put("addressLine", Arrays.asList(violation("too long")));
+		violationsByField.put("name", Arrays.asList(violation("too short"), violation("invalid characters")));
+		index = new ViolationIndex<>(violationsByField);
+	}
+
+
+	private ConstraintViolation<Object> violation(String message)
+	{
+		ConstraintViolation<Object> violation = mock(ConstraintViolation.class);
+		when(violation.getMessage()).thenReturn(message);
+		return violation;
+	}
+
+
+	@Test
+	public void testLookup()
+	{
+		assertEquals(5, index.size());
+		assertEquals(Arrays.asList(streetViolation), index.get("address.street"));
+		assertTrue(index.containsKey("name"));
+		assertNull(index.get("city"));
+		assertEquals(Arrays.asList("too short", "invalid characters"), index.getMessages("name"));
+		assertEquals(Collections.<String>emptyList(), index.getMessages("city"));
+		assertEquals(Arrays.asList("address", "address.street", "addressLine", "address[1].number", "name"),
+		             Arrays.asList(index.keySet().toArray()));
+	}
+
+
+	@Test
+	public void testPrefixQueries()
+	{
+		assertEquals(Arrays.asList("address", "address.street", "address[1].number"),
+		             Arrays.asList(index.withPrefix("address").keySet().toArray()));
+		assertEquals(Arrays.asList("address[1].number"), Arrays.asList(index.withPrefix("address[1]").keySet().toArray()));
+		assertTrue(index.withPrefix("city").isEmpty());
+		assertEquals(5, index.withPrefix("").size());
+
+		assertTrue(index.hasViolations("address"));
+		assertTrue(index.hasViolations("address[1]"));
+		assertFalse(index.hasViolations("address[0]"));
+		assertFalse(index.hasViolations("addr"));
+	}
+
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable()
+	{
+		index.get("name").clear();
+	}
+}
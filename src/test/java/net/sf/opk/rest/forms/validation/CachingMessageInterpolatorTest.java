@@ -0,0 +1,62 @@
+package net.sf.opk.rest.forms.validation;
+
+import java.util.Collections;
+import java.util.Locale;
+import javax.validation.MessageInterpolator;
+import javax.validation.metadata.ConstraintDescriptor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class CachingMessageInterpolatorTest
+{
+	@Test
+	public void testMessagesWithoutParametersAreCached()
+	{
+		MessageInterpolator.Context context = mock(MessageInterpolator.Context.class);
+		when(context.getConstraintDescriptor()).thenReturn((ConstraintDescriptor)ConversionConstraintDescriptor.INSTANCE);
+
+		MessageInterpolator delegate = mock(MessageInterpolator.class);
+		when(delegate.interpolate(eq("{template}"), any(MessageInterpolator.Context.class), eq(Locale.ENGLISH))).thenReturn("message");
+		when(delegate.interpolate(eq("{template}"), any(MessageInterpolator.Context.class), eq(Locale.FRENCH))).thenReturn("le message");
+
+		CachingMessageInterpolator interpolator = new CachingMessageInterpolator(delegate);
+		for (int i = 0; i < 3; i++)
+		{
+			assertEquals("message", interpolator.interpolate("{template}", context, Locale.ENGLISH));
+			assertEquals("le message", interpolator.interpolate("{template}", context, Locale.FRENCH));
+		}
+
+		verify(delegate, times(1)).interpolate("{template}", context, Locale.ENGLISH);
+		verify(delegate, times(1)).interpolate("{template}", context, Locale.FRENCH);
+		assertEquals(2, interpolator.getCacheStatistics().getSize());
+	}
+
+
+	@Test
+	public void testMessagesWithParametersAreNotCached()
+	{
+		ConstraintDescriptor constraintDescriptor = mock(ConstraintDescriptor.class);
+		when(constraintDescriptor.getAttributes()).thenReturn(Collections.<String, Object>singletonMap("max", 3));
+		MessageInterpolator.Context context = mock(MessageInterpolator.Context.class);
+		when(context.getConstraintDescriptor()).thenReturn(constraintDescriptor);
+
+		MessageInterpolator delegate = mock(MessageInterpolator.class);
+		when(delegate.interpolate("{max}", context)).thenReturn("3");
+
+		CachingMessageInterpolator interpolator = new CachingMessageInterpolator(delegate);
+		assertEquals("3", interpolator.interpolate("{max}", context));
+		assertEquals("3", interpolator.interpolate("{max}", context));
+
+		verify(delegate, times(2)).interpolate("{max}", context);
+		assertEquals(0, interpolator.getCacheStatistics().getSize());
+	}
+}
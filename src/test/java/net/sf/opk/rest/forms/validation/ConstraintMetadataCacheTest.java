@@ -0,0 +1,135 @@
+package net.sf.opk.rest.forms.validation;
+
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.NotNull;
+import javax.validation.metadata.BeanDescriptor;
+import javax.validation.metadata.PropertyDescriptor;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ConstraintMetadataCacheTest
+{
+	@Test
+	public void testMetadata() throws Exception
+	{
+		Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+		ConstraintMetadataCache cache = new ConstraintMetadataCache(validator);
+
+		assertFalse(cache.isBeanConstrained(Unconstrained.class));
+		assertFalse(cache.hasClassConstraints(Unconstrained.class));
+		assertFalse(cache.isPropertyConstrained(Unconstrained.class, "name"));
+
+		assertTrue(cache.isBeanConstrained(Constrained.class));
+		assertFalse(cache.hasClassConstraints(Constrained.class));
+		assertTrue(cache.isPropertyConstrained(Constrained.class, "name"));
+		assertFalse(cache.isPropertyConstrained(Constrained.class, "description"));
+		assertFalse(cache.isPropertyConstrained(Constrained.class, "nonExisting"));
+
+		assertTrue(cache.isBeanConstrained(Cascading.class));
+		assertFalse(cache.hasClassConstraints(Cascading.class));
+		assertFalse(cache.isPropertyConstrained(Cascading.class, "child"));
+	}
+
+
+	@Test
+	public void testCaching() throws Exception
+	{
+		PropertyDescriptor propertyDescriptor = mock(PropertyDescriptor.class);
+		when(propertyDescriptor.hasConstraints()).thenReturn(true);
+		BeanDescriptor beanDescriptor = mock(BeanDescriptor.class);
+		when(beanDescriptor.hasConstraints()).thenReturn(true);
+		when(beanDescriptor.getConstraintsForProperty("name")).thenReturn(propertyDescriptor);
+		Validator validator = mock(Validator.class);
+		when(validator.getConstraintsForClass(Constrained.class)).thenReturn(beanDescriptor);
+
+		ConstraintMetadataCache cache = new ConstraintMetadataCache(validator);
+		for (int i = 0; i < 3; i++)
+		{
+			assertTrue(cache.isBeanConstrained(Constrained.class));
+			assertTrue(cache.hasClassConstraints(Constrained.class));
+			assertTrue(cache.isPropertyConstrained(Constrained.class, "name"));
+		}
+
+		verify(validator, times(1)).getConstraintsForClass(Constrained.class);
+		verify(beanDescriptor, times(1)).getConstraintsForProperty("name");
+	}
+
+
+	public static class Unconstrained
+	{
+		private String name;
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+	}
+
+
+	public static class Constrained
+	{
+		@NotNull
+		private String name;
+		private String description;
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+
+
+		public String getDescription()
+		{
+			return description;
+		}
+
+
+		public void setDescription(String description)
+		{
+			this.description = description;
+		}
+	}
+
+
+	public static class Cascading
+	{
+		@Valid
+		private Constrained child;
+
+
+		public Constrained getChild()
+		{
+			return child;
+		}
+
+
+		public void setChild(Constrained child)
+		{
+			this.child = child;
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package net.sf.opk.rest.forms.validation;
+
+import java.lang.annotation.ElementType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.validation.ConstraintViolation;
+import javax.validation.Path;
+import javax.validation.TraversableResolver;
+import javax.validation.Valid;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sf.opk.beans.PropertyParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+
+public class ParallelValidatorTest
+{
+	private Validator validator;
+	private PropertyParser propertyParser;
+	private ParallelValidator parallelValidator;
+	private ExecutorService executor;
+
+
+	@Before
+	public void initialize()
+	{
+		validator = Validation.buildDefaultValidatorFactory().getValidator();
+		propertyParser = new PropertyParser(null);
+		parallelValidator = new ParallelValidator(validator, new ConstraintMetadataCache(validator), propertyParser);
+		executor = Executors.newFixedThreadPool(4);
+	}
+
+
+	@After
+	public void cleanUp()
+	{
+		executor.shutdown();
+	}
+
+
+	@Test
+	public void testLargeListIsValidatedInParallel()
+	{
+		Order order = new Order();
+		order.setCustomer(new Customer());
+		for (int i = 0; i < 1000; i++)
+		{
+			order.getLines().add(new Line(i % 100 == 0 ? 0 : 1));
+		}
+		order.getLines().set(500, null);
+
+		Set<ConstraintViolation<Order>> violations = parallelValidator.validate(order, executor);
+
+		assertEquals(11, violations.size());
+		assertEquals(describe(validator.validate(order)), describe(violations));
+		for (ConstraintViolation<Order> violation : violations)
+		{
+			assertSame(order, violation.getRootBean());
+			assertEquals(Order.class, violation.getRootBeanClass());
+		}
+	}
+
+
+	@Test
+	public void testSmallListIsValidatedNormally()
+	{
+		Order order = new Order();
+		order.getLines().add(new Line(0));
+		Executor mockExecutor = mock(Executor.class);
+
+		Set<ConstraintViolation<Order>> violations = parallelValidator.validate(order, mockExecutor);
+
+		assertEquals(describe(validator.validate(order)), describe(violations));
+		verify(mockExecutor, never()).execute(any(Runnable.class));
+	}
+
+
+	@Test(timeout = 10000)
+	public void testUnstartedChunksAreValidatedOnCallingThread()
+	{
+		Order order = new Order();
+		order.setCustomer(new Customer());
+		for (int i = 0; i < 1000; i++)
+		{
+			order.getLines().add(new Line(i % 100 == 0 ? 0 : 1));
+		}
+		// A saturated executor, that never gets around to the queued chunks.
+		final List<Runnable> queue = new ArrayList<>();
+		Executor busyExecutor = new Executor()
+		{
+			@Override
+			public void execute(Runnable command)
+			{
+				queue.add(command);
+			}
+		};
+
+		Set<ConstraintViolation<Order>> violations = parallelValidator.validate(order, busyExecutor);
+
+		assertEquals(describe(validator.validate(order)), describe(violations));
+		assertFalse(queue.isEmpty());
+	}
+
+
+	@Test
+	public void testUntraversableListIsSkipped()
+	{
+		TraversableResolver traversableResolver = new TraversableResolver()
+		{
+			@Override
+			public boolean isReachable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType,
+			                           Path pathToTraversableObject, ElementType elementType)
+			{
+				return true;
+			}
+
+
+			@Override
+			public boolean isCascadable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType,
+			                            Path pathToTraversableObject, ElementType elementType)
+			{
+				return !"lines".equals(traversableProperty.getName());
+			}
+		};
+		Validator restrictedValidator = Validation.byDefaultProvider().configure()
+				.traversableResolver(traversableResolver).buildValidatorFactory().getValidator();
+		ParallelValidator restrictedParallelValidator = new ParallelValidator(
+				restrictedValidator, new ConstraintMetadataCache(restrictedValidator), propertyParser,
+				traversableResolver);
+
+		Order order = new Order();
+		for (int i = 0; i < 1000; i++)
+		{
+			order.getLines().add(new Line(0));
+		}
+
+		Set<ConstraintViolation<Order>> violations = restrictedParallelValidator.validate(order, executor);
+
+		assertEquals(1, violations.size());
+		assertEquals(describe(restrictedValidator.validate(order)), describe(violations));
+	}
+
+
+	private Set<String> describe(Set<? extends ConstraintViolation<?>> violations)
+	{
+		Set<String> descriptions = new HashSet<>();
+		for (ConstraintViolation<?> violation : violations)
+		{
+			descriptions.add(propertyParser.format(violation.getPropertyPath()) + ": " + violation.getMessage());
+		}
+		return descriptions;
+	}
+
+
+	public static class Order
+	{
+		@NotNull
+		private String name;
+		@Valid
+		private Customer customer;
+		@Valid
+		private List<Line> lines = new ArrayList<>();
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+
+
+		public Customer getCustomer()
+		{
+			return customer;
+		}
+
+
+		public void setCustomer(Customer customer)
+		{
+			this.customer = customer;
+		}
+
+
+		public List<Line> getLines()
+		{
+			return lines;
+		}
+
+
+		public void setLines(List<Line> lines)
+		{
+			this.lines = lines;
+		}
+	}
+
+	public static class Customer
+	{
+		@NotNull
+		private String name;
+
+
+		public String getName()
+		{
+			return name;
+		}
+
+
+		public void setName(String name)
+		{
+			this.name = name;
+		}
+	}
+
+	public static class Line
+	{
+		@Min(1)
+		private int quantity;
+
+
+		public Line(int quantity)
+		{
+			this.quantity = quantity;
+		}
+
+
+		public int getQuantity()
+		{
+			return quantity;
+		}
+
+
+		public void setQuantity(int quantity)
+		{
+			this.quantity = quantity;
+		}
+	}
+}
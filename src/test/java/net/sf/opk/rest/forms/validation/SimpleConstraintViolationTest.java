@@ -1,6 +1,8 @@
 package net.sf.opk.rest.forms.validation;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
 import javax.validation.ConstraintViolation;
 import javax.validation.MessageInterpolator;
@@ -16,10 +18,15 @@ import net.sf.opk.beans.PropertyParser;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -73,6 +80,32 @@ public class SimpleConstraintViolationTest
 		assertFalse(testPath.hasNext());
 	}
 
+	@Test
+	public void testEquality()
+	{
+		Object rootBean = new Object();
+		Object leafBean = new Object();
+		PropertyParser propertyParser = new PropertyParser(null);
+		Path path1 = propertyParser.parse("foo.bar").toPath();
+		Path path2 = propertyParser.parse("foo['bar']").toPath();
+
+		SimpleConstraintViolation<Object> violation1 = new SimpleConstraintViolation<>(
+				"a message", "{template}", rootBean, Object.class, leafBean, path1, 42,
+				ConversionConstraintDescriptor.INSTANCE);
+		SimpleConstraintViolation<Object> violation2 = new SimpleConstraintViolation<>(
+				"a message", "{template}", rootBean, Object.class, leafBean, propertyParser.parse("foo.bar").toPath(),
+				42, ConversionConstraintDescriptor.INSTANCE);
+		SimpleConstraintViolation<Object> violation3 = new SimpleConstraintViolation<>(
+				"a message", "{template}", rootBean, Object.class, leafBean, path2, 42,
+				ConversionConstraintDescriptor.INSTANCE);
+
+		assertEquals(violation1, violation2);
+		assertEquals(violation1.hashCode(), violation2.hashCode());
+		assertNotEquals(violation1, violation3);
+		assertEquals(2, new HashSet<>(Arrays.asList(violation1, violation2, violation3)).size());
+	}
+
+
 	@Test
 	public void testWithMessageTemplate() throws Exception
 	{
@@ -118,6 +151,32 @@ public class SimpleConstraintViolationTest
 		assertFalse(testPath.hasNext());
 	}
 
+	@Test
+	public void testLazyInterpolation() throws Exception
+	{
+		SimpleChildBean leafBean = new SimpleChildBean();
+		SimpleBean rootBean = new SimpleBean();
+		BeanProperty property = new PropertyParser(null).parse("child.name");
+
+		MessageInterpolator messageInterpolator = mock(MessageInterpolator.class);
+		when(messageInterpolator.interpolate(eq("{template}"), any(MessageInterpolator.Context.class))).thenReturn("a message");
+
+		ConstraintViolation<SimpleBean> testViolation = new SimpleConstraintViolation<>(rootBean, leafBean, property,
+		                                                                                "value", "{template}",
+		                                                                                messageInterpolator);
+		ConstraintViolation<SimpleBean> prefixedViolation = new SimpleConstraintViolation<>(testViolation,
+		                                                                                    new PropertyParser(null).parse("root"));
+		assertSame(leafBean, testViolation.getLeafBean());
+		assertEquals(1, new HashSet<>(Arrays.asList(testViolation, testViolation)).size());
+		verify(messageInterpolator, never()).interpolate(anyString(), any(MessageInterpolator.Context.class));
+
+		assertEquals("a message", testViolation.getMessage());
+		assertEquals("a message", testViolation.getMessage());
+		assertEquals("a message", prefixedViolation.getMessage());
+		verify(messageInterpolator, times(2)).interpolate(eq("{template}"), any(MessageInterpolator.Context.class));
+	}
+
+
 	public static class SimpleBean
 	{
 		private String name;
@@ -0,0 +1,165 @@
+package net.sf.opk.rest.pages;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServletRequest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+public class DeferredAttributeRequestTest
+{
+	private Map<String, Object> attributes;
+	private HttpServletRequest request;
+	private AtomicInteger calls;
+	private Map<String, FutureTask<?>> deferredAttributes;
+
+
+	@Before
+	public void initialize()
+	{
+		attributes = new HashMap<>();
+		attributes.put("plain", "value");
+		request = mock(HttpServletRequest.class);
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				attributes.put((String)invocation.getArguments()[0], invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(request).setAttribute(anyString(), any());
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return attributes.remove(invocation.getArguments()[0]);
+			}
+		}).when(request).removeAttribute(anyString());
+		when(request.getAttribute(anyString())).thenAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return attributes.get(invocation.getArguments()[0]);
+			}
+		});
+		when(request.getAttributeNames()).thenAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return Collections.enumeration(attributes.keySet());
+			}
+		});
+
+		calls = new AtomicInteger();
+		deferredAttributes = new HashMap<>();
+		deferredAttributes.put("deferred", new FutureTask<>(new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				calls.incrementAndGet();
+				return "deferred value";
+			}
+		}));
+	}
+
+
+	@Test
+	public void testDeferredAttribute()
+	{
+		DeferredAttributeRequest deferredRequest = new DeferredAttributeRequest(request, deferredAttributes);
+		assertEquals(0, calls.get());
+
+		assertEquals("value", deferredRequest.getAttribute("plain"));
+		assertNull(deferredRequest.getAttribute("unknown"));
+		assertEquals(0, calls.get());
+
+		assertEquals("deferred value", deferredRequest.getAttribute("deferred"));
+		assertEquals("deferred value", deferredRequest.getAttribute("deferred"));
+		assertEquals(1, calls.get());
+		assertEquals("deferred value", attributes.get("deferred"));
+	}
+
+
+	@Test
+	public void testReplacedAttribute()
+	{
+		DeferredAttributeRequest deferredRequest = new DeferredAttributeRequest(request, deferredAttributes);
+		deferredRequest.setAttribute("deferred", "other value");
+
+		assertEquals("other value", deferredRequest.getAttribute("deferred"));
+		assertEquals(0, calls.get());
+	}
+
+
+	@Test
+	public void testRemovedAttribute()
+	{
+		DeferredAttributeRequest deferredRequest = new DeferredAttributeRequest(request, deferredAttributes);
+		deferredRequest.removeAttribute("deferred");
+
+		assertNull(deferredRequest.getAttribute("deferred"));
+		assertEquals(0, calls.get());
+	}
+
+
+	@Test
+	public void testAttributeNames()
+	{
+		DeferredAttributeRequest deferredRequest = new DeferredAttributeRequest(request, deferredAttributes);
+
+		assertEquals(new HashSet<>(asList("plain", "deferred")),
+		             new HashSet<>(Collections.list(deferredRequest.getAttributeNames())));
+		assertEquals(0, calls.get());
+	}
+
+
+	@Test
+	public void testFailure()
+	{
+		final IllegalArgumentException failure = new IllegalArgumentException("No such record");
+		deferredAttributes.put("deferred", new FutureTask<>(new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				throw failure;
+			}
+		}));
+		DeferredAttributeRequest deferredRequest = new DeferredAttributeRequest(request, deferredAttributes);
+
+		try
+		{
+			deferredRequest.getAttribute("deferred");
+			fail("Expected an IllegalStateException");
+		}
+		catch (IllegalStateException e)
+		{
+			assertSame(failure, e.getCause());
+		}
+	}
+}
@@ -15,17 +15,35 @@
  */
 package net.sf.opk.rest.pages;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
 import javax.servlet.RequestDispatcher;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import javax.validation.ConstraintViolation;
 import javax.ws.rs.Produces;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MultivaluedMap;
@@ -34,18 +52,27 @@ import javax.ws.rs.ext.Provider;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import net.sf.opk.rest.forms.ViolationIndex;
+
+import static java.util.Arrays.asList;
 import static javax.ws.rs.core.MediaType.TEXT_HTML;
 import static javax.ws.rs.core.MediaType.TEXT_HTML_TYPE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -121,7 +148,7 @@ public class ResourceForwardTest
 	}
 
 
-	@Test(expected = NullPointerException.class)
+	@Test(expected = IllegalStateException.class)
 	public void testSkippedCacheCausesFailure1() throws IOException, ServletException
 	{
 		doTestForward(false, true, null);
@@ -139,6 +166,9 @@ public class ResourceForwardTest
 		final ServletResponse response = useHttpResponse ? mock(HttpServletResponse.class) : mock(
 				ServletResponse.class);
 		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		final Map<String, Object> attributes = storeAttributes(request);
+		// JAX-RS injects a proxy of the request into the writer.
+		messageBodyWriter.setRequest(proxyFor(request));
 		if (forwardException != null)
 		{
 			doThrow(forwardException).when(requestDispatcher).forward(same(request), same(response));
@@ -154,20 +184,21 @@ public class ResourceForwardTest
 				assertSame(servletResponse, response);
 				if (useHttpRequest && useHttpResponse)
 				{
-					assertNotNull(ResourceForwardFilter.requestCache.get());
-					assertNotNull(ResourceForwardFilter.responseCache.get());
+					assertSame(request, attributes.get(ResourceForwardFilter.REQUEST_ATTRIBUTE));
+					assertSame(response, attributes.get(ResourceForwardFilter.RESPONSE_ATTRIBUTE));
 				}
 				else
 				{
-					assertNull(ResourceForwardFilter.requestCache.get());
-					assertNull(ResourceForwardFilter.responseCache.get());
+					assertTrue(attributes.isEmpty());
 				}
 
-				messageBodyWriter.writeTo(forward, forward.getClass(), forward.getClass(), new Annotation[0],
-				                          TEXT_HTML_TYPE, headers, outputStream);
+				// Write the response on another thread, as is done for asynchronous requests.
+				writeOnOtherThread(headers, outputStream);
 			}
 		};
 		filter.doFilter(request, response, chain);
+		assertFalse(attributes.containsKey(ResourceForwardFilter.REQUEST_ATTRIBUTE));
+		assertFalse(attributes.containsKey(ResourceForwardFilter.RESPONSE_ATTRIBUTE));
 
 		//noinspection VariableNotUsedInsideIf
 		if (forwardException == null)
@@ -178,7 +209,91 @@ public class ResourceForwardTest
 	}
 
 
-	@Test(expected = NullPointerException.class)
+	private Map<String, Object> storeAttributes(ServletRequest request)
+	{
+		final Map<String, Object> attributes = new HashMap<>();
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				attributes.put((String)invocation.getArguments()[0], invocation.getArguments()[1]);
+				return null;
+			}
+		}).when(request).setAttribute(anyString(), any());
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return attributes.remove(invocation.getArguments()[0]);
+			}
+		}).when(request).removeAttribute(anyString());
+		when(request.getAttribute(anyString())).thenAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return attributes.get(invocation.getArguments()[0]);
+			}
+		});
+		return attributes;
+	}
+
+
+	private HttpServletRequest proxyFor(final ServletRequest request)
+	{
+		HttpServletRequest proxy = mock(HttpServletRequest.class);
+		when(proxy.getAttribute(anyString())).thenAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				return request.getAttribute((String)invocation.getArguments()[0]);
+			}
+		});
+		return proxy;
+	}
+
+
+	private void writeOnOtherThread(final MultivaluedMap<String, Object> headers, final OutputStream outputStream)
+			throws IOException
+	{
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try
+		{
+			executor.submit(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws IOException
+				{
+					messageBodyWriter.writeTo(forward, forward.getClass(), forward.getClass(), new Annotation[0],
+					                          TEXT_HTML_TYPE, headers, outputStream);
+					return null;
+				}
+			}).get();
+		}
+		catch (InterruptedException e)
+		{
+			throw new IllegalStateException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+			{
+				throw (IOException)cause;
+			}
+			throw (RuntimeException)cause;
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+
+	@Test(expected = IllegalStateException.class)
 	public void testSkippedCacheCausesFailure2() throws IOException, ServletException
 	{
 		doTestForward(true, false, null);
@@ -215,6 +330,431 @@ public class ResourceForwardTest
 	}
 
 
+	@Test
+	public void testForwardWithViolations() throws IOException, ServletException
+	{
+		ViolationIndex<Object> violations = new ViolationIndex<>(Collections.<String, List<ConstraintViolation<Object>>>emptyMap());
+		forward.withViolations(violations);
+
+		ServletRequest request = doTestForward(true, true, null);
+
+		verify(request).setAttribute(ResourceForward.VIOLATIONS_ATTRIBUTE, violations);
+	}
+
+
+	@Test
+	public void testForwardAfterAsyncProcessing() throws IOException, ServletException
+	{
+		@SuppressWarnings("unchecked")
+		MultivaluedMap<String, Object> headers = mock(MultivaluedMap.class);
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		when(request.isAsyncStarted()).thenReturn(true);
+		storeAttributes(request);
+		messageBodyWriter.setRequest(proxyFor(request));
+		Object value = new Object();
+		forward.withAttribute("model", value);
+
+		// The resource starts asynchronous processing, and the filter chain returns before the response is written.
+		filter.doFilter(request, response, mock(FilterChain.class));
+		writeOnOtherThread(headers, mock(OutputStream.class));
+
+		// The view is rendered on the thread that writes the response, before the JAX-RS implementation completes it.
+		verify(request).setAttribute("model", value);
+		verify(requestDispatcher).forward(same(request), same(response));
+		verify(request, never()).getAsyncContext();
+	}
+
+
+	@Test
+	public void testCachedView() throws IOException, ServletException
+	{
+		ViewCache viewCache = new ViewCache(10, 1, TimeUnit.HOURS);
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation) throws IOException
+			{
+				ServletResponse response = (ServletResponse)invocation.getArguments()[1];
+				response.getWriter().print("Hello World!");
+				return null;
+			}
+		}).when(requestDispatcher).forward(any(ServletRequest.class), any(ServletResponse.class));
+
+		ByteArrayOutputStream output1 = new ByteArrayOutputStream();
+		HttpServletRequest request1 = forwardCached(viewCache, 42, output1);
+		assertEquals("Hello World!", output1.toString("UTF-8"));
+		verify(request1).setAttribute("id", 42);
+
+		ByteArrayOutputStream output2 = new ByteArrayOutputStream();
+		HttpServletRequest request2 = forwardCached(viewCache, 42, output2);
+		assertEquals("Hello World!", output2.toString("UTF-8"));
+		verify(request2, never()).setAttribute("id", 42);
+
+		forwardCached(viewCache, 43, new ByteArrayOutputStream());
+		verify(requestDispatcher, times(2)).forward(any(ServletRequest.class), any(ServletResponse.class));
+
+		viewCache.invalidate("greetings");
+		forwardCached(viewCache, 42, new ByteArrayOutputStream());
+		verify(requestDispatcher, times(3)).forward(any(ServletRequest.class), any(ServletResponse.class));
+	}
+
+
+	private HttpServletRequest forwardCached(ViewCache viewCache, int id, final ByteArrayOutputStream output)
+			throws IOException, ServletException
+	{
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		when(request.getAttribute(ResourceForwardFilter.REQUEST_ATTRIBUTE)).thenReturn(request);
+		when(request.getAttribute(ResourceForwardFilter.RESPONSE_ATTRIBUTE)).thenReturn(response);
+		when(response.getCharacterEncoding()).thenReturn("UTF-8");
+		when(response.getContentType()).thenReturn("text/html;charset=UTF-8");
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+				output.write(b);
+			}
+		});
+
+		ResourceForward resourceForward = new ResourceForward(PATH).withAttribute("id", id)
+		                                                           .cachedIn(viewCache, "id")
+		                                                           .withCacheTags("greetings");
+		ResourceForwardFilter.forward(resourceForward, request);
+		return request;
+	}
+
+
+	@Test
+	public void testNotModifiedByETag() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "GET", "\"v1\", W/\"v2\"", null);
+
+		ResourceForwardFilter.forward(forward.withAttribute("name", "value").withETag("v2"), request);
+
+		verify(response).setHeader("ETag", "\"v2\"");
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(response).flushBuffer();
+		verify(request, never()).setAttribute("name", "value");
+		verify(requestDispatcher, never()).forward(any(ServletRequest.class), any(ServletResponse.class));
+	}
+
+
+	@Test
+	public void testModifiedByETag() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "GET", "\"v1\"", null);
+
+		ResourceForwardFilter.forward(forward.withETag("W/\"v2\""), request);
+
+		verify(response).setHeader("ETag", "W/\"v2\"");
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(requestDispatcher).forward(request, response);
+	}
+
+
+	@Test
+	public void testNotModifiedSince() throws IOException, ServletException
+	{
+		final Date lastModified = new Date(1234567890123L);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "HEAD", null, 1234567890000L);
+
+		ResourceForwardFilter.forward(forward.withLastModified(new Callable<Date>()
+		{
+			@Override
+			public Date call()
+			{
+				return lastModified;
+			}
+		}), request);
+
+		verify(response).setDateHeader("Last-Modified", lastModified.getTime());
+		verify(response).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(requestDispatcher, never()).forward(any(ServletRequest.class), any(ServletResponse.class));
+	}
+
+
+	@Test
+	public void testModifiedSince() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "GET", null, 1234567889000L);
+
+		ResourceForwardFilter.forward(forward.withLastModified(new Date(1234567890123L)), request);
+
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(requestDispatcher).forward(request, response);
+	}
+
+
+	@Test
+	public void testETagTakesPrecedence() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "GET", "\"v1\"", 1234567890000L);
+
+		ResourceForwardFilter.forward(forward.withETag("v2").withLastModified(new Date(1234567890000L)), request);
+
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(requestDispatcher).forward(request, response);
+	}
+
+
+	@Test
+	public void testConditionalPost() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "POST", "*", null);
+
+		ResourceForwardFilter.forward(forward.withETag("v1"), request);
+
+		verify(response, never()).setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+		verify(requestDispatcher).forward(request, response);
+	}
+
+
+	@Test(expected = ServletException.class)
+	public void testETagFailure() throws IOException, ServletException
+	{
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		HttpServletRequest request = conditionalRequest(response, "GET", "*", null);
+
+		ResourceForwardFilter.forward(forward.withETag(new Callable<String>()
+		{
+			@Override
+			public String call()
+			{
+				throw new IllegalStateException("No database");
+			}
+		}), request);
+	}
+
+
+	private HttpServletRequest conditionalRequest(HttpServletResponse response, String method, String ifNoneMatch,
+	                                              Long ifModifiedSince)
+	{
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		when(request.getAttribute(ResourceForwardFilter.REQUEST_ATTRIBUTE)).thenReturn(request);
+		when(request.getAttribute(ResourceForwardFilter.RESPONSE_ATTRIBUTE)).thenReturn(response);
+		when(request.getMethod()).thenReturn(method);
+		List<String> ifNoneMatchHeaders = ifNoneMatch == null ? Collections.<String>emptyList() :
+		                                  Collections.singletonList(ifNoneMatch);
+		when(request.getHeaders("If-None-Match")).thenReturn(Collections.enumeration(ifNoneMatchHeaders));
+		when(request.getDateHeader("If-Modified-Since")).thenReturn(ifModifiedSince == null ? -1 : ifModifiedSince);
+		return request;
+	}
+
+
+	@Test
+	public void testLazyAttributes() throws IOException, ServletException
+	{
+		final AtomicInteger calls = new AtomicInteger();
+		forward.withLazyAttribute("used", new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				calls.incrementAndGet();
+				return "value";
+			}
+		}).withLazyAttribute("unused", new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				throw new AssertionError("Unused attributes should not be determined");
+			}
+		});
+
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		Map<String, Object> attributes = storeAttributes(request);
+		List<Object> values = viewAccesses("used", "used");
+		forwardStored(request);
+
+		assertEquals(asList("value", "value"), values);
+		assertEquals(1, calls.get());
+		assertEquals("value", attributes.get("used"));
+		assertFalse(attributes.containsKey("unused"));
+	}
+
+
+	@Test
+	public void testPrefetchedAttributes() throws IOException, ServletException
+	{
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try
+		{
+			final CountDownLatch started = new CountDownLatch(3);
+			Callable<Boolean> load = new Callable<Boolean>()
+			{
+				@Override
+				public Boolean call() throws InterruptedException
+				{
+					// Succeeds only if all loads run concurrently.
+					started.countDown();
+					return started.await(5, TimeUnit.SECONDS);
+				}
+			};
+			forward.withPrefetchedAttribute("a", load, executor).withPrefetchedAttribute("b", load, executor)
+			       .withPrefetchedAttribute("c", load, executor);
+
+			HttpServletRequest request = mock(HttpServletRequest.class);
+			storeAttributes(request);
+			List<Object> values = viewAccesses("a", "b", "c");
+			forwardStored(request);
+
+			assertEquals(asList(true, true, true), values);
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+
+	@Test
+	public void testPrefetchingOnViewThread() throws IOException, ServletException
+	{
+		final List<Runnable> queue = new ArrayList<>();
+		Executor busyExecutor = new Executor()
+		{
+			@Override
+			public void execute(Runnable command)
+			{
+				queue.add(command);
+			}
+		};
+		forward.withPrefetchedAttribute("name", new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				return Thread.currentThread();
+			}
+		}, busyExecutor);
+
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		storeAttributes(request);
+		List<Object> values = viewAccesses("name");
+		forwardStored(request);
+
+		assertEquals(asList(Thread.currentThread()), values);
+		assertEquals(1, queue.size());
+	}
+
+
+	@Test
+	public void testDeferredCacheKey() throws IOException, ServletException
+	{
+		ViewCache viewCache = new ViewCache(10, 1, TimeUnit.HOURS);
+		viewCache.put(new ViewCache.Key(PATH, "id", 42), "text/html", new byte[]{1}, Collections.<String>emptySet());
+
+		final List<Runnable> queue = new ArrayList<>();
+		Executor busyExecutor = new Executor()
+		{
+			@Override
+			public void execute(Runnable command)
+			{
+				queue.add(command);
+			}
+		};
+		forward.withLazyAttribute("id", new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				return 42;
+			}
+		}).withPrefetchedAttribute("details", new Callable<Object>()
+		{
+			@Override
+			public Object call()
+			{
+				throw new AssertionError("Loads for cached views should be cancelled");
+			}
+		}, busyExecutor).cachedIn(viewCache, "id");
+
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		when(response.getOutputStream()).thenReturn(mock(ServletOutputStream.class));
+		when(request.getAttribute(ResourceForwardFilter.REQUEST_ATTRIBUTE)).thenReturn(request);
+		when(request.getAttribute(ResourceForwardFilter.RESPONSE_ATTRIBUTE)).thenReturn(response);
+		ResourceForwardFilter.forward(forward, request);
+
+		assertEquals(1, viewCache.getStatistics().getHits());
+		verify(request, never()).getRequestDispatcher(anyString());
+		assertTrue(((Future<?>)queue.get(0)).isCancelled());
+	}
+
+
+	private List<Object> viewAccesses(final String... attributeNames) throws IOException, ServletException
+	{
+		final List<Object> values = new ArrayList<>();
+		doAnswer(new Answer<Object>()
+		{
+			@Override
+			public Object answer(InvocationOnMock invocation)
+			{
+				ServletRequest viewRequest = (ServletRequest)invocation.getArguments()[0];
+				for (String name : attributeNames)
+				{
+					values.add(viewRequest.getAttribute(name));
+				}
+				return null;
+			}
+		}).when(requestDispatcher).forward(any(ServletRequest.class), any(ServletResponse.class));
+		return values;
+	}
+
+
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedForwardOfCurrentRequest() throws IOException, ServletException
+	{
+		final HttpServletRequest request = mock(HttpServletRequest.class);
+		final HttpServletResponse response = mock(HttpServletResponse.class);
+		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		storeAttributes(request);
+
+		filter.doFilter(request, response, new FilterChain()
+		{
+			@Override
+			public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse)
+					throws IOException, ServletException
+			{
+				ResourceForwardFilter.forward(forward.withAttribute("name", "value"));
+			}
+		});
+
+		verify(request).setAttribute("name", "value");
+		verify(requestDispatcher).forward(any(ServletRequest.class), same(response));
+	}
+
+
+	@Test(expected = IllegalStateException.class)
+	@SuppressWarnings("deprecation")
+	public void testDeprecatedForwardOutsideFilter() throws IOException, ServletException
+	{
+		ResourceForwardFilter.forward(forward);
+	}
+
+
+	private void forwardStored(HttpServletRequest request) throws IOException, ServletException
+	{
+		when(request.getRequestDispatcher(PATH)).thenReturn(requestDispatcher);
+		request.setAttribute(ResourceForwardFilter.REQUEST_ATTRIBUTE, request);
+		request.setAttribute(ResourceForwardFilter.RESPONSE_ATTRIBUTE, mock(HttpServletResponse.class));
+		ResourceForwardFilter.forward(forward, request);
+	}
+
+
 	@Test(expected = IOException.class)
 	public void testForwardFailure1() throws IOException, ServletException
 	{
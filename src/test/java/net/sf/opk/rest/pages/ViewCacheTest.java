@@ -0,0 +1,103 @@
+package net.sf.opk.rest.pages;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+
+public class ViewCacheTest
+{
+	private static final Set<String> NO_TAGS = Collections.emptySet();
+
+
+	@Test
+	public void testKeys()
+	{
+		ViewCache cache = new ViewCache(10, 1, TimeUnit.HOURS);
+		cache.put(new ViewCache.Key("/page.jsp", "id", 1), "text/html", new byte[]{1}, NO_TAGS);
+
+		ViewCache.Entry entry = cache.get(new ViewCache.Key("/page.jsp", "id", 1));
+		assertNotNull(entry);
+		assertEquals("text/html", entry.getContentType());
+		assertArrayEquals(new byte[]{1}, entry.getContent());
+
+		assertNull(cache.get(new ViewCache.Key("/page.jsp", "id", 2)));
+		assertNull(cache.get(new ViewCache.Key("/other.jsp", "id", 1)));
+		assertNull(cache.get(new ViewCache.Key("/page.jsp")));
+
+		assertEquals(1, cache.getStatistics().getHits());
+		assertEquals(3, cache.getStatistics().getMisses());
+		assertEquals(1, cache.getStatistics().getSize());
+	}
+
+
+	@Test
+	public void testEviction()
+	{
+		ViewCache cache = new ViewCache(2, 1, TimeUnit.HOURS);
+		cache.put(new ViewCache.Key("/1.jsp"), null, new byte[0], NO_TAGS);
+		cache.put(new ViewCache.Key("/2.jsp"), null, new byte[0], NO_TAGS);
+		assertNotNull(cache.get(new ViewCache.Key("/1.jsp")));
+		cache.put(new ViewCache.Key("/3.jsp"), null, new byte[0], NO_TAGS);
+
+		assertNotNull(cache.get(new ViewCache.Key("/1.jsp")));
+		assertNull(cache.get(new ViewCache.Key("/2.jsp")));
+		assertNotNull(cache.get(new ViewCache.Key("/3.jsp")));
+		assertEquals(2, cache.getStatistics().getSize());
+	}
+
+
+	@Test
+	public void testExpiry() throws InterruptedException
+	{
+		ViewCache cache = new ViewCache(10, 10, TimeUnit.MILLISECONDS);
+		cache.put(new ViewCache.Key("/page.jsp"), null, new byte[0], NO_TAGS);
+		Thread.sleep(20);
+
+		assertNull(cache.get(new ViewCache.Key("/page.jsp")));
+		assertEquals(0, cache.getStatistics().getSize());
+	}
+
+
+	@Test
+	public void testInvalidation()
+	{
+		ViewCache cache = new ViewCache(10, 1, TimeUnit.HOURS);
+		cache.put(new ViewCache.Key("/1.jsp"), null, new byte[0], new HashSet<>(asList("catalog", "help")));
+		cache.put(new ViewCache.Key("/2.jsp"), null, new byte[0], new HashSet<>(asList("catalog")));
+		cache.put(new ViewCache.Key("/3.jsp"), null, new byte[0], new HashSet<>(asList("help")));
+
+		cache.invalidate("catalog");
+		assertNull(cache.get(new ViewCache.Key("/1.jsp")));
+		assertNull(cache.get(new ViewCache.Key("/2.jsp")));
+		assertNotNull(cache.get(new ViewCache.Key("/3.jsp")));
+
+		cache.invalidate("unknown");
+		cache.invalidateAll();
+		assertNull(cache.get(new ViewCache.Key("/3.jsp")));
+		assertEquals(0, cache.getStatistics().getSize());
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize()
+	{
+		new ViewCache(0, 1, TimeUnit.HOURS);
+	}
+
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidTimeToLive()
+	{
+		new ViewCache(10, 0, TimeUnit.HOURS);
+	}
+}